@@ -0,0 +1,257 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.dto.AccessTokenPayload;
+import eu.europa.ec.dgc.validation.decorator.dto.AccessTokenPayload.AccessTokenConditions;
+import eu.europa.ec.dgc.validation.decorator.dto.ResultToken;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse;
+import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceInitializeResponse;
+import eu.europa.ec.dgc.validation.decorator.service.AccessTokenPayloadBuilder;
+import eu.europa.ec.dgc.validation.decorator.service.AccessTokenPayloadBuilderImpl;
+import eu.europa.ec.dgc.validation.decorator.service.AccessTokenService;
+import eu.europa.ec.dgc.validation.decorator.service.BirthDateNormalizer;
+import eu.europa.ec.dgc.validation.decorator.service.KeyStoreKeyProvider;
+import eu.europa.ec.dgc.validation.decorator.util.TestHelper;
+import io.jsonwebtoken.Jwt;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.security.PublicKey;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Minting and verification of access tokens with each algorithm supported by {@link KeyStoreKeyProvider}. Tokens
+ * built with the jjwt builder from a claims map, as before the claims writer, are the baseline of minting. Result
+ * tokens read into a claims map and converted, as before typed decoding, are the baseline of reading results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AccessTokenServiceBenchmark {
+
+    @Param({ "ES256", "RS256", "PS256" })
+    private String alg;
+
+    private AccessTokenService accessTokenService;
+
+    private AccessTokenPayloadBuilder accessTokenPayloadBuilder;
+
+    private DgcProperties properties;
+
+    private KeyStoreKeyProvider keyProvider;
+
+    private ServiceTokenContentResponse tokenContent;
+
+    private ValidationServiceInitializeResponse initialize;
+
+    private AccessTokenPayload payload;
+
+    private String subject;
+
+    private String rawToken;
+
+    private String validToken;
+
+    private String invalidToken;
+
+    private String resultToken;
+
+    private PublicKey publicKey;
+
+    private ObjectMapper mapper;
+
+    /**
+     * Loads the keys and mints the tokens to verify.
+     * 
+     * @throws Exception if the keystore can not be created
+     */
+    @Setup
+    public void setup() throws Exception {
+        this.properties = BenchmarkKeyStore.properties(BenchmarkKeyStore.create(), this.alg);
+        final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.keyProvider = new KeyStoreKeyProvider(this.properties, meterRegistry);
+        this.keyProvider.createKeys();
+        if (!this.alg.equals(this.keyProvider.getAlg(this.properties.getActiveSignKey()))) {
+            throw new IllegalStateException(String.format("Key '%s' is detected as %s",
+                    this.properties.getActiveSignKey(), this.keyProvider.getAlg(this.properties.getActiveSignKey())));
+        }
+        this.accessTokenService = new AccessTokenService(this.properties, this.keyProvider, meterRegistry);
+        this.accessTokenPayloadBuilder = new AccessTokenPayloadBuilderImpl(this.properties,
+                new BirthDateNormalizer(meterRegistry));
+
+        this.subject = UUID.randomUUID().toString();
+        this.payload = buildPayload(this.subject);
+        this.tokenContent = TestHelper.buildServiceTokenContent(this.subject, "benchmark-service");
+        this.initialize = new ValidationServiceInitializeResponse();
+        this.initialize.setSubject(this.subject);
+        this.initialize.setExp(Instant.now().plusSeconds(3600).getEpochSecond());
+        this.initialize.setAud("http://localhost:8081/validate/" + this.subject);
+        this.rawToken = this.accessTokenService.buildAccessToken(this.subject);
+        this.validToken = AccessTokenService.TOKEN_PREFIX + this.rawToken;
+        // Valid header and claims with the signature of another token
+        final String otherToken = this.accessTokenService.buildAccessToken(UUID.randomUUID().toString());
+        this.invalidToken = this.validToken.substring(0, this.validToken.lastIndexOf('.'))
+                + otherToken.substring(otherToken.lastIndexOf('.'));
+
+        // Result of a validation service, signed with the same key
+        final String activeSignKey = this.keyProvider.getActiveSignKey();
+        this.publicKey = this.keyProvider.receiveCertificate(activeSignKey)[0].getPublicKey();
+        this.resultToken = Jwts.builder()
+                .setHeaderParam("kid", this.keyProvider.getKid(activeSignKey))
+                .setSubject(this.subject)
+                .setIssuer("http://localhost:8082")
+                .setIssuedAt(new Date())
+                .claim("result", "NOK")
+                .claim("confirmation", this.rawToken)
+                .claim("results", List.of(
+                        Map.of("identifier", "FNTNOMATCH", "result", "NOK", "type", "TechnicalVerification",
+                                "details", "family name does not match"),
+                        Map.of("identifier", "GNTNOTMATCH", "result", "NOK", "type", "TechnicalVerification",
+                                "details", "given name does not match")))
+                .signWith(SignatureAlgorithm.valueOf(this.alg), this.keyProvider.receivePrivateKey(activeSignKey))
+                .compact();
+        this.mapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    @Benchmark
+    public String buildAccessTokenFromPayload() {
+        return this.accessTokenService.buildAccessToken(this.payload);
+    }
+
+    @Benchmark
+    public String buildAccessTokenFromPayloadWithJjwtBuilder() {
+        final Map<String, Object> claims = new HashMap<>();
+        claims.put("jti", this.payload.getJti());
+        claims.put("sub", this.payload.getSub());
+        claims.put("aud", this.payload.getAud());
+        claims.put("iat", this.payload.getIat());
+        claims.put("t", this.payload.getType());
+        claims.put("v", this.payload.getVersion());
+        claims.put("vc", this.payload.getConditions());
+
+        final String activeSignKey = this.keyProvider.getActiveSignKey();
+        return Jwts.builder()
+                .signWith(SignatureAlgorithm.valueOf(this.keyProvider.getAlg(activeSignKey)),
+                        this.keyProvider.receivePrivateKey(activeSignKey))
+                .setHeaderParam("typ", this.properties.getToken().getType())
+                .setHeaderParam("kid", this.keyProvider.getKid(activeSignKey))
+                .setIssuer(this.properties.getToken().getIssuer())
+                .setExpiration(new Date(this.payload.getExp() * 1000))
+                .addClaims(claims)
+                .compact();
+    }
+
+    @Benchmark
+    public String buildAccessTokenFromTokenContent() {
+        return this.accessTokenService.buildAccessToken(this.accessTokenPayloadBuilder.build(this.subject,
+                this.initialize, this.tokenContent.getPassengers().get(0), this.tokenContent.getFlightInfo()));
+    }
+
+    @Benchmark
+    public String buildAccessTokenForSubject() {
+        return this.accessTokenService.buildAccessToken(this.subject);
+    }
+
+    @Benchmark
+    public Map<String, Object> parseAccessToken() {
+        return this.accessTokenService.parseAccessToken(this.validToken);
+    }
+
+    @Benchmark
+    public Jwt parseUnsecure() {
+        return this.accessTokenService.parseUnsecure(this.rawToken);
+    }
+
+    @Benchmark
+    public ResultToken parseResultToken() {
+        return this.accessTokenService.parseToken(this.resultToken, ResultToken.class, keyId -> this.publicKey);
+    }
+
+    @Benchmark
+    public ResultToken parseResultTokenThroughMap() {
+        return this.mapper.convertValue(this.accessTokenService.parseAccessToken(this.resultToken, this.publicKey),
+                ResultToken.class);
+    }
+
+    @Benchmark
+    public boolean isValidWithValidToken() {
+        return this.accessTokenService.isValid(this.validToken);
+    }
+
+    @Benchmark
+    public boolean isValidWithInvalidToken() {
+        return this.accessTokenService.isValid(this.invalidToken);
+    }
+
+    private static AccessTokenPayload buildPayload(final String subject) {
+        final AccessTokenConditions conditions = new AccessTokenConditions();
+        conditions.setLang("en-en");
+        conditions.setFnt("KUHIC");
+        conditions.setGnt("LIONEL");
+        conditions.setDob("1994-05-25");
+        conditions.setCoa("TT");
+        conditions.setCod("TD");
+        conditions.setRoa("TT");
+        conditions.setRod("TD");
+        conditions.setType(List.of("r", "v", "t"));
+        conditions.setCategory(List.of("Standard"));
+        conditions.setValidationClock("2021-09-24T10:00:00+00:00");
+        conditions.setValidFrom("2021-09-24T10:00:00+00:00");
+        conditions.setValidTo("2021-09-24T18:24:00+00:00");
+
+        final long now = Instant.now().getEpochSecond();
+        final AccessTokenPayload payload = new AccessTokenPayload();
+        payload.setJti(UUID.randomUUID().toString());
+        payload.setSub(subject);
+        payload.setAud("http://localhost:8081/validate/" + subject);
+        payload.setIat(now);
+        payload.setExp(now + 3600);
+        payload.setType(2);
+        payload.setVersion("1.0");
+        payload.setConditions(conditions);
+        return payload;
+    }
+}
@@ -0,0 +1,45 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.benchmark;
+
+import eu.europa.ec.dgc.validation.decorator.DgcaValidationDecoratorApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Decorator application context as configured by application.yml, for benchmarks of beans and endpoints.
+ */
+final class BenchmarkApplication {
+
+    // Flight recording would add its own allocations to the measurements
+    private static final String[] ARGS = {
+        "--server.port=0",
+        "--dgc.jfr.enabled=false",
+        "--logging.level.root=WARN"
+    };
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(DgcaValidationDecoratorApplication.class).run(ARGS);
+    }
+}
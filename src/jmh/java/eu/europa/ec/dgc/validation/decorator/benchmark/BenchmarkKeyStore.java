@@ -0,0 +1,147 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.benchmark;
+
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.TokenInitializeProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.TokenProperties;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+/**
+ * Dev keystore of the decorator, extended by sign keys for the algorithms it has no key for.
+ */
+final class BenchmarkKeyStore {
+
+    static final String DEV_KEY_STORE = "certs/dev-decorator.jks";
+
+    static final String PASSWORD = "changeMe";
+
+    // Sign key alias by JWT algorithm, as detected by KeyStoreKeyProvider
+    static final Map<String, String> SIGN_KEYS = Map.of(
+            "ES256", "AccessTokenSignKey-1",
+            "RS256", "BenchmarkSignKey-RS256",
+            "PS256", "BenchmarkSignKey-PS256");
+
+    private static final Map<String, String> CERTIFICATE_SIGNATURES = Map.of(
+            "RS256", "SHA256withRSA",
+            "PS256", "SHA256withRSAandMGF1");
+
+    private BenchmarkKeyStore() {
+    }
+
+    /**
+     * Copies the dev keystore to a temporary file and adds the missing sign keys.
+     * 
+     * @return Keystore file
+     * @throws GeneralSecurityException if a key can not be created or stored
+     * @throws IOException if the keystore can not be read or written
+     */
+    static Path create() throws GeneralSecurityException, IOException {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        final KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream is = Files.newInputStream(Path.of(DEV_KEY_STORE))) {
+            keyStore.load(is, PASSWORD.toCharArray());
+        }
+        for (final Map.Entry<String, String> signature : CERTIFICATE_SIGNATURES.entrySet()) {
+            addSignKey(keyStore, SIGN_KEYS.get(signature.getKey()), signature.getValue());
+        }
+
+        final Path file = Files.createTempFile("benchmark-decorator", ".jks");
+        file.toFile().deleteOnExit();
+        try (OutputStream os = Files.newOutputStream(file)) {
+            keyStore.store(os, PASSWORD.toCharArray());
+        }
+        return file;
+    }
+
+    /**
+     * Properties of a decorator signing with the key of an algorithm.
+     * 
+     * @param keyStoreFile Keystore from {@link #create()}
+     * @param alg JWT algorithm
+     * @return {@link DgcProperties}
+     */
+    static DgcProperties properties(final Path keyStoreFile, final String alg) {
+        final TokenInitializeProperties initialize = new TokenInitializeProperties();
+        initialize.setValidity(3600);
+        final TokenProperties token = new TokenProperties();
+        token.setIssuer("Validation Decorator Service");
+        token.setType("JWT");
+        token.setInitialize(initialize);
+
+        final DgcProperties properties = new DgcProperties();
+        properties.setKeyStoreFile(keyStoreFile.toString());
+        properties.setKeyStorePassword(PASSWORD);
+        properties.setPrivateKeyPassword(PASSWORD);
+        properties.setActiveSignKey(SIGN_KEYS.get(alg));
+        properties.setSignAliases(List.of(SIGN_KEYS.get(alg)));
+        properties.setToken(token);
+        return properties;
+    }
+
+    private static void addSignKey(final KeyStore keyStore, final String alias, final String signatureAlgorithm)
+            throws GeneralSecurityException {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        final KeyPair keyPair = generator.generateKeyPair();
+
+        final X500Name name = new X500Name("CN=" + alias);
+        final Instant now = Instant.now();
+        try {
+            final X509Certificate certificate = new JcaX509CertificateConverter()
+                    .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                    .getCertificate(new JcaX509v3CertificateBuilder(name, BigInteger.valueOf(now.toEpochMilli()),
+                            Date.from(now), Date.from(now.plus(365, ChronoUnit.DAYS)), name, keyPair.getPublic())
+                            .build(new JcaContentSignerBuilder(signatureAlgorithm)
+                                    .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                                    .build(keyPair.getPrivate())));
+            keyStore.setKeyEntry(alias, keyPair.getPrivate(), PASSWORD.toCharArray(),
+                    new Certificate[] { certificate });
+        } catch (OperatorCreationException e) {
+            throw new GeneralSecurityException(e);
+        }
+    }
+}
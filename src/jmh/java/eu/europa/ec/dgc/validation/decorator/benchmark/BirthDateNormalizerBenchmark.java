@@ -0,0 +1,96 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.benchmark;
+
+import eu.europa.ec.dgc.validation.decorator.service.BirthDateNormalizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Normalization of birth dates in each format delivered by booking services. Parsing with exceptions, as before the
+ * normalizer, is the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BirthDateNormalizerBenchmark {
+
+    private static final DateTimeFormatter DOB_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    @Param({ "1994-05-25", "1994-05-25T00:00:00+02:00", "05-25-1994", "25.05.1994", "1994" })
+    private String birthDate;
+
+    private BirthDateNormalizer birthDateNormalizer;
+
+    /**
+     * Creates the normalizer.
+     */
+    @Setup
+    public void setup() {
+        this.birthDateNormalizer = new BirthDateNormalizer(new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public String normalize() {
+        return this.birthDateNormalizer.normalize(this.birthDate);
+    }
+
+    @Benchmark
+    public String parseWithExceptions() {
+        final String in = this.birthDate;
+        if (in != null && !in.isBlank()) {
+            try {
+                return OffsetDateTime.parse(in).format(DOB_FORMATTER);
+            } catch (Exception e) {
+                // not handle
+            }
+            try {
+                return LocalDate.parse(in, DateTimeFormatter.ofPattern("MM-dd-yyyy")).format(DOB_FORMATTER);
+            } catch (Exception e) {
+                // not handle
+            }
+            try {
+                return in.substring(0, 10);
+            } catch (Exception e) {
+                // not handle
+            }
+        }
+        return in;
+    }
+}
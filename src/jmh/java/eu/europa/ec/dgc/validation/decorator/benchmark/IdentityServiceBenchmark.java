@@ -0,0 +1,100 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.dgc.validation.decorator.dto.IdentityResponse;
+import eu.europa.ec.dgc.validation.decorator.service.IdentityService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Building of the identity document for every element and type filter, with and without serialization. Allocations
+ * per call are reported by the GC profiler as gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IdentityServiceBenchmark {
+
+    // JMH parameters can not be null, stands for a request without the path variable
+    private static final String NONE = "-";
+
+    @Param({ NONE, "verificationMethod", "service" })
+    private String element;
+
+    @Param({ NONE, "JsonWebKey2020", "ValidationService", "AccessTokenService", "ServiceProvider",
+        "CancellationService", "StatusService" })
+    private String type;
+
+    private ConfigurableApplicationContext context;
+
+    private IdentityService identityService;
+
+    private ObjectMapper mapper;
+
+    private String elementFilter;
+
+    private String typeFilter;
+
+    /**
+     * Starts the application context.
+     */
+    @Setup
+    public void setup() {
+        this.context = BenchmarkApplication.start();
+        this.identityService = this.context.getBean(IdentityService.class);
+        this.mapper = this.context.getBean(ObjectMapper.class);
+        this.elementFilter = NONE.equals(this.element) ? null : this.element;
+        this.typeFilter = NONE.equals(this.type) ? null : this.type;
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Benchmark
+    public IdentityResponse getIdentity() {
+        return this.identityService.getIdentity(this.elementFilter, this.typeFilter);
+    }
+
+    @Benchmark
+    public byte[] getIdentityAsJson() throws JsonProcessingException {
+        return this.mapper.writeValueAsBytes(this.identityService.getIdentity(this.elementFilter, this.typeFilter));
+    }
+}
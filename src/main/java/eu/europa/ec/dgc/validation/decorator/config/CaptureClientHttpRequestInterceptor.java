@@ -0,0 +1,301 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.CaptureProperties;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Appends every downstream exchange with its duration as JSON line to a local file, for replay by a stand-in server.
+ * Subject IDs in the path and bodies are replaced by {subject}, only content headers are kept, so Authorization
+ * tokens never reach the file, and JSON fields with personal data are masked. Other IDs in JSON bodies, e.g. of the
+ * fellow passengers of a booking, are masked as well.
+ */
+@Slf4j
+public class CaptureClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    public static final String SUBJECT_PLACEHOLDER = "{subject}";
+
+    private static final Pattern SUBJECT_SEGMENT = Pattern.compile(
+            "[0-9a-fA-F]{32}|[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    private static final List<String> CAPTURED_HEADERS = List.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.RETRY_AFTER, "X-Version");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path file;
+
+    private final Set<String> redactFields;
+
+    private BufferedWriter writer;
+
+    private boolean closed;
+
+    /**
+     * Creates the interceptor.
+     * 
+     * @param properties {@link CaptureProperties}
+     */
+    public CaptureClientHttpRequestInterceptor(final CaptureProperties properties) {
+        this.file = Path.of(properties.getFile());
+        this.redactFields = properties.getRedactFields().stream()
+                .map(field -> field.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public ClientHttpResponse intercept(final HttpRequest request, final byte[] body,
+            final ClientHttpRequestExecution execution) throws IOException {
+        final Instant timestamp = Instant.now();
+        final long start = System.nanoTime();
+        BufferedClientHttpResponse response = null;
+        Exception error = null;
+        try {
+            response = new BufferedClientHttpResponse(execution.execute(request, body));
+            return response;
+        } catch (IOException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            this.capture(timestamp, System.nanoTime() - start, request, body, response, error);
+        }
+    }
+
+    private void capture(final Instant timestamp, final long nanos, final HttpRequest request, final byte[] body,
+            final BufferedClientHttpResponse response, final Exception error) {
+        try {
+            final String path = request.getURI().getRawPath();
+            final String subject = findSubject(path);
+
+            final Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("timestamp", timestamp.toString());
+            entry.put("host", request.getURI().getAuthority());
+            entry.put("method", request.getMethodValue());
+            entry.put("route", subject == null ? path : path.replace(subject, SUBJECT_PLACEHOLDER));
+            entry.put("durationMillis", nanos / 1_000_000.0);
+            entry.put("requestHeaders", this.captureHeaders(request.getHeaders()));
+            entry.put("requestBody", this.sanitize(body, request.getHeaders().getContentType(), subject));
+            if (response != null) {
+                entry.put("status", response.getRawStatusCode());
+                entry.put("responseHeaders", this.captureHeaders(response.getHeaders()));
+                entry.put("responseBody", this.sanitize(response.content, response.getHeaders().getContentType(),
+                        subject));
+            } else {
+                entry.put("status", 0);
+                entry.put("error", error == null ? null : error.getClass().getSimpleName());
+            }
+            this.write(this.mapper.writeValueAsString(entry));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Downstream exchange not written to '{}': {}", this.file, e.getMessage());
+        }
+    }
+
+    private static String findSubject(final String path) {
+        if (path == null) {
+            return null;
+        }
+        for (final String segment : path.split("/")) {
+            if (SUBJECT_SEGMENT.matcher(segment).matches()) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, String> captureHeaders(final HttpHeaders headers) {
+        final Map<String, String> captured = new LinkedHashMap<>();
+        for (final String name : CAPTURED_HEADERS) {
+            if (headers.getFirst(name) != null) {
+                captured.put(name, headers.getFirst(name));
+            }
+        }
+        return captured;
+    }
+
+    private String sanitize(final byte[] body, final MediaType contentType, final String subject) {
+        if (body == null || body.length == 0) {
+            return null;
+        }
+        String text = new String(body, StandardCharsets.UTF_8);
+        if (contentType != null && contentType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+            try {
+                final JsonNode node = this.mapper.readTree(text);
+                this.redact(node, subject);
+                text = this.mapper.writeValueAsString(node);
+            } catch (JsonProcessingException e) {
+                log.debug("Body declared as JSON not parsed, captured as is: {}", e.getMessage());
+            }
+        }
+        return subject == null ? text : text.replace(subject, SUBJECT_PLACEHOLDER);
+    }
+
+    private void redact(final JsonNode node, final String subject) {
+        if (node.isObject()) {
+            final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                final boolean personal = this.redactFields.contains(field.getKey().toLowerCase(Locale.ROOT));
+                if (personal && field.getValue().isTextual() || isOtherId(field.getValue(), subject)) {
+                    field.setValue(TextNode.valueOf(mask(field.getValue().asText())));
+                } else {
+                    this.redact(field.getValue(), subject);
+                }
+            }
+        } else if (node.isArray()) {
+            final ArrayNode array = (ArrayNode) node;
+            for (int i = 0; i < array.size(); i++) {
+                if (isOtherId(array.get(i), subject)) {
+                    array.set(i, TextNode.valueOf(mask(array.get(i).asText())));
+                } else {
+                    this.redact(array.get(i), subject);
+                }
+            }
+        }
+    }
+
+    // Subject IDs other than the one of the path, the one of the path is replaced afterwards
+    private static boolean isOtherId(final JsonNode value, final String subject) {
+        return value.isTextual() && !value.asText().equals(subject)
+                && SUBJECT_SEGMENT.matcher(value.asText()).matches();
+    }
+
+    // Keeps length and format, so that dates stay dates: letters become x, digits 1
+    private static String mask(final String value) {
+        final StringBuilder masked = new StringBuilder(value.length());
+        for (final char c : value.toCharArray()) {
+            if (Character.isDigit(c)) {
+                masked.append('1');
+            } else if (Character.isLetter(c)) {
+                masked.append(Character.isUpperCase(c) ? 'X' : 'x');
+            } else {
+                masked.append(c);
+            }
+        }
+        return masked.toString();
+    }
+
+    /**
+     * Closes the file on shutdown, exchanges afterwards are not captured.
+     * 
+     * @throws IOException if the file could not be closed
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        this.closed = true;
+        if (this.writer != null) {
+            this.writer.close();
+            this.writer = null;
+        }
+    }
+
+    private synchronized void write(final String line) throws IOException {
+        if (this.closed) {
+            return;
+        }
+        if (this.writer == null) {
+            if (this.file.getParent() != null) {
+                Files.createDirectories(this.file.getParent());
+            }
+            this.writer = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        }
+        this.writer.write(line);
+        this.writer.newLine();
+        this.writer.flush();
+    }
+
+    /**
+     * Response with the body read once, so that it is captured and still available to the message converters.
+     */
+    private static final class BufferedClientHttpResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+
+        private final byte[] content;
+
+        private BufferedClientHttpResponse(final ClientHttpResponse delegate) throws IOException {
+            this.delegate = delegate;
+            this.content = StreamUtils.copyToByteArray(delegate.getBody());
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return this.delegate.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return this.delegate.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return this.delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return this.delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(this.content);
+        }
+
+        @Override
+        public void close() {
+            this.delegate.close();
+        }
+    }
+}
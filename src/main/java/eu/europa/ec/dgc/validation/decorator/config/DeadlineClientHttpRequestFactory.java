@@ -0,0 +1,67 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import eu.europa.ec.dgc.validation.decorator.exception.DeadlineExceededException;
+import eu.europa.ec.dgc.validation.decorator.service.RequestDeadline;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+/**
+ * Limits connect and read timeout of each downstream call to the remaining budget of the current request.
+ */
+public class DeadlineClientHttpRequestFactory extends SimpleClientHttpRequestFactory {
+
+    private final int connectTimeout;
+
+    private final int readTimeout;
+
+    /**
+     * Creates the factory.
+     * 
+     * @param connectTimeout Connect timeout in milliseconds, if the request has more budget left
+     * @param readTimeout Read timeout in milliseconds, if the request has more budget left
+     */
+    public DeadlineClientHttpRequestFactory(final int connectTimeout, final int readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.setConnectTimeout(connectTimeout);
+        this.setReadTimeout(readTimeout);
+    }
+
+    @Override
+    protected void prepareConnection(final HttpURLConnection connection, final String httpMethod)
+            throws IOException {
+        super.prepareConnection(connection, httpMethod);
+        final RequestDeadline deadline = RequestDeadline.current();
+        if (deadline == null) {
+            return;
+        }
+        final long remaining = deadline.remainingMillis();
+        if (remaining <= 0) {
+            throw new DeadlineExceededException(String.format("Budget of endpoint '%s' exhausted before %s %s",
+                    deadline.getEndpoint(), httpMethod, connection.getURL().getHost()));
+        }
+        connection.setConnectTimeout((int) Math.min(this.connectTimeout, remaining));
+        connection.setReadTimeout((int) Math.min(this.readTimeout, remaining));
+    }
+}
@@ -0,0 +1,70 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import eu.europa.ec.dgc.validation.decorator.exception.DeadlineExceededException;
+import eu.europa.ec.dgc.validation.decorator.service.RequestDeadline;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Records the budget each downstream call of a request uses and turns a timeout after the budget ran out into a
+ * {@link DeadlineExceededException}.
+ */
+@RequiredArgsConstructor
+public class DeadlineClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public ClientHttpResponse intercept(final HttpRequest request, final byte[] body,
+            final ClientHttpRequestExecution execution) throws IOException {
+        final RequestDeadline deadline = RequestDeadline.current();
+        if (deadline == null) {
+            return execution.execute(request, body);
+        }
+        final String stage = request.getMethodValue() + " " + request.getURI().getHost();
+        final long start = System.nanoTime();
+        try {
+            return execution.execute(request, body);
+        } catch (IOException e) {
+            if (deadline.isExpired()) {
+                throw new DeadlineExceededException(String.format("Budget of endpoint '%s' exhausted during %s",
+                        deadline.getEndpoint(), stage), e);
+            }
+            throw e;
+        } finally {
+            Timer.builder("dgca.deadline.stage")
+                    .description("Budget used by a downstream call of a request")
+                    .tag("endpoint", deadline.getEndpoint())
+                    .tag("stage", stage)
+                    .register(this.meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -23,11 +23,14 @@ package eu.europa.ec.dgc.validation.decorator.config;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.convert.DurationUnit;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 @Data
 @Configuration
@@ -59,6 +62,32 @@ public class DgcProperties {
 
     private List<ServiceProperties> endpoints = new ArrayList<>();
 
+    private ResultProperties result = new ResultProperties();
+
+    private SubjectBindingProperties subjectBinding = new SubjectBindingProperties();
+
+    private StatusPollingProperties statusPolling = new StatusPollingProperties();
+
+    private DownstreamProperties downstream = new DownstreamProperties();
+
+    private DeadlineProperties deadline = new DeadlineProperties();
+
+    private HedgingProperties hedging = new HedgingProperties();
+
+    private LoadBalancingProperties loadBalancing = new LoadBalancingProperties();
+
+    private RetryProperties retry = new RetryProperties();
+
+    private RateLimitProperties rateLimit = new RateLimitProperties();
+
+    private TracingProperties tracing = new TracingProperties();
+
+    private FlowTrackingProperties flowTracking = new FlowTrackingProperties();
+
+    private JfrProperties jfr = new JfrProperties();
+
+    private CaptureProperties capture = new CaptureProperties();
+
     @Data
     public static final class GatewayDownload {
 
@@ -93,5 +122,294 @@ public class DgcProperties {
         private String serviceEndpoint;
 
         private String name;
+
+        // Further instances of the service, requests are balanced over serviceEndpoint and these
+        private List<String> instanceEndpoints = new ArrayList<>();
+
+        // Send all requests of a subject to the same instance, they fail while the instance is unhealthy
+        private boolean stickyRouting = false;
+    }
+
+    @Data
+    public static final class ResultProperties {
+
+        private ResultLedgerProperties ledger = new ResultLedgerProperties();
+
+        private ResultOutboxProperties outbox = new ResultOutboxProperties();
+    }
+
+    @Data
+    public static final class ResultLedgerProperties {
+
+        // Maximum number of subjects whose submitted result is remembered
+        private long maxSize = 10000;
+    }
+
+    @Data
+    public static final class ResultOutboxProperties {
+
+        // Forward results asynchronously through the outbox journal, otherwise synchronously
+        private boolean enabled = false;
+
+        private String file = "outbox/result-outbox.journal";
+
+        // Force every journal append to disk
+        private boolean fsync = true;
+
+        // Delay between two dispatcher runs
+        private Duration dispatchInterval = Duration.ofMillis(200);
+
+        // Maximum number of results forwarded per dispatcher run or sent in one batch request
+        private int batchSize = 50;
+
+        // Time a result waits for further results if the booking service accepts batches
+        private Duration batchWindow = Duration.ofMillis(100);
+
+        private Duration initialBackoff = Duration.ofSeconds(1);
+
+        private Duration maxBackoff = Duration.ofMinutes(5);
+
+        // Attempts after which a result is given up, results are also given up when the validation expired
+        private int maxAttempts = 20;
+
+        // Number of delivered results after which the journal is rewritten
+        private int compactThreshold = 1000;
+
+        // Maximum time to forward pending results on shutdown
+        private Duration drainTimeout = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static final class SubjectBindingProperties {
+
+        // Maximum number of subjects whose chosen service is remembered
+        private long maxSize = 10000;
+    }
+
+    @Data
+    public static final class StatusPollingProperties {
+
+        private Duration minRetryAfter = Duration.ofSeconds(1);
+
+        private Duration maxRetryAfter = Duration.ofSeconds(10);
+
+        // Expected time until a result is available, before any result was observed
+        private Duration expectedPending = Duration.ofSeconds(5);
+
+        // Answer polls inside the hinted interval without asking the validation service
+        private boolean negativeCache = true;
+
+        // Maximum number of pending subjects tracked
+        private long maxSize = 10000;
+    }
+
+    @Data
+    public static final class DownstreamProperties {
+
+        // Circuit breaker per downstream (booking service and each validation service)
+        private float failureRateThreshold = 50;
+
+        private float slowCallRateThreshold = 100;
+
+        private Duration slowCallDuration = Duration.ofSeconds(2);
+
+        private int slidingWindowSize = 20;
+
+        private int minimumNumberOfCalls = 10;
+
+        private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+
+        private int permittedNumberOfCallsInHalfOpenState = 3;
+
+        // Bulkhead per downstream
+        private int maxConcurrentCalls = 25;
+
+        private Duration maxWaitDuration = Duration.ZERO;
+    }
+
+    @Data
+    public static final class DeadlineProperties {
+
+        private boolean enabled = true;
+
+        // End-to-end budget of endpoints without own entry in budgets
+        private Duration defaultBudget = Duration.ofSeconds(6);
+
+        // End-to-end budget per endpoint, key is the first path segment, e.g. token or status
+        private Map<String, Duration> budgets = new HashMap<>();
+    }
+
+    @Data
+    public static final class HedgingProperties {
+
+        private boolean enabled = false;
+
+        // Latency percentile of a service after which a duplicate request is sent
+        private double percentile = 0.95;
+
+        private Duration minDelay = Duration.ofMillis(50);
+
+        // Delay until enough latencies of a service are known
+        private Duration initialDelay = Duration.ofMillis(500);
+
+        // Number of latest latencies per service the percentile is computed from
+        private int windowSize = 256;
+
+        private int minSamples = 20;
+
+        // Duplicate requests allowed per request, over all services
+        private double budgetRatio = 0.05;
+
+        // Duplicate requests allowed in a burst
+        private int maxBurst = 10;
+
+        private int maxThreads = 32;
+    }
+
+    @Data
+    public static final class LoadBalancingProperties {
+
+        // Path below an instance endpoint answering with 2xx while the instance is healthy
+        private String healthPath = "identity";
+
+        // Consecutive failed probes until an instance is taken out of rotation
+        private int unhealthyThreshold = 2;
+
+        // Delay between two probes of all instances
+        private Duration probeInterval = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static final class RetryProperties {
+
+        // Attempts including the first one, 1 disables retries
+        private int maxAttempts = 3;
+
+        private Duration initialBackoff = Duration.ofMillis(100);
+
+        private double multiplier = 2;
+
+        // Backoff varies randomly by this share in both directions
+        private double jitter = 0.5;
+
+        private Duration maxBackoff = Duration.ofSeconds(1);
+
+        // Non-idempotent operations that may be retried anyway, e.g. booking.result
+        private List<String> safeOperations = new ArrayList<>();
+    }
+
+    @Data
+    public static final class RateLimitProperties {
+
+        private boolean enabled = true;
+
+        // Header identifying the client, e.g. X-Forwarded-For behind a proxy; the remote address if not set
+        private String clientHeader;
+
+        // Proxies in front of the service appending to the client header, the client is the entry appended by the
+        // outermost of them; 0 ignores the header
+        private int trustedProxies = 1;
+
+        // Maximum number of buckets, idle buckets are removed after idleExpiry
+        private long maxSize = 100000;
+
+        private Duration idleExpiry = Duration.ofMinutes(10);
+
+        // Limits per endpoint, key is the first path segment, e.g. status or initialize
+        private Map<String, EndpointLimitProperties> endpoints = new HashMap<>();
+
+        private LoadSheddingProperties shedding = new LoadSheddingProperties();
+    }
+
+    @Data
+    public static final class EndpointLimitProperties {
+
+        // Per subject, taken from the path or the Authorization header
+        private BucketProperties subject;
+
+        // Per client
+        private BucketProperties client;
+    }
+
+    @Data
+    public static final class BucketProperties {
+
+        private int capacity;
+
+        private double refillPerSecond;
+    }
+
+    @Data
+    public static final class LoadSheddingProperties {
+
+        // Requests processed at the same time, 0 disables the limit
+        private int maxInFlight = 150;
+
+        // Smoothed latency per downstream, calls of requests to it are shed in proportion above it; zero disables
+        private Duration maxDownstreamLatency = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static final class TracingProperties {
+
+        private boolean enabled = true;
+
+        // none, logging or file
+        private String exporter = "none";
+
+        // Spans as JSON lines, if exporter is file
+        private String file = "traces/spans.jsonl";
+
+        // Share of new traces recorded, traces started by a caller follow its decision
+        private double samplingRatio = 1.0;
+
+        // Salt of the subject hashes in traces and profiling events, the same on all instances to correlate them;
+        // random per start if not set
+        private String subjectHashSecret;
+    }
+
+    @Data
+    public static final class FlowTrackingProperties {
+
+        private boolean enabled = true;
+
+        // Maximum number of flows tracked, flows expire with the subject (validationExpire)
+        private long maxSize = 10000;
+    }
+
+    @Data
+    public static final class JfrProperties {
+
+        // Continuous flight recording, dumped by the jfr management endpoint
+        private boolean enabled = false;
+
+        // JDK settings of the JVM events, default or profile
+        private String settings = "default";
+
+        // Events of faster requests, downstream calls and signatures are not recorded
+        private Duration requestThreshold = Duration.ofMillis(200);
+
+        private Duration downstreamThreshold = Duration.ofMillis(100);
+
+        private Duration cryptoThreshold = Duration.ofMillis(10);
+
+        private Duration maxAge = Duration.ofHours(1);
+
+        private DataSize maxSize = DataSize.ofMegabytes(50);
+
+        private String dumpFile = "jfr/dgca.jfr";
+    }
+
+    @Data
+    public static final class CaptureProperties {
+
+        // Downstream requests and responses with timing, for replay by a stand-in
+        private boolean enabled = false;
+
+        // Exchanges as JSON lines
+        private String file = "captures/downstream.jsonl";
+
+        // JSON fields with personal data, masked with the same length and format
+        private List<String> redactFields = new ArrayList<>(List.of("forename", "lastname", "birthDate", "reference"));
     }
 }
@@ -22,7 +22,12 @@ package eu.europa.ec.dgc.validation.decorator.config;
 
 import eu.europa.ec.dgc.gateway.connector.dto.ProblemReportDto;
 import eu.europa.ec.dgc.validation.decorator.exception.DccException;
+import eu.europa.ec.dgc.validation.decorator.exception.DownstreamUnavailableException;
+import eu.europa.ec.dgc.validation.decorator.exception.RepositoryException;
+import eu.europa.ec.dgc.validation.decorator.exception.RequestThrottledException;
 import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
@@ -34,6 +39,7 @@ import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
@@ -43,6 +49,8 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 @Slf4j
 public class ErrorHandler extends ResponseEntityExceptionHandler {
 
+    private final MeterRegistry meterRegistry;
+
     /**
      * Exception Handler to handle {@link DccException} Exceptions.
      */
@@ -67,6 +75,54 @@ public class ErrorHandler extends ResponseEntityExceptionHandler {
                 .body(new ProblemReportDto("", "Dcc Error", "", e.getMessage()));
     }
 
+    /**
+     * Exception Handler to handle {@link DownstreamUnavailableException} Exceptions.
+     */
+    @ExceptionHandler(DownstreamUnavailableException.class)
+    public ResponseEntity<ProblemReportDto> handleException(DownstreamUnavailableException e) {
+        log.error(e.getMessage());
+        final ResponseEntity.BodyBuilder response = ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (e.getRetryAfter() != null) {
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()));
+        }
+        return response.body(new ProblemReportDto("", "Downstream Unavailable", "", e.getMessage()));
+    }
+
+    /**
+     * Exception Handler to handle {@link RequestThrottledException} Exceptions.
+     */
+    @ExceptionHandler(RequestThrottledException.class)
+    public ResponseEntity<ProblemReportDto> handleException(RequestThrottledException e) {
+        log.warn(e.getMessage());
+        return ResponseEntity
+                .status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new ProblemReportDto("", "Request Throttled", "", e.getMessage()));
+    }
+
+    /**
+     * Exception Handler to handle {@link RepositoryException} Exceptions.
+     */
+    @ExceptionHandler(RepositoryException.class)
+    public ResponseEntity<ProblemReportDto> handleException(RepositoryException e) {
+        log.error(e.getMessage());
+        final String status = e.getCause() instanceof HttpStatusCodeException
+                ? String.valueOf(((HttpStatusCodeException) e.getCause()).getRawStatusCode()) : "none";
+        Counter.builder("dgca.repository.errors")
+                .description("Downstream errors answered as repository errors")
+                .tag("reason", e.getMessage())
+                .tag("status", status)
+                .register(this.meterRegistry)
+                .increment();
+        return ResponseEntity
+                .status(HttpStatus.GONE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new ProblemReportDto("", "Repository Error", "", e.getMessage()));
+    }
+
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(
             MethodArgumentNotValidException ex, HttpHeaders headers, HttpStatus status, WebRequest request) {
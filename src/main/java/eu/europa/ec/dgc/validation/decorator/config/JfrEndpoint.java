@@ -0,0 +1,57 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import eu.europa.ec.dgc.validation.decorator.service.JfrRecorder;
+import java.nio.file.Path;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint delivering a dump of the current flight recording. The dump shows the timing of all requests
+ * and the hashed subjects, so the endpoint must only be exposed on an authenticated management port
+ * (management.server.port), never next to the public API. Only created if enabled (management.endpoint.jfr.enabled)
+ * and exposed.
+ */
+@Component
+@Endpoint(id = "jfr")
+@ConditionalOnAvailableEndpoint(endpoint = JfrEndpoint.class)
+@RequiredArgsConstructor
+public class JfrEndpoint {
+
+    private final JfrRecorder jfrRecorder;
+
+    /**
+     * Dumps the flight recording.
+     * 
+     * @return JFR file, not found if nothing is recorded
+     */
+    @ReadOperation(produces = "application/octet-stream")
+    public Resource dump() {
+        final Path file = this.jfrRecorder.dump();
+        return file != null ? new FileSystemResource(file) : null;
+    }
+}
@@ -0,0 +1,84 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import eu.europa.ec.dgc.validation.decorator.jfr.RequestEvent;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectTracing;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Emits a flight recorder event for each controller request above the threshold of the recording.
+ */
+@Component
+public class JfrRequestInterceptor implements HandlerInterceptor {
+
+    private static final String EVENT_ATTRIBUTE = JfrRequestInterceptor.class.getName() + ".event";
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+            final Object handler) {
+        if (handler instanceof HandlerMethod) {
+            final RequestEvent event = new RequestEvent();
+            if (event.isEnabled()) {
+                event.begin();
+                request.setAttribute(EVENT_ATTRIBUTE, event);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response,
+            final Object handler, final Exception ex) {
+        final Object attribute = request.getAttribute(EVENT_ATTRIBUTE);
+        if (!(attribute instanceof RequestEvent)) {
+            return;
+        }
+        final RequestEvent event = (RequestEvent) attribute;
+        event.end();
+        if (event.shouldCommit()) {
+            final Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            event.setEndpoint(route != null ? route.toString() : RequestDeadlineInterceptor.getEndpoint(request));
+            event.setMethod(request.getMethod());
+            event.setStatus(response.getStatus());
+            event.setOutcome(ex != null ? "exception" : getOutcome(response.getStatus()));
+            event.setSubjectHash(SubjectTracing.currentHash());
+            event.setService(SubjectTracing.currentService());
+            event.commit();
+        }
+    }
+
+    private static String getOutcome(final int status) {
+        final HttpStatus.Series series = HttpStatus.Series.resolve(status);
+        if (series == HttpStatus.Series.CLIENT_ERROR) {
+            return "client_error";
+        } else if (series == HttpStatus.Series.SERVER_ERROR) {
+            return "server_error";
+        }
+        return "success";
+    }
+}
@@ -0,0 +1,155 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.BucketProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.EndpointLimitProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.RateLimitProperties;
+import eu.europa.ec.dgc.validation.decorator.exception.RequestThrottledException;
+import eu.europa.ec.dgc.validation.decorator.service.LoadShedder;
+import eu.europa.ec.dgc.validation.decorator.service.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Rejects requests above the rate limits of their subject or client (429) and sheds requests while the service is
+ * overloaded (503).
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String ADMITTED = RateLimitInterceptor.class.getName() + ".admitted";
+
+    private final DgcProperties dgcProperties;
+
+    private final RateLimiter rateLimiter;
+
+    private final LoadShedder loadShedder;
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+            final Object handler) {
+        final RateLimitProperties properties = this.dgcProperties.getRateLimit();
+        if (!properties.isEnabled() || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        final String endpoint = RequestDeadlineInterceptor.getEndpoint(request);
+
+        final String shedReason = this.loadShedder.shouldShed();
+        if (shedReason != null) {
+            this.reject(endpoint, shedReason);
+            throw new RequestThrottledException("Service overloaded", HttpStatus.SERVICE_UNAVAILABLE.value(), 1);
+        }
+
+        final EndpointLimitProperties limits = properties.getEndpoints().get(endpoint);
+        if (limits != null) {
+            final String subject = this.getSubjectKey(request);
+            if (subject != null) {
+                this.acquire(endpoint, "subject", subject, limits.getSubject());
+            }
+            this.acquire(endpoint, "client", this.getClientKey(request, properties), limits.getClient());
+        }
+
+        this.loadShedder.enter();
+        request.setAttribute(ADMITTED, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response,
+            final Object handler, final Exception ex) {
+        if (request.getAttribute(ADMITTED) != null) {
+            request.removeAttribute(ADMITTED);
+            this.loadShedder.exit();
+        }
+    }
+
+    private void acquire(final String endpoint, final String kind, final String key, final BucketProperties limit) {
+        if (limit == null) {
+            return;
+        }
+        final long wait = this.rateLimiter.tryAcquire(endpoint + "|" + kind + "|" + key, limit);
+        if (wait > 0) {
+            this.reject(endpoint, kind);
+            throw new RequestThrottledException(String.format("Rate limit of %s exceeded", kind),
+                    HttpStatus.TOO_MANY_REQUESTS.value(), Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait) + 1));
+        }
+    }
+
+    private void reject(final String endpoint, final String reason) {
+        Counter.builder("dgca.requests.rejected")
+                .description("Requests rejected by rate limits or load shedding")
+                .tag("endpoint", endpoint)
+                .tag("reason", reason)
+                .register(this.meterRegistry)
+                .increment();
+    }
+
+    @SuppressWarnings("unchecked")
+    private String getSubjectKey(final HttpServletRequest request) {
+        final Map<String, String> pathVariables = (Map<String, String>) request
+                .getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (pathVariables != null && pathVariables.containsKey("subject")) {
+            return pathVariables.get("subject");
+        }
+        // Access tokens belong to one subject, no need to verify them here
+        final String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (StringUtils.hasText(authorization)) {
+            long hash = 1125899906842597L;
+            for (final byte b : authorization.getBytes(StandardCharsets.UTF_8)) {
+                hash = 31 * hash + b;
+            }
+            return "token:" + Long.toHexString(hash);
+        }
+        return null;
+    }
+
+    private String getClientKey(final HttpServletRequest request, final RateLimitProperties properties) {
+        if (StringUtils.hasText(properties.getClientHeader()) && properties.getTrustedProxies() > 0) {
+            // Each proxy appends the address it received the request from. Entries before the one appended by the
+            // outermost trusted proxy are set by the caller and can be spoofed.
+            final String[] chain = String.join(",",
+                    Collections.list(request.getHeaders(properties.getClientHeader()))).split(",");
+            final int client = chain.length - properties.getTrustedProxies();
+            if (client >= 0 && StringUtils.hasText(chain[client])) {
+                return chain[client].trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,95 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.DeadlineProperties;
+import eu.europa.ec.dgc.validation.decorator.service.RequestDeadline;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Starts the end-to-end budget of each request handled by a controller and records how much of it was used.
+ */
+@Component
+@RequiredArgsConstructor
+public class RequestDeadlineInterceptor implements HandlerInterceptor {
+
+    private final DgcProperties dgcProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+            final Object handler) {
+        final DeadlineProperties properties = this.dgcProperties.getDeadline();
+        if (properties.isEnabled() && handler instanceof HandlerMethod) {
+            final String endpoint = getEndpoint(request);
+            final Duration budget = properties.getBudgets().getOrDefault(endpoint, properties.getDefaultBudget());
+            RequestDeadline.start(endpoint, budget);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response,
+            final Object handler, final Exception ex) {
+        final RequestDeadline deadline = RequestDeadline.current();
+        if (deadline == null) {
+            return;
+        }
+        RequestDeadline.clear();
+        final long elapsed = deadline.elapsedNanos();
+        Timer.builder("dgca.deadline.request")
+                .description("Duration of requests with an end-to-end budget")
+                .tag("endpoint", deadline.getEndpoint())
+                .tag("exceeded", String.valueOf(deadline.isExpired()))
+                .register(this.meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("dgca.deadline.consumed")
+                .description("Share of the end-to-end budget used by a request")
+                .baseUnit("ratio")
+                .tag("endpoint", deadline.getEndpoint())
+                .register(this.meterRegistry)
+                .record((double) elapsed / deadline.getBudget().toNanos());
+    }
+
+    /**
+     * Delivers the endpoint of a request, the first segment of its path.
+     * 
+     * @param request {@link HttpServletRequest}
+     * @return Endpoint, e.g. status
+     */
+    static String getEndpoint(final HttpServletRequest request) {
+        final String path = request.getRequestURI().substring(request.getContextPath().length());
+        final int start = path.startsWith("/") ? 1 : 0;
+        final int end = path.indexOf('/', start);
+        return end < 0 ? path.substring(start) : path.substring(start, end);
+    }
+}
@@ -20,11 +20,18 @@
 
 package eu.europa.ec.dgc.validation.decorator.config;
 
-import java.time.Duration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Tracer;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
@@ -40,12 +47,37 @@ public class RestTemplateConfig {
      * Build {@link RestTemplate} for current project.
      * 
      * @param builder {@link RestTemplateBuilder}
+     * @param meterRegistry {@link MeterRegistry}
+     * @param openTelemetry {@link OpenTelemetry}
+     * @param tracer {@link Tracer}
+     * @param captureInterceptor {@link CaptureClientHttpRequestInterceptor}, if capturing is enabled
      * @return {@link RestTemplate}
      */
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
-        return builder.setConnectTimeout(Duration.ofMillis(this.connectionTimeout))
-                .setReadTimeout(Duration.ofMillis(this.readTimeout))
+    public RestTemplate restTemplate(RestTemplateBuilder builder, MeterRegistry meterRegistry,
+            OpenTelemetry openTelemetry, Tracer tracer,
+            ObjectProvider<CaptureClientHttpRequestInterceptor> captureInterceptor) {
+        final List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>();
+        interceptors.add(new TracingClientHttpRequestInterceptor(openTelemetry, tracer));
+        interceptors.add(new DeadlineClientHttpRequestInterceptor(meterRegistry));
+        // Last in the chain, so that the captured duration is the one of the downstream alone
+        captureInterceptor.ifAvailable(interceptors::add);
+        // Timeouts are limited to the remaining budget of the current request
+        return builder
+                .requestFactory(() -> new DeadlineClientHttpRequestFactory(this.connectionTimeout, this.readTimeout))
+                .additionalInterceptors(interceptors)
                 .build();
     }
+
+    /**
+     * Build {@link CaptureClientHttpRequestInterceptor} as bean, so that its file is closed on shutdown.
+     * 
+     * @param dgcProperties {@link DgcProperties}
+     * @return {@link CaptureClientHttpRequestInterceptor}
+     */
+    @Bean
+    @ConditionalOnProperty(name = "dgc.capture.enabled", havingValue = "true")
+    public CaptureClientHttpRequestInterceptor captureClientHttpRequestInterceptor(DgcProperties dgcProperties) {
+        return new CaptureClientHttpRequestInterceptor(dgcProperties.getCapture());
+    }
 }
@@ -0,0 +1,80 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapSetter;
+import java.io.IOException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Opens a client span for each downstream request and passes the trace context on in the traceparent header. Only
+ * the host is recorded, paths of the downstream APIs contain subjects.
+ */
+@RequiredArgsConstructor
+public class TracingClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final TextMapSetter<HttpRequest> SETTER = (carrier, key, value) -> {
+        if (carrier != null) {
+            carrier.getHeaders().set(key, value);
+        }
+    };
+
+    private final OpenTelemetry openTelemetry;
+
+    private final Tracer tracer;
+
+    @Override
+    public ClientHttpResponse intercept(final HttpRequest request, final byte[] body,
+            final ClientHttpRequestExecution execution) throws IOException {
+        final Span span = this.tracer.spanBuilder(request.getMethodValue())
+                .setSpanKind(SpanKind.CLIENT)
+                .setAttribute("http.method", request.getMethodValue())
+                .setAttribute("net.peer.name", String.valueOf(request.getURI().getHost()))
+                .setAttribute("net.peer.port", (long) request.getURI().getPort())
+                .startSpan();
+        try (Scope scope = span.makeCurrent()) {
+            this.openTelemetry.getPropagators().getTextMapPropagator().inject(Context.current(), request, SETTER);
+            final ClientHttpResponse response = execution.execute(request, body);
+            span.setAttribute("http.status_code", response.getRawStatusCode());
+            if (response.getRawStatusCode() >= 500) {
+                span.setStatus(StatusCode.ERROR);
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            span.setStatus(StatusCode.ERROR);
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+}
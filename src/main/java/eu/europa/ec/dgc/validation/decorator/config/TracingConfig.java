@@ -0,0 +1,127 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.TracingProperties;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectTracing;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import java.nio.file.Path;
+import java.util.Collections;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@RequiredArgsConstructor
+public class TracingConfig {
+
+    static final String INSTRUMENTATION_NAME = "dgca-validation-decorator";
+
+    private static final String EXPORTER_LOGGING = "logging";
+
+    private static final String EXPORTER_FILE = "file";
+
+    private final DgcProperties dgcProperties;
+
+    /**
+     * Sets the secret of the subject hashes, see dgc.tracing.subjectHashSecret.
+     */
+    @PostConstruct
+    public void configureSubjectHash() {
+        SubjectTracing.setSecret(this.dgcProperties.getTracing().getSubjectHashSecret());
+    }
+
+    /**
+     * Exporter of finished spans, see dgc.tracing.exporter.
+     * 
+     * @return {@link SpanExporter}
+     */
+    @Bean
+    public SpanExporter spanExporter() {
+        final TracingProperties properties = this.dgcProperties.getTracing();
+        switch (properties.getExporter()) {
+            case EXPORTER_LOGGING:
+                return LoggingSpanExporter.create();
+            case EXPORTER_FILE:
+                return new FileSpanExporter(Path.of(properties.getFile()));
+            default:
+                return SpanExporter.composite(Collections.emptyList());
+        }
+    }
+
+    /**
+     * Tracer provider, closed on shutdown to flush pending spans.
+     * 
+     * @param spanExporter {@link SpanExporter}
+     * @return {@link SdkTracerProvider}
+     */
+    @Bean
+    public SdkTracerProvider sdkTracerProvider(final SpanExporter spanExporter) {
+        final TracingProperties properties = this.dgcProperties.getTracing();
+        final Sampler sampler = properties.isEnabled()
+                ? Sampler.parentBased(Sampler.traceIdRatioBased(properties.getSamplingRatio()))
+                : Sampler.alwaysOff();
+        // Writing to a file is slow, all other exporters get the spans right away
+        final SpanProcessor spanProcessor = EXPORTER_FILE.equals(properties.getExporter())
+                ? BatchSpanProcessor.builder(spanExporter).build()
+                : SimpleSpanProcessor.create(spanExporter);
+        return SdkTracerProvider.builder()
+                .setResource(Resource.getDefault().merge(Resource.create(
+                        Attributes.of(AttributeKey.stringKey("service.name"), INSTRUMENTATION_NAME))))
+                .setSampler(sampler)
+                .addSpanProcessor(spanProcessor)
+                .build();
+    }
+
+    /**
+     * OpenTelemetry with W3C trace context propagation. Not registered globally, the beans are injected.
+     * 
+     * @param sdkTracerProvider {@link SdkTracerProvider}
+     * @return {@link OpenTelemetry}
+     */
+    @Bean
+    public OpenTelemetry openTelemetry(final SdkTracerProvider sdkTracerProvider) {
+        return OpenTelemetrySdk.builder()
+                .setTracerProvider(sdkTracerProvider)
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+    }
+
+    @Bean
+    public Tracer tracer(final OpenTelemetry openTelemetry) {
+        return openTelemetry.getTracer(INSTRUMENTATION_NAME);
+    }
+}
@@ -22,6 +22,7 @@ package eu.europa.ec.dgc.validation.decorator.controller;
 
 import eu.europa.ec.dgc.validation.decorator.dto.CallbackRequest;
 import eu.europa.ec.dgc.validation.decorator.service.BackendService;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectTracing;
 import io.jsonwebtoken.JwtException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -67,6 +68,7 @@ public class CallbackController {
             @RequestHeader("X-Version") final String version,
             @Valid @RequestBody final String body) {
         log.debug("Incoming PUT request to '{}' with subject '{}' and bldy '{}'", PATH, subject, body);
+        SubjectTracing.tag(subject);
         try {
             final CallbackRequest request = this.backendService.parseRequest(subject, body);
             this.backendService.saveResult(subject, request);    
@@ -24,6 +24,7 @@ import eu.europa.ec.dgc.validation.decorator.dto.AccessTokenPayload;
 import eu.europa.ec.dgc.validation.decorator.dto.DccTokenRequest;
 import eu.europa.ec.dgc.validation.decorator.service.AccessTokenService;
 import eu.europa.ec.dgc.validation.decorator.service.DccTokenService;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectTracing;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -79,6 +80,7 @@ public class DccTokenController {
             final Map<String, Object> tokenContent = this.accessTokenService.parseAccessToken(token);
             if (tokenContent.containsKey("sub") && tokenContent.get("sub") instanceof String) {
                 final String subject = (String) tokenContent.get("sub");
+                SubjectTracing.tag(subject);
                 final AccessTokenPayload accessTockenPayload = this.dccTokenService
                         .getAccessTockenForValidationService(dccToken, subject);
                 final String accessToken = this.accessTokenService.buildAccessToken(accessTockenPayload);
@@ -22,6 +22,7 @@ package eu.europa.ec.dgc.validation.decorator.controller;
 
 import eu.europa.ec.dgc.validation.decorator.dto.QrCodeDto;
 import eu.europa.ec.dgc.validation.decorator.service.InitializeService;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectTracing;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -62,6 +63,7 @@ public class InitializeController {
     public ResponseEntity<QrCodeDto> initialize(
             @PathVariable(value = "subject", required = true) final String subject) {
         log.debug("Incoming GET request to '{}' with subject '{}'", PATH, subject);
+        SubjectTracing.tag(subject);
 
         return ResponseEntity.ok()
                 .cacheControl(CacheControl.noCache())
@@ -23,6 +23,7 @@ package eu.europa.ec.dgc.validation.decorator.controller;
 import eu.europa.ec.dgc.validation.decorator.dto.ResultToken;
 import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceStatusResponse;
 import eu.europa.ec.dgc.validation.decorator.service.AccessTokenService;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectTracing;
 import eu.europa.ec.dgc.validation.decorator.service.ValidationStatusService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -31,6 +32,7 @@ import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -59,7 +61,7 @@ public class ValidationStatusController {
             description = "The validation status endpoint provides the validation result of a subject")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "OK"),
-        @ApiResponse(responseCode = "204", description = "No content, wait for status"),
+        @ApiResponse(responseCode = "204", description = "No content, wait for status (see Retry-After header)"),
         @ApiResponse(responseCode = "401", description = "Unauthorized, if no access token are provided"),
         @ApiResponse(responseCode = "410", description = "Gone. Subject does not exist anymore"),
         @ApiResponse(responseCode = "500", description = "Internal Server Error")
@@ -72,15 +74,19 @@ public class ValidationStatusController {
             final Map<String, Object> tokenContent = this.accessTokenService.parseAccessToken(token);
             if (tokenContent.containsKey("sub") && tokenContent.get("sub") instanceof String) {
                 final String subject = (String) tokenContent.get("sub");
+                SubjectTracing.tag(subject);
                 final ValidationServiceStatusResponse status = this.validationStatusService.determineStatus(subject);
                 if (status.getResultToken() != null) {
                     return ResponseEntity.status(status.getHttpStatusCode())
                             .cacheControl(CacheControl.noCache())
                             .body(status.getResultToken());
                 }
-                return ResponseEntity.status(status.getHttpStatusCode())
-                        .cacheControl(CacheControl.noCache())
-                        .build();
+                final ResponseEntity.BodyBuilder response = ResponseEntity.status(status.getHttpStatusCode())
+                        .cacheControl(CacheControl.noCache());
+                if (status.getRetryAfter() != null) {
+                    response.header(HttpHeaders.RETRY_AFTER, String.valueOf(status.getRetryAfter()));
+                }
+                return response.build();
             }
         }
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
@@ -25,13 +25,17 @@ import java.util.List;
 import lombok.Data;
 
 @Data
-public class CallbackRequest {
+public class CallbackRequest implements RegisteredTimeClaims {
 
     @JsonProperty("iss")
     private String issuer;
     
     private Long iat;
     
+    private Long exp;
+    
+    private Long nbf;
+    
     private String sub;
     
     private String result;
@@ -20,13 +20,14 @@
 
 package eu.europa.ec.dgc.validation.decorator.dto;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.Data;
 
 @Data
-public class ResultToken {
+public class ResultToken implements RegisteredTimeClaims {
 
     private String result;
 
@@ -34,12 +35,19 @@ public class ResultToken {
 
     private String confirmation;
 
-    @JsonIgnore
+    // Claims of the validation service, read from its JWT but not passed on to the client
+    @JsonProperty(value = "iss", access = Access.WRITE_ONLY)
     private String issuer;
 
-    @JsonIgnore
+    @JsonProperty(access = Access.WRITE_ONLY)
     private Long iat;
 
+    @JsonProperty(access = Access.WRITE_ONLY)
+    private Long exp;
+
+    @JsonProperty(access = Access.WRITE_ONLY)
+    private Long nbf;
+
     @Data
     public static final class Result {
 
@@ -34,6 +34,9 @@ public class ValidationServiceStatusResponse {
     
     private ResultToken resultToken;
 
+    // Seconds the client should wait before polling again
+    private Long retryAfter;
+
     public ValidationServiceStatusResponse(final int httpStatusCode) {
         this(httpStatusCode, null);
     }
@@ -0,0 +1,48 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.exception;
+
+import lombok.Getter;
+
+public class DownstreamUnavailableException extends RuntimeException {
+
+    @Getter
+    private final String downstream;
+
+    // Seconds until the downstream may be asked again, null if unknown
+    @Getter
+    private final Long retryAfter;
+
+    /**
+     * Creates the exception.
+     * 
+     * @param downstream ID of the downstream
+     * @param message Reason
+     * @param retryAfter Seconds until the downstream may be asked again, null if unknown
+     * @param inner Cause
+     */
+    public DownstreamUnavailableException(final String downstream, final String message, final Long retryAfter,
+            final Throwable inner) {
+        super(message, inner);
+        this.downstream = downstream;
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,46 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.exception;
+
+import lombok.Getter;
+
+public class RequestThrottledException extends RuntimeException {
+
+    @Getter
+    private final int status;
+
+    // Seconds until the client may try again
+    @Getter
+    private final long retryAfter;
+
+    /**
+     * Creates the exception.
+     * 
+     * @param message Reason
+     * @param status HTTP status, 429 or 503
+     * @param retryAfter Seconds until the client may try again
+     */
+    public RequestThrottledException(final String message, final int status, final long retryAfter) {
+        super(message);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+}
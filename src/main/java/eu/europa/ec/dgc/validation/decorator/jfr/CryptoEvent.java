@@ -0,0 +1,61 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * Signature created or verified by the access token service. Recorded only if it took longer than the threshold.
+ */
+@Name("eu.europa.ec.dgc.validation.decorator.Crypto")
+@Label("Crypto Operation")
+@Description("Signature created or verified")
+@Category("DGCA Validation Decorator")
+@StackTrace(false)
+@Threshold("10 ms")
+@Setter
+public class CryptoEvent extends Event {
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Algorithm")
+    private String alg;
+
+    @Label("Key ID")
+    private String kid;
+
+    @Label("Outcome")
+    private String outcome;
+
+    @Label("Subject Hash")
+    private String subjectHash;
+
+    @Label("Service ID")
+    private String service;
+}
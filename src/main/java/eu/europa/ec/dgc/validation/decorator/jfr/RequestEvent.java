@@ -0,0 +1,61 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+/**
+ * Request handled by a controller. Recorded only if it took longer than the threshold.
+ */
+@Name("eu.europa.ec.dgc.validation.decorator.Request")
+@Label("Request")
+@Description("Request handled by a controller")
+@Category("DGCA Validation Decorator")
+@StackTrace(false)
+@Threshold("200 ms")
+@Setter
+public class RequestEvent extends Event {
+
+    @Label("Endpoint")
+    private String endpoint;
+
+    @Label("HTTP Method")
+    private String method;
+
+    @Label("HTTP Status")
+    private int status;
+
+    @Label("Outcome")
+    private String outcome;
+
+    @Label("Subject Hash")
+    private String subjectHash;
+
+    @Label("Service ID")
+    private String service;
+}
@@ -21,8 +21,14 @@
 package eu.europa.ec.dgc.validation.decorator.repository;
 
 import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.ServiceProperties;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultRequest;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultRequest.SubjectResultRequest;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultResponse;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultResponse.SubjectResultResponse;
 import eu.europa.ec.dgc.validation.decorator.entity.ServiceResultRequest;
 import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpStatusCodeException;
 
 public interface BackendRepository {
 
@@ -51,4 +57,39 @@ public interface BackendRepository {
      */
     void result(String subject, ServiceResultRequest body);
 
+    /**
+     * Whether the booking service accepts several results in one request.
+     * 
+     * @return true, if {@link #results(ServiceBatchResultRequest)} sends one request
+     */
+    default boolean supportsBatchResults() {
+        return false;
+    }
+
+    /**
+     * Booking service batch result endpoint. The default implementation sends every result on its own.
+     * 
+     * @param request {@link ServiceBatchResultRequest}
+     * @return {@link ServiceBatchResultResponse} with the outcome per subject
+     */
+    default ServiceBatchResultResponse results(final ServiceBatchResultRequest request) {
+        final ServiceBatchResultResponse response = new ServiceBatchResultResponse();
+        for (final SubjectResultRequest item : request.getResults()) {
+            final SubjectResultResponse outcome = new SubjectResultResponse();
+            outcome.setSubject(item.getSubject());
+            try {
+                this.result(item.getSubject(), item.getResult());
+                outcome.setStatus(HttpStatus.OK.value());
+            } catch (HttpStatusCodeException e) {
+                outcome.setStatus(e.getRawStatusCode());
+                outcome.setMessage(e.getMessage());
+            } catch (RuntimeException e) {
+                outcome.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                outcome.setMessage(e.getMessage());
+            }
+            response.getResults().add(outcome);
+        }
+        return response;
+    }
+
 }
\ No newline at end of file
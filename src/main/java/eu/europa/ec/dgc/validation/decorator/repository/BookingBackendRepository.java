@@ -20,12 +20,24 @@
 
 package eu.europa.ec.dgc.validation.decorator.repository;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
 import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.ServiceProperties;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultRequest;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultResponse;
 import eu.europa.ec.dgc.validation.decorator.entity.ServiceResultRequest;
 import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse;
 import eu.europa.ec.dgc.validation.decorator.service.AccessTokenService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import javax.annotation.PostConstruct;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -34,6 +46,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -50,10 +63,49 @@ public class BookingBackendRepository implements BackendRepository {
     @Value("${booking.urls.result}")
     private String resultUrl;
 
+    @Value("${booking.urls.results:}")
+    private String resultsUrl;
+
+    @Value("${booking.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${booking.cache.tokenContent.ttl:30s}")
+    private Duration tokenContentTtl;
+
+    @Value("${booking.cache.tokenContent.maxSize:10000}")
+    private long tokenContentMaxSize;
+
     private final RestTemplate restTpl;
 
     private final AccessTokenService accessTokenService;
 
+    private final DgcProperties dgcProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final DownstreamGuard downstreamGuard;
+
+    private final DownstreamRetry downstreamRetry;
+
+    // Pending loads are cached as well, concurrent misses of a key share one booking call
+    private AsyncCache<TokenContentKey, ServiceTokenContentResponse> tokenContentCache;
+
+    /**
+     * Creates the token content cache. A TTL of 0 disables the cache.
+     */
+    @PostConstruct
+    public void createTokenContentCache() {
+        if (this.tokenContentTtl.compareTo(Duration.ZERO) > 0) {
+            this.tokenContentCache = Caffeine.newBuilder()
+                    .maximumSize(this.tokenContentMaxSize)
+                    .expireAfterWrite(this.tokenContentTtl)
+                    .recordStats()
+                    .buildAsync();
+            CaffeineCacheMetrics.monitor(this.meterRegistry, this.tokenContentCache.synchronous(),
+                    "booking.tokenContent");
+        }
+    }
+
     /**
      * Booking service token content endpoint.
      * 
@@ -74,6 +126,34 @@ public class BookingBackendRepository implements BackendRepository {
      */
     @Override
     public ServiceTokenContentResponse tokenContent(final String subject, final ServiceProperties service) {
+        if (this.tokenContentCache == null) {
+            return this.requestTokenContent(subject, service);
+        }
+        final String serviceId = service != null ? service.getId() : null;
+        if (serviceId != null) {
+            // Booking service records the used service, content without service is outdated
+            this.tokenContentCache.synchronous().invalidate(new TokenContentKey(subject, null));
+        }
+        final CompletableFuture<ServiceTokenContentResponse> loading = new CompletableFuture<>();
+        final CompletableFuture<ServiceTokenContentResponse> content = this.tokenContentCache.get(
+                new TokenContentKey(subject, serviceId), (key, executor) -> loading);
+        if (content == loading) {
+            // Loaded by the calling thread, it keeps the deadline and tracing of its request. A result submitted
+            // meanwhile invalidates the pending future, the outdated content is not cached.
+            try {
+                loading.complete(this.requestTokenContent(subject, service));
+            } catch (RuntimeException e) {
+                loading.completeExceptionally(e);
+            }
+        }
+        try {
+            return content.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private ServiceTokenContentResponse requestTokenContent(final String subject, final ServiceProperties service) {
         final UriComponentsBuilder urlBuilder = UriComponentsBuilder
                 .fromUriString(this.tokenContentUrl.replace(PLACEHOLDER_SUBJECT, subject));
 
@@ -93,8 +173,9 @@ public class BookingBackendRepository implements BackendRepository {
 
         log.debug("Send service ID (encoded) to booking service '{}'", serviceIdBase64);
         log.debug("REST Call to '{}' starting", url);
-        final ResponseEntity<ServiceTokenContentResponse> response = this.restTpl.exchange(url, HttpMethod.GET,
-                entity, ServiceTokenContentResponse.class);
+        final ResponseEntity<ServiceTokenContentResponse> response = this.downstreamRetry.call(
+                "booking.tokenContent", true, () -> this.downstreamGuard.call(DownstreamGuard.BOOKING, "tokenContent",
+                        () -> this.restTpl.exchange(url, HttpMethod.GET, entity, ServiceTokenContentResponse.class)));
         return response.getBody();
     }
 
@@ -118,6 +199,58 @@ public class BookingBackendRepository implements BackendRepository {
         final HttpEntity<ServiceResultRequest> entity = new HttpEntity<>(body, headers);
 
         log.debug("REST Call to '{}' starting", url);
-        this.restTpl.exchange(url, HttpMethod.PUT, entity, String.class);
+        this.downstreamRetry.call("booking.result", false, () -> this.downstreamGuard.call(DownstreamGuard.BOOKING,
+                "result", () -> this.restTpl.exchange(url, HttpMethod.PUT, entity, String.class)));
+        this.invalidateTokenContent(subject);
+    }
+
+    @Override
+    public boolean supportsBatchResults() {
+        return this.batchEnabled && StringUtils.hasText(this.resultsUrl);
+    }
+
+    /**
+     * Booking service batch result endpoint.
+     * 
+     * @param request {@link ServiceBatchResultRequest}
+     * @return {@link ServiceBatchResultResponse} with the outcome per subject
+     */
+    @Override
+    public ServiceBatchResultResponse results(final ServiceBatchResultRequest request) {
+        if (!this.supportsBatchResults()) {
+            return BackendRepository.super.results(request);
+        }
+        request.getResults().stream()
+                .filter(item -> item.getResult().getDccStatus() != null)
+                .forEach(item -> item.getResult().getDccStatus().setSub(item.getSubject()));
+
+        final HttpHeaders headers = new HttpHeaders();
+        headers.add("Authorization", accessTokenService.buildHeaderToken());
+
+        final HttpEntity<ServiceBatchResultRequest> entity = new HttpEntity<>(request, headers);
+
+        log.debug("REST Call to '{}' starting with {} results", this.resultsUrl, request.getResults().size());
+        final ResponseEntity<ServiceBatchResultResponse> response = this.downstreamRetry.call(
+                "booking.results", false, () -> this.downstreamGuard.call(DownstreamGuard.BOOKING, "results",
+                        () -> this.restTpl.exchange(this.resultsUrl, HttpMethod.PUT, entity,
+                                ServiceBatchResultResponse.class)));
+        request.getResults().forEach(item -> this.invalidateTokenContent(item.getSubject()));
+        return response.getBody();
+    }
+
+    private void invalidateTokenContent(final String subject) {
+        if (this.tokenContentCache != null) {
+            this.tokenContentCache.synchronous().invalidate(new TokenContentKey(subject, null));
+            this.dgcProperties.getServices().forEach(service -> this.tokenContentCache.synchronous().invalidate(
+                    new TokenContentKey(subject, service.getId())));
+        }
+    }
+
+    @Data
+    private static final class TokenContentKey {
+
+        private final String subject;
+
+        private final String serviceId;
     }
 }
@@ -0,0 +1,279 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.repository;
+
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.DownstreamProperties;
+import eu.europa.ec.dgc.validation.decorator.exception.DeadlineExceededException;
+import eu.europa.ec.dgc.validation.decorator.exception.DownstreamUnavailableException;
+import eu.europa.ec.dgc.validation.decorator.jfr.DownstreamCallEvent;
+import eu.europa.ec.dgc.validation.decorator.service.LoadShedder;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectTracing;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Guards calls to a downstream (booking service or a validation service) with a circuit breaker and a bulkhead, so a
+ * slow or failing downstream does not block the request threads of the others.
+ */
+@Slf4j
+@Component
+public class DownstreamGuard {
+
+    public static final String BOOKING = "booking";
+
+    private static final String ATTRIBUTE_DOWNSTREAM = "dgca.downstream";
+
+    private static final String NO_STATUS = "none";
+
+    private static final String OUTCOME_SUCCESS = "success";
+
+    private static final String OUTCOME_ERROR = "error";
+
+    private static final String OUTCOME_REJECTED = "rejected";
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+
+    private final BulkheadRegistry bulkheadRegistry;
+
+    private final long openStateSeconds;
+
+    private final LoadShedder loadShedder;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Tracer tracer;
+
+    // Timer per tag combination, registered on first use
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a circuit breaker and a bulkhead for the booking service and each configured service.
+     * 
+     * @param dgcProperties {@link DgcProperties}
+     * @param meterRegistry {@link MeterRegistry}
+     * @param loadShedder {@link LoadShedder}
+     * @param tracer {@link Tracer}
+     */
+    public DownstreamGuard(final DgcProperties dgcProperties, final MeterRegistry meterRegistry,
+            final LoadShedder loadShedder, final Tracer tracer) {
+        final DownstreamProperties properties = dgcProperties.getDownstream();
+        this.loadShedder = loadShedder;
+        this.meterRegistry = meterRegistry;
+        this.tracer = tracer;
+        this.openStateSeconds = properties.getWaitDurationInOpenState().getSeconds();
+
+        final CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .slowCallRateThreshold(properties.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(properties.getSlowCallDuration())
+                .slidingWindowSize(properties.getSlidingWindowSize())
+                .minimumNumberOfCalls(properties.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(properties.getWaitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(properties.getPermittedNumberOfCallsInHalfOpenState())
+                // Rejected requests, a full bulkhead or an exhausted request budget say nothing about the health
+                // of the downstream
+                .ignoreExceptions(HttpClientErrorException.class, BulkheadFullException.class,
+                        DeadlineExceededException.class)
+                .build();
+        final BulkheadConfig bulkheadConfig = BulkheadConfig.custom()
+                .maxConcurrentCalls(properties.getMaxConcurrentCalls())
+                .maxWaitDuration(properties.getMaxWaitDuration())
+                .build();
+        this.circuitBreakerRegistry = CircuitBreakerRegistry.of(circuitBreakerConfig);
+        this.bulkheadRegistry = BulkheadRegistry.of(bulkheadConfig);
+
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(this.circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(this.bulkheadRegistry).bindTo(meterRegistry);
+        this.circuitBreakerRegistry.getEventPublisher().onEntryAdded(added -> {
+            final CircuitBreaker circuitBreaker = added.getAddedEntry();
+            circuitBreaker.getEventPublisher().onStateTransition(event -> {
+                log.warn("Circuit breaker of downstream '{}': {}", event.getCircuitBreakerName(),
+                        event.getStateTransition());
+                Counter.builder("dgca.downstream.circuitbreaker.transitions")
+                        .description("State transitions of the downstream circuit breakers")
+                        .tag("name", event.getCircuitBreakerName())
+                        .tag("from", event.getStateTransition().getFromState().name())
+                        .tag("to", event.getStateTransition().getToState().name())
+                        .register(meterRegistry)
+                        .increment();
+            });
+        });
+
+        // Create all guards up front, so their metrics exist before the first call
+        this.circuitBreakerRegistry.circuitBreaker(BOOKING);
+        this.bulkheadRegistry.bulkhead(BOOKING);
+        dgcProperties.getServices().forEach(service -> {
+            this.circuitBreakerRegistry.circuitBreaker(service.getId());
+            this.bulkheadRegistry.bulkhead(service.getId());
+        });
+    }
+
+    /**
+     * Calls a downstream. Fails fast if its circuit is open, too many calls are in progress or it answers too slowly
+     * to the requests.
+     * 
+     * @param downstream ID of the downstream, {@link #BOOKING} or the service ID
+     * @param method Repository method, used as metric tag
+     * @param call Request to the downstream
+     * @param <T> Response type
+     * @return Response of the call
+     * @throws DownstreamUnavailableException if the call is not permitted
+     */
+    public <T> T call(final String downstream, final String method, final Supplier<T> call) {
+        final Span span = this.tracer.spanBuilder(downstream + "." + method)
+                .setAttribute(ATTRIBUTE_DOWNSTREAM, downstream)
+                .startSpan();
+        final DownstreamCallEvent event = new DownstreamCallEvent();
+        event.begin();
+        try (Scope scope = span.makeCurrent()) {
+            return this.guardedCall(downstream, method, call, event);
+        } finally {
+            span.end();
+        }
+    }
+
+    private <T> T guardedCall(final String downstream, final String method, final Supplier<T> call,
+            final DownstreamCallEvent event) {
+        final CircuitBreaker circuitBreaker = this.circuitBreakerRegistry.circuitBreaker(downstream);
+        final Bulkhead bulkhead = this.bulkheadRegistry.bulkhead(downstream);
+        final long start = System.nanoTime();
+        if (this.loadShedder.shouldShed(downstream)) {
+            this.record(downstream, method, NO_STATUS, OUTCOME_REJECTED, start, event);
+            throw new DownstreamUnavailableException(downstream,
+                    String.format("Downstream '%s' unavailable: answers too slowly", downstream), 1L, null);
+        }
+        try {
+            final T response = circuitBreaker.executeSupplier(Bulkhead.decorateSupplier(bulkhead, call));
+            if (response instanceof ResponseEntity) {
+                final int status = ((ResponseEntity<?>) response).getStatusCodeValue();
+                this.record(downstream, method, String.valueOf(status), getOutcome(status), start, event);
+            } else {
+                this.record(downstream, method, NO_STATUS, OUTCOME_SUCCESS, start, event);
+            }
+            return response;
+        } catch (CallNotPermittedException e) {
+            this.record(downstream, method, NO_STATUS, OUTCOME_REJECTED, start, event);
+            throw new DownstreamUnavailableException(downstream,
+                    String.format("Downstream '%s' unavailable: circuit open", downstream), this.openStateSeconds, e);
+        } catch (BulkheadFullException e) {
+            this.record(downstream, method, NO_STATUS, OUTCOME_REJECTED, start, event);
+            throw new DownstreamUnavailableException(downstream,
+                    String.format("Downstream '%s' unavailable: too many concurrent calls", downstream), null, e);
+        } catch (RestClientResponseException e) {
+            final int status = e.getRawStatusCode();
+            this.record(downstream, method, String.valueOf(status), getOutcome(status), start, event);
+            throw e;
+        } catch (RuntimeException e) {
+            // Connection errors and timeouts
+            this.record(downstream, method, NO_STATUS, OUTCOME_ERROR, start, event);
+            throw e;
+        }
+    }
+
+    private void record(final String downstream, final String method, final String status, final String outcome,
+            final long start, final DownstreamCallEvent event) {
+        final long elapsed = System.nanoTime() - start;
+        if (!OUTCOME_REJECTED.equals(outcome)) {
+            // Failed calls, timeouts in particular, are a latency signal as well
+            this.loadShedder.recordDownstreamLatency(downstream, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+        this.timers.computeIfAbsent(new TimerKey(downstream, method, status, outcome),
+                key -> Timer.builder("dgca.downstream.requests")
+                        .description("Calls to the booking service and the validation services")
+                        .tag("service", key.getDownstream())
+                        .tag("method", key.getMethod())
+                        .tag("status", key.getStatus())
+                        .tag("outcome", key.getOutcome())
+                        .publishPercentileHistogram()
+                        .register(this.meterRegistry))
+                .record(elapsed, TimeUnit.NANOSECONDS);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.setService(downstream);
+            event.setMethod(method);
+            event.setStatus(status);
+            event.setOutcome(outcome);
+            event.setSubjectHash(SubjectTracing.currentHash());
+            event.commit();
+        }
+
+        final Span span = Span.current();
+        span.setAttribute("dgca.outcome", outcome);
+        if (!NO_STATUS.equals(status)) {
+            span.setAttribute("http.status_code", Long.parseLong(status));
+        }
+        if (!OUTCOME_SUCCESS.equals(outcome)) {
+            span.setStatus(StatusCode.ERROR);
+        }
+    }
+
+    private static String getOutcome(final int status) {
+        final HttpStatus.Series series = HttpStatus.Series.resolve(status);
+        if (series == HttpStatus.Series.SUCCESSFUL) {
+            return OUTCOME_SUCCESS;
+        } else if (series == HttpStatus.Series.CLIENT_ERROR) {
+            return "client_error";
+        } else if (series == HttpStatus.Series.SERVER_ERROR) {
+            return "server_error";
+        }
+        return "unknown";
+    }
+
+    @Data
+    private static final class TimerKey {
+
+        private final String downstream;
+
+        private final String method;
+
+        private final String status;
+
+        private final String outcome;
+    }
+}
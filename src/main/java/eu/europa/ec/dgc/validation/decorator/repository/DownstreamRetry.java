@@ -0,0 +1,156 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.repository;
+
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.RetryProperties;
+import eu.europa.ec.dgc.validation.decorator.service.RequestDeadline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Retries downstream calls after transient errors (connection errors, 502, 503 and 504) with exponential backoff and
+ * jitter. Only idempotent operations and operations configured as safe are retried, and only while the budget of the
+ * current request allows to wait.
+ */
+@Slf4j
+@Component
+public class DownstreamRetry {
+
+    private final RetryProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    // Counter per tag combination, registered on first use
+    private final Map<CounterKey, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the retry.
+     * 
+     * @param dgcProperties {@link DgcProperties}
+     * @param meterRegistry {@link MeterRegistry}
+     */
+    public DownstreamRetry(final DgcProperties dgcProperties, final MeterRegistry meterRegistry) {
+        this.properties = dgcProperties.getRetry();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Calls a downstream and retries after transient errors.
+     * 
+     * @param operation Name of the operation, e.g. booking.tokenContent
+     * @param idempotent Whether the operation may be sent more than once
+     * @param call Request to the downstream
+     * @param <T> Response type
+     * @return Response of the call
+     */
+    public <T> T call(final String operation, final boolean idempotent, final Supplier<T> call) {
+        final int maxAttempts = idempotent || this.properties.getSafeOperations().contains(operation)
+                ? this.properties.getMaxAttempts() : 1;
+        int attempt = 1;
+        while (true) {
+            try {
+                final T response = call.get();
+                if (attempt > 1) {
+                    this.counter(operation, "success_after_retry").increment();
+                }
+                return response;
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    if (attempt > 1) {
+                        this.counter(operation, "exhausted").increment();
+                    }
+                    throw e;
+                }
+                final long backoff = this.getBackoff(attempt);
+                final RequestDeadline deadline = RequestDeadline.current();
+                if (deadline != null && deadline.remainingMillis() <= backoff) {
+                    this.counter(operation, "deadline").increment();
+                    throw e;
+                }
+                log.debug("Retry '{}' in {} ms after attempt {}: {}", operation, backoff, attempt, e.getMessage());
+                this.counter(operation, "retry").increment();
+                this.sleep(backoff, e);
+                attempt++;
+            }
+        }
+    }
+
+    private long getBackoff(final int attempt) {
+        final double exponential = this.properties.getInitialBackoff().toMillis()
+                * Math.pow(this.properties.getMultiplier(), attempt - 1.0);
+        final double jitter = this.properties.getJitter() * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        final double backoff = Math.min(this.properties.getMaxBackoff().toMillis(), exponential) * (1 + jitter);
+        return Math.max(0, Math.round(backoff));
+    }
+
+    private void sleep(final long millis, final RuntimeException cause) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    private Counter counter(final String operation, final String outcome) {
+        return this.counters.computeIfAbsent(new CounterKey(operation, outcome),
+                key -> Counter.builder("dgca.downstream.retry")
+                        .description("Retries of downstream calls")
+                        .tag("operation", key.getOperation())
+                        .tag("outcome", key.getOutcome())
+                        .register(this.meterRegistry));
+    }
+
+    private static boolean isTransient(final RuntimeException e) {
+        if (e instanceof ResourceAccessException) {
+            return true;
+        }
+        if (e instanceof HttpServerErrorException) {
+            final int status = ((HttpServerErrorException) e).getRawStatusCode();
+            return status == HttpStatus.BAD_GATEWAY.value()
+                    || status == HttpStatus.SERVICE_UNAVAILABLE.value()
+                    || status == HttpStatus.GATEWAY_TIMEOUT.value();
+        }
+        return false;
+    }
+
+    @Data
+    private static final class CounterKey {
+
+        private final String operation;
+
+        private final String outcome;
+    }
+}
@@ -0,0 +1,275 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.repository;
+
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.HedgingProperties;
+import eu.europa.ec.dgc.validation.decorator.exception.DeadlineExceededException;
+import eu.europa.ec.dgc.validation.decorator.service.LoadShedder;
+import eu.europa.ec.dgc.validation.decorator.service.RequestDeadline;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectTracing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hedges side-effect-free requests: if a downstream does not answer within the configured percentile of its recent
+ * latencies, one duplicate request is sent and the first successful response wins. A budget shared by all downstreams
+ * caps the additional load.
+ */
+@Slf4j
+@Component
+public class HedgedRequestExecutor {
+
+    private static final long TOKEN = 1000;
+
+    private final HedgingProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ThreadPoolExecutor executor;
+
+    private final ConcurrentMap<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    // Hedge budget in thousandths of a request
+    private final AtomicLong hedgeTokens = new AtomicLong();
+
+    private final long tokensPerRequest;
+
+    private final long maxTokens;
+
+    /**
+     * Creates the executor.
+     * 
+     * @param dgcProperties {@link DgcProperties}
+     * @param meterRegistry {@link MeterRegistry}
+     */
+    public HedgedRequestExecutor(final DgcProperties dgcProperties, final MeterRegistry meterRegistry) {
+        this.properties = dgcProperties.getHedging();
+        this.meterRegistry = meterRegistry;
+        this.tokensPerRequest = Math.round(this.properties.getBudgetRatio() * TOKEN);
+        this.maxTokens = this.properties.getMaxBurst() * TOKEN;
+
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("hedged-request-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(0, this.properties.getMaxThreads(), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Executes a side-effect-free request, hedged if enabled.
+     * 
+     * @param downstream ID of the downstream
+     * @param call Request to the downstream
+     * @param <T> Response type
+     * @return Response of the first successful request
+     */
+    public <T> T execute(final String downstream, final Supplier<T> call) {
+        if (!this.properties.isEnabled()) {
+            return call.get();
+        }
+        final LatencyWindow window = this.latencies.computeIfAbsent(downstream,
+                key -> new LatencyWindow(this.properties.getWindowSize()));
+        // Budget, subject, request mark and trace context of the request thread
+        final Context context = Context.current();
+        final Supplier<T> deadlineAware = SubjectTracing.propagate(RequestDeadline.propagate(
+                LoadShedder.propagate(call)));
+        final Supplier<T> propagated = () -> {
+            try (Scope scope = context.makeCurrent()) {
+                return deadlineAware.get();
+            }
+        };
+
+        final long start = System.nanoTime();
+        final CompletableFuture<T> primary;
+        try {
+            primary = CompletableFuture.supplyAsync(propagated, this.executor);
+        } catch (RejectedExecutionException e) {
+            return call.get();
+        }
+        primary.thenRun(() -> window.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        this.counter("dgca.hedge.requests", downstream).increment();
+        this.hedgeTokens.getAndUpdate(tokens -> Math.min(this.maxTokens, tokens + this.tokensPerRequest));
+
+        final long delay = this.getHedgeDelay(window);
+        final RequestDeadline deadline = RequestDeadline.current();
+        if (deadline != null && deadline.remainingMillis() <= delay) {
+            return this.await(primary);
+        }
+        try {
+            return primary.get(delay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("No response of '{}' within {} ms", downstream, delay);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+
+        if (!this.spendHedgeToken()) {
+            this.counter("dgca.hedge.skipped", downstream).increment();
+            return this.await(primary);
+        }
+        final CompletableFuture<T> winner = new CompletableFuture<>();
+        final AtomicInteger pending = new AtomicInteger(2);
+        final CompletableFuture<T> hedge;
+        try {
+            hedge = CompletableFuture.supplyAsync(propagated, this.executor);
+        } catch (RejectedExecutionException e) {
+            return this.await(primary);
+        }
+        this.counter("dgca.hedge.sent", downstream).increment();
+        final Counter wins = this.counter("dgca.hedge.wins", downstream);
+        primary.whenComplete((response, ex) -> complete(winner, pending, response, ex, null));
+        hedge.whenComplete((response, ex) -> complete(winner, pending, response, ex, wins));
+        return this.await(winner);
+    }
+
+    private long getHedgeDelay(final LatencyWindow window) {
+        final long percentile = window.percentile(this.properties.getPercentile(), this.properties.getMinSamples());
+        final long delay = percentile < 0 ? this.properties.getInitialDelay().toMillis() : percentile;
+        return Math.max(this.properties.getMinDelay().toMillis(), delay);
+    }
+
+    private boolean spendHedgeToken() {
+        long tokens = this.hedgeTokens.get();
+        while (tokens >= TOKEN) {
+            if (this.hedgeTokens.compareAndSet(tokens, tokens - TOKEN)) {
+                return true;
+            }
+            tokens = this.hedgeTokens.get();
+        }
+        return false;
+    }
+
+    private Counter counter(final String name, final String downstream) {
+        return Counter.builder(name)
+                .description("Hedged requests")
+                .tag("service", downstream)
+                .register(this.meterRegistry);
+    }
+
+    private <T> T await(final CompletableFuture<T> future) {
+        final RequestDeadline deadline = RequestDeadline.current();
+        try {
+            return deadline == null ? future.get() : future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException(String.format("Budget of endpoint '%s' exhausted waiting for response",
+                    deadline.getEndpoint()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static <T> void complete(final CompletableFuture<T> winner, final AtomicInteger pending,
+            final T response, final Throwable ex, final Counter wins) {
+        if (ex == null) {
+            if (winner.complete(response) && wins != null) {
+                wins.increment();
+            }
+        } else if (pending.decrementAndGet() == 0) {
+            winner.completeExceptionally(ex);
+        }
+    }
+
+    private static RuntimeException unwrap(final Throwable e) {
+        Throwable cause = e;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    private static final class LatencyWindow {
+
+        private static final int RECOMPUTE_INTERVAL = 16;
+
+        private final long[] samples;
+
+        private int next;
+
+        private int count;
+
+        private int sinceRecompute;
+
+        private long percentile = -1;
+
+        private LatencyWindow(final int size) {
+            this.samples = new long[size];
+        }
+
+        private synchronized void record(final long millis) {
+            this.samples[this.next] = millis;
+            this.next = (this.next + 1) % this.samples.length;
+            this.count = Math.min(this.count + 1, this.samples.length);
+            this.sinceRecompute++;
+        }
+
+        private synchronized long percentile(final double quantile, final int minSamples) {
+            if (this.count < minSamples) {
+                return -1;
+            }
+            if (this.percentile < 0 || this.sinceRecompute >= RECOMPUTE_INTERVAL) {
+                final long[] sorted = Arrays.copyOf(this.samples, this.count);
+                Arrays.sort(sorted);
+                final int index = (int) Math.ceil(quantile * this.count) - 1;
+                this.percentile = sorted[Math.max(0, Math.min(this.count - 1, index))];
+                this.sinceRecompute = 0;
+            }
+            return this.percentile;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.repository;
+
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.LoadBalancingProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.ServiceProperties;
+import eu.europa.ec.dgc.validation.decorator.exception.DownstreamUnavailableException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Balances the requests to a validation service over its instances. Requests go to the healthy instance with the
+ * fewest outstanding requests, weighted by its recent latency. Services with sticky routing send all requests of a
+ * subject to the same instance (rendezvous hashing). The instance of a subject holds its state, so requests of the
+ * subject fail while the instance is unhealthy instead of going to another instance.
+ */
+@Slf4j
+@Component
+public class ServiceLoadBalancer {
+
+    private static final double SMOOTHING = 0.2;
+
+    private final LoadBalancingProperties properties;
+
+    private final RestTemplate restTpl;
+
+    private final Map<String, List<Instance>> instances = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the instances of all configured services.
+     * 
+     * @param dgcProperties {@link DgcProperties}
+     * @param restTpl {@link RestTemplate}
+     * @param meterRegistry {@link MeterRegistry}
+     */
+    public ServiceLoadBalancer(final DgcProperties dgcProperties, final RestTemplate restTpl,
+            final MeterRegistry meterRegistry) {
+        this.properties = dgcProperties.getLoadBalancing();
+        this.restTpl = restTpl;
+        for (final ServiceProperties service : dgcProperties.getServices()) {
+            final List<Instance> serviceInstances = this.getInstances(service);
+            serviceInstances.forEach(instance -> Gauge.builder("dgca.loadbalancer.outstanding",
+                    instance.outstanding, AtomicInteger::get)
+                    .description("Outstanding requests per validation service instance")
+                    .tag("service", service.getId())
+                    .tag("endpoint", instance.endpoint)
+                    .register(meterRegistry));
+            Gauge.builder("dgca.loadbalancer.healthy", serviceInstances,
+                    list -> list.stream().filter(instance -> instance.healthy).count())
+                    .description("Healthy instances per validation service")
+                    .tag("service", service.getId())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Selects the instance endpoint for a request.
+     * 
+     * @param service {@link ServiceProperties}
+     * @param subject Subject ID, null if the request belongs to no subject
+     * @return Endpoint of the selected instance
+     * @throws DownstreamUnavailableException if the instance of a subject with sticky routing is unhealthy
+     */
+    public String select(final ServiceProperties service, final String subject) {
+        final List<Instance> serviceInstances = this.getInstances(service);
+        if (serviceInstances.size() == 1) {
+            return serviceInstances.get(0).endpoint;
+        }
+        if (service.isStickyRouting() && subject != null) {
+            // Hashed over all instances, so the instance of a subject does not change with the health of others
+            final Instance instance = selectBySubject(serviceInstances, subject);
+            if (!instance.healthy) {
+                throw new DownstreamUnavailableException(service.getId(), String.format(
+                        "Instance '%s' of service '%s' unavailable", instance.endpoint, service.getId()),
+                        TimeUnit.MILLISECONDS.toSeconds(this.properties.getProbeInterval().toMillis() + 999), null);
+            }
+            return instance.endpoint;
+        }
+        List<Instance> candidates = serviceInstances.stream()
+                .filter(instance -> instance.healthy)
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            // All instances down: let the circuit breaker decide instead of failing here
+            candidates = serviceInstances;
+        }
+        return selectByLoad(candidates).endpoint;
+    }
+
+    /**
+     * Whether requests of different subjects may get a different instance, so subject related responses must not be
+     * shared over subjects.
+     * 
+     * @param service {@link ServiceProperties}
+     * @return true, if the service uses sticky routing over several instances
+     */
+    public boolean isSticky(final ServiceProperties service) {
+        return service.isStickyRouting() && this.getInstances(service).size() > 1;
+    }
+
+    /**
+     * Calls an instance and keeps track of its outstanding requests and latency.
+     * 
+     * @param service {@link ServiceProperties}
+     * @param endpoint Endpoint of the instance, see {@link #select(ServiceProperties, String)}
+     * @param call Request to the instance
+     * @param <T> Response type
+     * @return Response of the call
+     */
+    public <T> T call(final ServiceProperties service, final String endpoint, final Supplier<T> call) {
+        final Instance instance = this.getInstances(service).stream()
+                .filter(candidate -> candidate.endpoint.equals(endpoint))
+                .findFirst()
+                .orElse(null);
+        if (instance == null) {
+            return call.get();
+        }
+        instance.outstanding.incrementAndGet();
+        final long start = System.nanoTime();
+        try {
+            final T response = call.get();
+            instance.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return response;
+        } finally {
+            instance.outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * Probes all instances of services with several instances and takes unhealthy ones out of rotation.
+     */
+    @Scheduled(fixedDelayString = "#{@dgcProperties.loadBalancing.probeInterval.toMillis()}")
+    public void probe() {
+        this.instances.forEach((serviceId, serviceInstances) -> {
+            if (serviceInstances.size() > 1) {
+                serviceInstances.forEach(instance -> this.probe(serviceId, instance));
+            }
+        });
+    }
+
+    private void probe(final String serviceId, final Instance instance) {
+        final String url = UriComponentsBuilder.fromUriString(instance.endpoint)
+                .path(this.properties.getHealthPath())
+                .toUriString();
+        boolean success;
+        try {
+            final ResponseEntity<String> response = this.restTpl.getForEntity(url, String.class);
+            success = response.getStatusCode().is2xxSuccessful();
+        } catch (RestClientException e) {
+            log.debug("Health probe of '{}' failed: {}", url, e.getMessage());
+            success = false;
+        }
+
+        if (success) {
+            instance.failedProbes = 0;
+            if (!instance.healthy) {
+                log.info("Instance '{}' of service '{}' back in rotation", instance.endpoint, serviceId);
+                instance.healthy = true;
+            }
+        } else if (++instance.failedProbes >= this.properties.getUnhealthyThreshold() && instance.healthy) {
+            log.warn("Instance '{}' of service '{}' taken out of rotation", instance.endpoint, serviceId);
+            instance.healthy = false;
+        }
+    }
+
+    private List<Instance> getInstances(final ServiceProperties service) {
+        return this.instances.computeIfAbsent(service.getId(), key -> {
+            final Set<String> endpoints = new LinkedHashSet<>();
+            endpoints.add(service.getServiceEndpoint());
+            if (service.getInstanceEndpoints() != null) {
+                endpoints.addAll(service.getInstanceEndpoints());
+            }
+            final List<Instance> serviceInstances = new ArrayList<>();
+            endpoints.forEach(endpoint -> serviceInstances.add(new Instance(endpoint)));
+            return Collections.unmodifiableList(serviceInstances);
+        });
+    }
+
+    private static Instance selectByLoad(final List<Instance> candidates) {
+        Instance selected = null;
+        double selectedScore = Double.MAX_VALUE;
+        for (final Instance candidate : candidates) {
+            final double score = (candidate.outstanding.get() + 1) * Math.max(1, candidate.latency);
+            if (score < selectedScore) {
+                selected = candidate;
+                selectedScore = score;
+            }
+        }
+        return selected;
+    }
+
+    private static Instance selectBySubject(final List<Instance> candidates, final String subject) {
+        Instance selected = null;
+        long selectedWeight = Long.MIN_VALUE;
+        for (final Instance candidate : candidates) {
+            final long weight = mix(hash(subject) * 31 + hash(candidate.endpoint));
+            if (selected == null || weight > selectedWeight) {
+                selected = candidate;
+                selectedWeight = weight;
+            }
+        }
+        return selected;
+    }
+
+    private static long hash(final String value) {
+        long hash = 1125899906842597L;
+        for (final byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    private static long mix(final long value) {
+        long mixed = value;
+        mixed = (mixed ^ (mixed >>> 30)) * 0xbf58476d1ce4e5b9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94d049bb133111ebL;
+        return mixed ^ (mixed >>> 31);
+    }
+
+    private static final class Instance {
+
+        private final String endpoint;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        // Smoothed latency in milliseconds
+        private volatile double latency;
+
+        private volatile boolean healthy = true;
+
+        // Only used by the probing thread
+        private int failedProbes;
+
+        private Instance(final String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        private void recordLatency(final long millis) {
+            // Lost updates under contention only delay the average a bit
+            this.latency = this.latency == 0 ? millis : this.latency + SMOOTHING * (millis - this.latency);
+        }
+    }
+}
@@ -27,10 +27,12 @@ import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceInitializeR
 import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceInitializeResponse;
 import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceStatusResponse;
 import eu.europa.ec.dgc.validation.decorator.service.AccessTokenService;
+import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache.ValueRetrievalException;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -45,25 +47,53 @@ import org.springframework.web.util.UriComponentsBuilder;
 @RequiredArgsConstructor
 public class ValidationServiceRepository {
 
+    private static final String IDENTITY_CACHE = "vsidentity";
+
     private final RestTemplate restTpl;
 
     private final AccessTokenService accessTokenService;
 
+    private final DownstreamGuard downstreamGuard;
+
+    private final HedgedRequestExecutor hedgedRequestExecutor;
+
+    private final ServiceLoadBalancer serviceLoadBalancer;
+
+    private final DownstreamRetry downstreamRetry;
+
+    private final CacheManager cacheManager;
+
     /**
      * Validation service identity endpoint. Example:
      * https://dgca-validation-service-eu-test.cfapps.eu10.hana.ondemand.com/.
      * 
+     * @param service {@link ServiceProperties}
+     * @param subject Subject ID, selects the instance of services with sticky routing
      * @return {@link ValidationServiceIdentityResponse}
      */
-    @Cacheable("vsidentity")
-    public ValidationServiceIdentityResponse identity(final ServiceProperties service) {
-        final String url = UriComponentsBuilder.fromUriString(service.getServiceEndpoint())
+    public ValidationServiceIdentityResponse identity(final ServiceProperties service, final String subject) {
+        final String endpoint = this.serviceLoadBalancer.select(service, subject);
+        // Instances of a service share their identity, unless subjects are bound to an instance
+        final String cacheKey = this.serviceLoadBalancer.isSticky(service) ? endpoint : service.getId();
+        try {
+            return this.cacheManager.getCache(IDENTITY_CACHE).get(cacheKey, () -> this.downstreamRetry
+                    .call("validation.identity", true, () -> this.requestIdentity(service, endpoint)));
+        } catch (ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private ValidationServiceIdentityResponse requestIdentity(final ServiceProperties service, final String endpoint) {
+        final String url = UriComponentsBuilder.fromUriString(endpoint)
                 .path("identity")
                 .toUriString();
 
         log.debug("REST Call to '{}' starting", url);
-        final ResponseEntity<ValidationServiceIdentityResponse> response = this.restTpl
-                .getForEntity(url, ValidationServiceIdentityResponse.class);
+        final ResponseEntity<ValidationServiceIdentityResponse> response = this.exchange(service, endpoint,
+                "identity", () -> this.restTpl.getForEntity(url, ValidationServiceIdentityResponse.class));
         
         // Workaround: remove unsupported VerificationMethod
         final ValidationServiceIdentityResponse resBody = response.getBody();
@@ -78,7 +108,7 @@ public class ValidationServiceRepository {
      * Clear 'vsidentity' cache. 600.000 = 10m.
      */
     @Scheduled(fixedDelay = 600000, initialDelay = 10000)
-    @CacheEvict(value = "vsidentity", allEntries = true)
+    @CacheEvict(value = IDENTITY_CACHE, allEntries = true)
     public void clearVsIdentityCache() {
         log.debug("Clear 'vsidentity' cache");
     }
@@ -96,7 +126,8 @@ public class ValidationServiceRepository {
             final DccTokenRequest dccToken,
             final String subject,
             final String nonce) {
-        final String url = UriComponentsBuilder.fromUriString(service.getServiceEndpoint())
+        final String endpoint = this.serviceLoadBalancer.select(service, subject);
+        final String url = UriComponentsBuilder.fromUriString(endpoint)
                 .pathSegment("initialize", subject)
                 .toUriString();
 
@@ -113,8 +144,10 @@ public class ValidationServiceRepository {
         final HttpEntity<ValidationServiceInitializeRequest> entity = new HttpEntity<>(body, headers);
 
         log.debug("REST Call to '{}' starting", url);
-        final ResponseEntity<ValidationServiceInitializeResponse> response = this.restTpl
-                .exchange(url, HttpMethod.PUT, entity, ValidationServiceInitializeResponse.class);
+        final ResponseEntity<ValidationServiceInitializeResponse> response = this.downstreamRetry.call(
+                "validation.initialize", false, () -> this.exchange(service, endpoint, "initialize",
+                        () -> this.restTpl.exchange(url, HttpMethod.PUT, entity,
+                                ValidationServiceInitializeResponse.class)));
         return response.getBody();
     }
 
@@ -125,7 +158,14 @@ public class ValidationServiceRepository {
      * @return {@link ValidationServiceStatusResponse}
      */
     public ValidationServiceStatusResponse status(final ServiceProperties service, final String subject) {
-        final String url = UriComponentsBuilder.fromUriString(service.getServiceEndpoint())
+        // Side-effect-free GET, may be sent twice
+        return this.downstreamRetry.call("validation.status", true, () -> this.hedgedRequestExecutor
+                .execute(service.getId(), () -> this.requestStatus(service, subject)));
+    }
+
+    private ValidationServiceStatusResponse requestStatus(final ServiceProperties service, final String subject) {
+        final String endpoint = this.serviceLoadBalancer.select(service, subject);
+        final String url = UriComponentsBuilder.fromUriString(endpoint)
                 .pathSegment("status", subject)
                 .toUriString();
 
@@ -136,7 +176,8 @@ public class ValidationServiceRepository {
         final HttpEntity<String> entity = new HttpEntity<>(headers);
 
         log.debug("REST Call to '{}' starting", url);
-        final ResponseEntity<String> response = this.restTpl.exchange(url, HttpMethod.GET, entity, String.class);
+        final ResponseEntity<String> response = this.exchange(service, endpoint, "status",
+                () -> this.restTpl.exchange(url, HttpMethod.GET, entity, String.class));
         switch (response.getStatusCode()) {
             case OK:
                 return new ValidationServiceStatusResponse(response.getStatusCodeValue(), response.getBody());
@@ -146,4 +187,10 @@ public class ValidationServiceRepository {
                 return new ValidationServiceStatusResponse(response.getStatusCodeValue());
         }
     }
+
+    private <T> ResponseEntity<T> exchange(final ServiceProperties service, final String endpoint,
+            final String method, final Supplier<ResponseEntity<T>> call) {
+        return this.serviceLoadBalancer.call(service, endpoint,
+                () -> this.downstreamGuard.call(service.getId(), method, call));
+    }
 }
@@ -0,0 +1,212 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import eu.europa.ec.dgc.validation.decorator.dto.AccessTokenPayload;
+import eu.europa.ec.dgc.validation.decorator.dto.AccessTokenPayload.AccessTokenConditions;
+import java.util.List;
+
+/**
+ * Writes JWT header and claims as compact JSON, byte for byte as the jjwt builder serializes them with Jackson: the
+ * header as typ, kid, alg; the claims as iss and exp, followed by the claims added as {@link java.util.HashMap} in its
+ * iteration order (sub, aud, t, v, iat, vc, jti) and the conditions in the field order of
+ * {@link AccessTokenConditions}. Claims added as map keep null values, header and registered claims drop them.
+ */
+final class AccessTokenClaimsWriter {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final StringBuilder json = new StringBuilder(1024);
+
+    private boolean first = true;
+
+    AccessTokenClaimsWriter() {
+        this.json.append('{');
+    }
+
+    /**
+     * Writes the claims of an access token from its payload.
+     * 
+     * @param issuer Issuer of the tokens
+     * @param payload {@link AccessTokenPayload}
+     * @return Compact JSON
+     */
+    static String accessTokenClaims(final String issuer, final AccessTokenPayload payload) {
+        final AccessTokenClaimsWriter writer = new AccessTokenClaimsWriter()
+                .beginAccessToken(issuer, payload);
+        final AccessTokenConditions conditions = payload.getConditions();
+        if (conditions == null) {
+            writer.nullValue("vc");
+        } else {
+            writer.beginObject("vc")
+                    .string("lang", conditions.getLang())
+                    .string("fnt", conditions.getFnt())
+                    .string("gnt", conditions.getGnt())
+                    .string("dob", conditions.getDob())
+                    .string("coa", conditions.getCoa())
+                    .string("cod", conditions.getCod())
+                    .string("roa", conditions.getRoa())
+                    .string("rod", conditions.getRod())
+                    .strings("type", conditions.getType())
+                    .strings("category", conditions.getCategory())
+                    .string("validationClock", conditions.getValidationClock())
+                    .string("validFrom", conditions.getValidFrom())
+                    .string("validTo", conditions.getValidTo())
+                    .endObject();
+        }
+        return writer.endAccessToken(payload);
+    }
+
+    AccessTokenClaimsWriter string(final String name, final String value) {
+        this.name(name);
+        if (value == null) {
+            this.json.append("null");
+        } else {
+            this.quote(value);
+        }
+        return this;
+    }
+
+    AccessTokenClaimsWriter optionalString(final String name, final String value) {
+        return value == null ? this : this.string(name, value);
+    }
+
+    AccessTokenClaimsWriter strings(final String name, final List<String> values) {
+        this.name(name);
+        if (values == null) {
+            this.json.append("null");
+            return this;
+        }
+        this.json.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                this.json.append(',');
+            }
+            if (values.get(i) == null) {
+                this.json.append("null");
+            } else {
+                this.quote(values.get(i));
+            }
+        }
+        this.json.append(']');
+        return this;
+    }
+
+    AccessTokenClaimsWriter number(final String name, final long value) {
+        this.name(name);
+        this.json.append(value);
+        return this;
+    }
+
+    AccessTokenClaimsWriter nullValue(final String name) {
+        this.name(name);
+        this.json.append("null");
+        return this;
+    }
+
+    AccessTokenClaimsWriter beginObject(final String name) {
+        this.name(name);
+        this.json.append('{');
+        this.first = true;
+        return this;
+    }
+
+    AccessTokenClaimsWriter endObject() {
+        this.json.append('}');
+        this.first = false;
+        return this;
+    }
+
+    String finish() {
+        return this.json.append('}').toString();
+    }
+
+    /**
+     * Writes the claims before the conditions, which follow as object "vc".
+     * 
+     * @param issuer Issuer of the tokens
+     * @param payload {@link AccessTokenPayload}
+     * @return this
+     */
+    private AccessTokenClaimsWriter beginAccessToken(final String issuer, final AccessTokenPayload payload) {
+        return this.optionalString("iss", issuer)
+                .number("exp", payload.getExp())
+                .string("sub", payload.getSub())
+                .string("aud", payload.getAud())
+                .number("t", payload.getType())
+                .string("v", payload.getVersion())
+                .number("iat", payload.getIat());
+    }
+
+    /**
+     * Writes the claims after the conditions.
+     * 
+     * @param payload {@link AccessTokenPayload}
+     * @return Compact JSON
+     */
+    private String endAccessToken(final AccessTokenPayload payload) {
+        return this.string("jti", payload.getJti())
+                .finish();
+    }
+
+    private void name(final String name) {
+        if (!this.first) {
+            this.json.append(',');
+        }
+        this.first = false;
+        this.quote(name);
+        this.json.append(':');
+    }
+
+    // Escapes as Jackson does by default: quote, backslash and control characters, everything else as is
+    private void quote(final String value) {
+        this.json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                this.json.append('\\').append(c);
+            } else if (c < 0x20) {
+                switch (c) {
+                    case '\b':
+                        this.json.append("\\b");
+                        break;
+                    case '\t':
+                        this.json.append("\\t");
+                        break;
+                    case '\n':
+                        this.json.append("\\n");
+                        break;
+                    case '\f':
+                        this.json.append("\\f");
+                        break;
+                    case '\r':
+                        this.json.append("\\r");
+                        break;
+                    default:
+                        this.json.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                }
+            } else {
+                this.json.append(c);
+            }
+        }
+        this.json.append('"');
+    }
+}
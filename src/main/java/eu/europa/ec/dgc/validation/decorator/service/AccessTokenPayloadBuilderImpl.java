@@ -27,7 +27,6 @@ import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse.
 import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse.SubjectResponse;
 import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceInitializeResponse;
 import java.time.Instant;
-import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import lombok.RequiredArgsConstructor;
@@ -39,10 +38,10 @@ public class AccessTokenPayloadBuilderImpl implements AccessTokenPayloadBuilder
 
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssxxxxx");
 
-    private static final DateTimeFormatter DOB_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-
     private final DgcProperties dgcProperties;
 
+    private final BirthDateNormalizer birthDateNormalizer;
+
     @Override
     public AccessTokenPayload build(
             final String subject,
@@ -50,7 +49,7 @@ public class AccessTokenPayloadBuilderImpl implements AccessTokenPayloadBuilder
             final SubjectResponse subjectResponse,
             final OccurrenceInfoResponse occurrenceInfo) {
         final AccessTokenConditions accessTokenConditions = new AccessTokenConditions();
-        accessTokenConditions.setLang(occurrenceInfo.getLanguage());        
+        accessTokenConditions.setLang(occurrenceInfo.getLanguage());
         accessTokenConditions.setGnt(subjectResponse.getForename());
         accessTokenConditions.setFnt(subjectResponse.getLastname());
         accessTokenConditions.setCoa(occurrenceInfo.getCountryOfArrival());
@@ -59,11 +58,11 @@ public class AccessTokenPayloadBuilderImpl implements AccessTokenPayloadBuilder
         accessTokenConditions.setRod(occurrenceInfo.getRegionOfDeparture());
         accessTokenConditions.setType(occurrenceInfo.getConditionTypes());
         accessTokenConditions.setCategory(occurrenceInfo.getCategories());
-        accessTokenConditions.setDob(this.parseBirthDay(subjectResponse.getBirthDate()));
+        accessTokenConditions.setDob(this.birthDateNormalizer.normalize(subjectResponse.getBirthDate()));
 
         final OffsetDateTime departureTime = occurrenceInfo.getDepartureTime();
         final OffsetDateTime arrivalTime = occurrenceInfo.getArrivalTime();
-        accessTokenConditions.setValidFrom(departureTime.format(FORMATTER));        
+        accessTokenConditions.setValidFrom(departureTime.format(FORMATTER));
         accessTokenConditions.setValidationClock(arrivalTime.format(FORMATTER));
         accessTokenConditions.setValidTo(arrivalTime.format(FORMATTER));
 
@@ -79,25 +78,4 @@ public class AccessTokenPayloadBuilderImpl implements AccessTokenPayloadBuilder
         accessTokenPayload.setVersion("1.0");
         return accessTokenPayload;
     }
-
-    private String parseBirthDay(final String in) {
-        if (in != null && !in.isBlank()) {
-            try {
-                return OffsetDateTime.parse(in).format(DOB_FORMATTER);
-            } catch (Exception e) {
-                // not handle
-            }
-            try {
-                return LocalDate.parse(in, DateTimeFormatter.ofPattern("MM-dd-yyyy")).format(DOB_FORMATTER);
-            } catch (Exception e) {
-                // not handle
-            }
-            try {
-                return in.substring(0, 10);
-            } catch (Exception e) {
-                // not handle
-            }
-        }
-        return in;
-    }
 }
@@ -20,24 +20,48 @@
 
 package eu.europa.ec.dgc.validation.decorator.service;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
 import eu.europa.ec.dgc.validation.decorator.dto.AccessTokenPayload;
+import eu.europa.ec.dgc.validation.decorator.dto.RegisteredTimeClaims;
 import eu.europa.ec.dgc.validation.decorator.exception.DccException;
+import eu.europa.ec.dgc.validation.decorator.jfr.CryptoEvent;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Header;
+import io.jsonwebtoken.InvalidClaimException;
 import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.Jwt;
-import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.PrematureJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.impl.DefaultJwtParser;
+import io.jsonwebtoken.impl.crypto.DefaultJwtSignatureValidator;
+import io.jsonwebtoken.impl.crypto.DefaultJwtSigner;
+import io.jsonwebtoken.impl.crypto.JwtSignatureValidator;
+import io.jsonwebtoken.impl.crypto.JwtSigner;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.time.Instant;
-import java.util.Collections;
-import java.util.Date;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -48,10 +72,46 @@ public class AccessTokenService {
 
     public static final String TOKEN_PREFIX = "Bearer ";
 
+    private static final String UNKNOWN = "unknown";
+
+    // Outcome tag of dgca.crypto.operations: ok, expired, premature, wrong_issuer, bad_signature, malformed or error
+    private static final String OUTCOME_OK = "ok";
+
+    private static final String OUTCOME_EXPIRED = "expired";
+
+    private static final String OUTCOME_PREMATURE = "premature";
+
+    private static final String OUTCOME_WRONG_ISSUER = "wrong_issuer";
+
+    private static final String OUTCOME_BAD_SIGNATURE = "bad_signature";
+
+    private static final String OUTCOME_MALFORMED = "malformed";
+
+    private static final String OUTCOME_ERROR = "error";
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder BASE64URL_DECODER = Base64.getUrlDecoder();
+
+    // Same settings as the mapper of jjwt, except for claims without a field in the target type
+    private static final ObjectMapper CLAIMS_MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
     private final DgcProperties properties;
 
     private final KeyProvider keyProvider;
 
+    private final MeterRegistry meterRegistry;
+
+    // Header and signer per sign key, the key is loaded once at startup
+    private final Map<String, TokenSigner> signers = new ConcurrentHashMap<>();
+
+    // Readers are immutable and thread-safe, one per claims type
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    // Timer per tag combination, registered on first use
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
     /**
      * This token is generated an default header token without 'Bearer' prefix.
      */
@@ -73,8 +133,7 @@ public class AccessTokenService {
      * This token is generated an default access token without claims.
      */
     public String buildAccessToken() {
-        return this.getAccessTokenBuilder()
-                .compact();
+        return this.sign(this.beginClaims().finish());
     }
 
     /**
@@ -84,9 +143,9 @@ public class AccessTokenService {
      * @return {@link String} JWT token
      */
     public String buildAccessToken(final String subject) {
-        return this.getAccessTokenBuilder()
-                .addClaims(Collections.singletonMap("sub", subject))
-                .compact();
+        return this.sign(this.beginClaims()
+                .string("sub", subject)
+                .finish());
     }
 
     /**
@@ -96,19 +155,7 @@ public class AccessTokenService {
      * @return {@link String} JWT token
      */
     public String buildAccessToken(final AccessTokenPayload payload) {
-        final Map<String, Object> claims = new HashMap<>();
-        claims.put("jti", payload.getJti());
-        claims.put("sub", payload.getSub());
-        claims.put("aud", payload.getAud());
-        claims.put("iat", payload.getIat());
-        claims.put("t", payload.getType());
-        claims.put("v", payload.getVersion());
-        claims.put("vc", payload.getConditions());
-
-        final JwtBuilder builder = this.getAccessTokenBuilder()
-                .setExpiration(new Date(payload.getExp() * 1000))
-                .addClaims(claims);
-        return builder.compact();
+        return this.sign(AccessTokenClaimsWriter.accessTokenClaims(this.properties.getToken().getIssuer(), payload));
     }
 
     /**
@@ -157,8 +204,114 @@ public class AccessTokenService {
             parser.requireIssuer(this.properties.getToken().getIssuer());
         }
 
-        final Jws<Claims> parsedToken = parser.parseClaimsJws(tokenContent);
-        return new HashMap<>(parsedToken.getBody());
+        final long start = System.nanoTime();
+        final CryptoEvent event = new CryptoEvent();
+        event.begin();
+        Header<?> header = null;
+        String outcome = OUTCOME_MALFORMED;
+        try {
+            final Jws<Claims> parsedToken = parser.parseClaimsJws(tokenContent);
+            header = parsedToken.getHeader();
+            outcome = OUTCOME_OK;
+            return new HashMap<>(parsedToken.getBody());
+        } catch (ExpiredJwtException e) {
+            header = e.getHeader();
+            outcome = OUTCOME_EXPIRED;
+            throw e;
+        } catch (PrematureJwtException e) {
+            header = e.getHeader();
+            outcome = OUTCOME_PREMATURE;
+            throw e;
+        } catch (InvalidClaimException e) {
+            // Issuer is the only required claim
+            header = e.getHeader();
+            outcome = OUTCOME_WRONG_ISSUER;
+            throw e;
+        } catch (SignatureException e) {
+            outcome = OUTCOME_BAD_SIGNATURE;
+            throw e;
+        } finally {
+            // Header is only used after the signature was verified, forged tokens can't add tag values
+            if (header instanceof JwsHeader) {
+                this.record("verify", ((JwsHeader<?>) header).getAlgorithm(), ((JwsHeader<?>) header).getKeyId(),
+                        outcome, start, event);
+            } else {
+                this.record("verify", null, null, outcome, start, event);
+            }
+        }
+    }
+
+    /**
+     * Reads the claims of a token signed by a validation service into the given type, if the signature is valid and
+     * the token is neither expired nor premature. The claims are read only once, straight into the type.
+     * 
+     * @param token with or without prefix
+     * @param type Type of the claims, unknown claims are ignored
+     * @param keyResolver Public key for the key ID of the header, the key ID is null if the header has none
+     * @return Claims of the token
+     */
+    public <T extends RegisteredTimeClaims> T parseToken(final String token, final Class<T> type,
+            final Function<String, PublicKey> keyResolver) {
+        final String tokenContent = token.startsWith(TOKEN_PREFIX) ? token.replace(TOKEN_PREFIX, "") : token;
+
+        final long start = System.nanoTime();
+        final CryptoEvent event = new CryptoEvent();
+        event.begin();
+        String alg = null;
+        String kid = null;
+        String outcome = OUTCOME_MALFORMED;
+        try {
+            final int headerEnd = tokenContent.indexOf(JwtParser.SEPARATOR_CHAR);
+            final int claimsEnd = tokenContent.indexOf(JwtParser.SEPARATOR_CHAR, headerEnd + 1);
+            if (headerEnd < 0 || claimsEnd < 0 || tokenContent.indexOf(JwtParser.SEPARATOR_CHAR, claimsEnd + 1) >= 0) {
+                throw new MalformedJwtException("JWT strings must contain exactly 2 period characters");
+            }
+            if (claimsEnd == tokenContent.length() - 1) {
+                throw new UnsupportedJwtException("Unsigned JWT not supported");
+            }
+
+            final JsonNode header = CLAIMS_MAPPER.readTree(decode(tokenContent.substring(0, headerEnd)));
+            final SignatureAlgorithm signatureAlgorithm = SignatureAlgorithm.forName(header.path("alg").asText());
+            if (!signatureAlgorithm.isRsa() && !signatureAlgorithm.isEllipticCurve()) {
+                throw new UnsupportedJwtException(
+                        String.format("Signature algorithm '%s' not supported", signatureAlgorithm.getValue()));
+            }
+            final String keyId = header.path(JwsHeader.KEY_ID).textValue();
+            final PublicKey publicKey = keyResolver.apply(keyId);
+            final JwtSignatureValidator validator;
+            try {
+                validator = new DefaultJwtSignatureValidator(signatureAlgorithm, publicKey);
+            } catch (IllegalArgumentException e) {
+                throw new UnsupportedJwtException(String.format("Key of ID '%s' can not verify %s signatures",
+                        keyId, signatureAlgorithm.getValue()), e);
+            }
+            if (!validator.isValid(tokenContent.substring(0, claimsEnd), tokenContent.substring(claimsEnd + 1))) {
+                outcome = OUTCOME_BAD_SIGNATURE;
+                throw new SignatureException("JWT signature does not match locally computed signature");
+            }
+            // Header is only used after the signature was verified, forged tokens can't add tag values
+            alg = signatureAlgorithm.getValue();
+            kid = keyId;
+
+            final T claims = this.readers.computeIfAbsent(type, CLAIMS_MAPPER::readerFor)
+                    .readValue(decode(tokenContent.substring(headerEnd + 1, claimsEnd)));
+            final long now = System.currentTimeMillis();
+            if (claims.getExp() != null && now > TimeUnit.SECONDS.toMillis(claims.getExp())) {
+                outcome = OUTCOME_EXPIRED;
+                throw new ExpiredJwtException(null, null, "JWT expired at " + Instant.ofEpochSecond(claims.getExp()));
+            }
+            if (claims.getNbf() != null && now < TimeUnit.SECONDS.toMillis(claims.getNbf())) {
+                outcome = OUTCOME_PREMATURE;
+                throw new PrematureJwtException(null, null,
+                        "JWT must not be accepted before " + Instant.ofEpochSecond(claims.getNbf()));
+            }
+            outcome = OUTCOME_OK;
+            return claims;
+        } catch (IOException e) {
+            throw new MalformedJwtException("Unable to read JWT JSON", e);
+        } finally {
+            this.record("verify", alg, kid, outcome, start, event);
+        }
     }
 
     /**
@@ -189,19 +342,96 @@ public class AccessTokenService {
         }
     }
 
-    private JwtBuilder getAccessTokenBuilder() {
+    private String sign(final String claims) {
         final String activeSignKey = this.keyProvider.getActiveSignKey();
-        final PrivateKey privateKey = this.keyProvider.receivePrivateKey(activeSignKey);
-        final String algorithm = this.keyProvider.getAlg(activeSignKey);
-        final SignatureAlgorithm signatureAlgorithm = SignatureAlgorithm.valueOf(algorithm);
-        final String keyId = this.keyProvider.getKid(activeSignKey);
+        final long start = System.nanoTime();
+        final CryptoEvent event = new CryptoEvent();
+        event.begin();
+        String outcome = OUTCOME_ERROR;
+        try {
+            final TokenSigner signer = this.signers.computeIfAbsent(activeSignKey, this::createSigner);
+            final String unsignedToken = signer.encodedHeader + JwtParser.SEPARATOR_CHAR
+                    + BASE64URL.encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+            final String token = unsignedToken + JwtParser.SEPARATOR_CHAR + signer.jwtSigner.sign(unsignedToken);
+            outcome = OUTCOME_OK;
+            return token;
+        } finally {
+            this.record("sign", this.keyProvider.getAlg(activeSignKey), this.keyProvider.getKid(activeSignKey),
+                    outcome, start, event);
+        }
+    }
+
+    private void record(final String operation, final String alg, final String kid, final String outcome,
+            final long start, final CryptoEvent event) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.setOperation(operation);
+            event.setAlg(alg);
+            event.setKid(kid);
+            event.setOutcome(outcome);
+            event.setSubjectHash(SubjectTracing.currentHash());
+            event.setService(SubjectTracing.currentService());
+            event.commit();
+        }
+
+        final TimerKey key = new TimerKey(operation, alg != null ? alg : UNKNOWN, kid != null ? kid : UNKNOWN, outcome);
+        this.timers.computeIfAbsent(key, k -> Timer.builder("dgca.crypto.operations")
+                .description("Signatures created and verified")
+                .tag("operation", k.getOperation())
+                .tag("alg", k.getAlg())
+                .tag("kid", k.getKid())
+                .tag("outcome", k.getOutcome())
+                .register(this.meterRegistry))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private static byte[] decode(final String base64Url) {
+        try {
+            return BASE64URL_DECODER.decode(base64Url);
+        } catch (IllegalArgumentException e) {
+            throw new MalformedJwtException("JWT part is not Base64URL encoded", e);
+        }
+    }
+
+    private AccessTokenClaimsWriter beginClaims() {
         final int validity = this.properties.getToken().getInitialize().getValidity();
+        return new AccessTokenClaimsWriter()
+                .optionalString("iss", this.properties.getToken().getIssuer())
+                .number("exp", Instant.now().plusSeconds(validity).getEpochSecond());
+    }
+
+    private TokenSigner createSigner(final String keyName) {
+        final PrivateKey privateKey = this.keyProvider.receivePrivateKey(keyName);
+        final SignatureAlgorithm signatureAlgorithm = SignatureAlgorithm.valueOf(this.keyProvider.getAlg(keyName));
+        final String header = new AccessTokenClaimsWriter()
+                .optionalString("typ", this.properties.getToken().getType())
+                .optionalString("kid", this.keyProvider.getKid(keyName))
+                .optionalString("alg", signatureAlgorithm.getValue())
+                .finish();
+        return new TokenSigner(BASE64URL.encodeToString(header.getBytes(StandardCharsets.UTF_8)),
+                new DefaultJwtSigner(signatureAlgorithm, privateKey));
+    }
+
+    @Data
+    private static final class TimerKey {
+
+        private final String operation;
+
+        private final String alg;
+
+        private final String kid;
+
+        private final String outcome;
+    }
+
+    /**
+     * Header of a sign key, encoded once, and the signer of its tokens.
+     */
+    @RequiredArgsConstructor
+    private static final class TokenSigner {
+
+        private final String encodedHeader;
 
-        return Jwts.builder()
-                .signWith(signatureAlgorithm, privateKey)
-                .setHeaderParam("typ", this.properties.getToken().getType())
-                .setHeaderParam("kid", keyId)
-                .setIssuer(this.properties.getToken().getIssuer())
-                .setExpiration(new Date(Instant.now().plusSeconds(validity).toEpochMilli()));
+        private final JwtSigner jwtSigner;
     }
 }
@@ -20,7 +20,6 @@
 
 package eu.europa.ec.dgc.validation.decorator.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.ServiceProperties;
 import eu.europa.ec.dgc.validation.decorator.dto.CallbackRequest;
 import eu.europa.ec.dgc.validation.decorator.entity.KeyUse;
@@ -29,10 +28,8 @@ import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceIdentityRes
 import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceIdentityResponse.PublicKeyJwk;
 import eu.europa.ec.dgc.validation.decorator.exception.NotFoundException;
 import eu.europa.ec.dgc.validation.decorator.exception.UncheckedCertificateException;
-import eu.europa.ec.dgc.validation.decorator.repository.BackendRepository;
 import eu.europa.ec.dgc.validation.decorator.repository.ValidationServiceRepository;
-import io.jsonwebtoken.Header;
-import io.jsonwebtoken.Jwt;
+import eu.europa.ec.dgc.validation.decorator.service.FlowLatencyTracker.Milestone;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -40,7 +37,6 @@ import java.security.PublicKey;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.util.Base64;
-import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.stereotype.Service;
@@ -49,18 +45,20 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class BackendService {
 
-    private final BackendRepository backendRepository;
-
     private final ConversionService converter;
 
     private final AccessTokenService accessTokenService;
 
     private final ValidationServiceRepository validationServiceRepository;
 
-    private final ObjectMapper mapper;
-
     private final SubjectService subjectService;
 
+    private final ResultOutbox resultOutbox;
+
+    private final StatusPollingAdvisor statusPollingAdvisor;
+
+    private final FlowLatencyTracker flowLatencyTracker;
+
     /**
      * Reads the content from the JWT and converts it into {@link CallbackRequest}.
      * 
@@ -70,8 +68,12 @@ public class BackendService {
      */
     public CallbackRequest parseRequest(String subject, String body) {
         final ServiceProperties service = this.subjectService.getServiceBySubject(subject);
-        final Map<String, Object> jwtContent = this.getJwtContent(service, body);
-        return this.mapper.convertValue(jwtContent, CallbackRequest.class);
+        return this.accessTokenService.parseToken(body, CallbackRequest.class, keyId -> {
+            if (keyId == null) {
+                throw new NotFoundException("Callback JWT has no key ID");
+            }
+            return this.getSignPublicKey(service, subject, keyId);
+        });
     }
 
     /**
@@ -81,25 +83,16 @@ public class BackendService {
      * @param request {@link CallbackRequest}
      */
     public void saveResult(final String subject, final CallbackRequest request) {
+        this.flowLatencyTracker.reached(subject, Milestone.CALLBACK_RECEIVED);
         final ServiceResultRequest resultRequest = this.converter.convert(request, ServiceResultRequest.class);
-        this.backendRepository.result(subject, resultRequest);
-    }
-
-    private Map<String, Object> getJwtContent(final ServiceProperties service, final String token) {
-        final Jwt jwt = this.accessTokenService.parseUnsecure(token);
-        final Header jwtHeaders = jwt.getHeader();
-        if (jwtHeaders.containsKey("kid") && jwtHeaders.get("kid") instanceof String) {
-            final String keyId = (String) jwtHeaders.get("kid");
-
-            final PublicKey vsPublicKey = this.getSignPublicKey(service, keyId);
-            return this.accessTokenService.parseAccessToken(token, vsPublicKey);
-        } else {
-            throw new NotFoundException("Status JWT has no key ID");
-        }
+        this.resultOutbox.submit(subject, resultRequest);
+        // Next status poll has to ask the validation service for the result
+        this.statusPollingAdvisor.invalidate(subject);
     }
 
-    private PublicKey getSignPublicKey(final ServiceProperties service, final String keyId) {
-        final ValidationServiceIdentityResponse identity = this.validationServiceRepository.identity(service);
+    private PublicKey getSignPublicKey(final ServiceProperties service, final String subject,
+            final String keyId) {
+        final ValidationServiceIdentityResponse identity = this.validationServiceRepository.identity(service, subject);
         return identity.getVerificationMethod().stream()
                 .filter(vm -> vm.getPublicKeyJwk() != null)
                 .filter(vm -> KeyUse.SIG.name().equalsIgnoreCase(vm.getPublicKeyJwk().getUse()))
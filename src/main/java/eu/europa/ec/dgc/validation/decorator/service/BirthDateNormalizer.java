@@ -0,0 +1,158 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+/**
+ * Normalizes birth dates of the booking service to yyyy-MM-dd. The input is classified in a single pass over its
+ * characters, without parsing attempts that fail with exceptions:
+ * <ul>
+ * <li>ISO date or date-time (yyyy-MM-dd...): the date part</li>
+ * <li>MM-dd-yyyy: reordered, days beyond the end of the month are reduced to its last day</li>
+ * <li>anything else: the first ten characters or the input as is, counted as unrecognized</li>
+ * </ul>
+ * Years with more than four digits are not recognized. Without a sign they were rejected by the strict yyyy parsing
+ * as well. With a sign (expanded ISO years) they are truncated like any other unrecognized input.
+ */
+@Service
+public class BirthDateNormalizer {
+
+    private static final int DATE_LENGTH = 10;
+
+    private final Counter truncatedCounter;
+
+    private final Counter unchangedCounter;
+
+    /**
+     * Creates the normalizer.
+     * 
+     * @param meterRegistry {@link MeterRegistry}
+     */
+    public BirthDateNormalizer(final MeterRegistry meterRegistry) {
+        this.truncatedCounter = this.unrecognizedCounter("truncated", meterRegistry);
+        this.unchangedCounter = this.unrecognizedCounter("unchanged", meterRegistry);
+    }
+
+    /**
+     * Normalizes the birth date.
+     * 
+     * @param in Birth date as delivered by the booking service
+     * @return Birth date as yyyy-MM-dd if recognized, otherwise the first ten characters or the input itself
+     */
+    public String normalize(final String in) {
+        if (in == null || in.isBlank()) {
+            return in;
+        }
+        if (in.length() == DATE_LENGTH && isMonthDayYear(in)) {
+            return toIsoDate(in);
+        }
+        if (in.length() >= DATE_LENGTH) {
+            if (!isIsoDate(in)) {
+                this.truncatedCounter.increment();
+            }
+            return in.length() == DATE_LENGTH ? in : in.substring(0, DATE_LENGTH);
+        }
+        this.unchangedCounter.increment();
+        return in;
+    }
+
+    private Counter unrecognizedCounter(final String fallback, final MeterRegistry meterRegistry) {
+        return Counter.builder("dgca.birthdate.unrecognized")
+                .description("Birth dates in an unrecognized format")
+                .tag("fallback", fallback)
+                .register(meterRegistry);
+    }
+
+    private static boolean isIsoDate(final String in) {
+        if (!isDigits(in, 0, 4) || in.charAt(4) != '-' || !isDigits(in, 5, 7) || in.charAt(7) != '-'
+                || !isDigits(in, 8, 10)) {
+            return false;
+        }
+        if (in.length() > DATE_LENGTH && in.charAt(DATE_LENGTH) != 'T' && in.charAt(DATE_LENGTH) != 't'
+                && in.charAt(DATE_LENGTH) != ' ') {
+            return false;
+        }
+        final int year = number(in, 0, 4);
+        final int month = number(in, 5, 7);
+        final int day = number(in, 8, 10);
+        return month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month);
+    }
+
+    private static boolean isMonthDayYear(final String in) {
+        if (!isDigits(in, 0, 2) || in.charAt(2) != '-' || !isDigits(in, 3, 5) || in.charAt(5) != '-'
+                || !isDigits(in, 6, 10)) {
+            return false;
+        }
+        final int month = number(in, 0, 2);
+        final int day = number(in, 3, 5);
+        return month >= 1 && month <= 12 && day >= 1 && day <= 31 && number(in, 6, 10) >= 1;
+    }
+
+    private static String toIsoDate(final String in) {
+        final int year = number(in, 6, 10);
+        final int month = number(in, 0, 2);
+        final int day = Math.min(number(in, 3, 5), lengthOfMonth(year, month));
+        final char[] out = new char[DATE_LENGTH];
+        in.getChars(6, 10, out, 0);
+        out[4] = '-';
+        in.getChars(0, 2, out, 5);
+        out[7] = '-';
+        out[8] = (char) ('0' + day / 10);
+        out[9] = (char) ('0' + day % 10);
+        return new String(out);
+    }
+
+    private static int lengthOfMonth(final int year, final int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isDigits(final String in, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            final char c = in.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int number(final String in, final int from, final int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + in.charAt(i) - '0';
+        }
+        return value;
+    }
+}
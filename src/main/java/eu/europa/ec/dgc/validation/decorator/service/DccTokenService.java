@@ -32,6 +32,7 @@ import eu.europa.ec.dgc.validation.decorator.exception.NotImplementedException;
 import eu.europa.ec.dgc.validation.decorator.exception.RepositoryException;
 import eu.europa.ec.dgc.validation.decorator.repository.BackendRepository;
 import eu.europa.ec.dgc.validation.decorator.repository.ValidationServiceRepository;
+import eu.europa.ec.dgc.validation.decorator.service.FlowLatencyTracker.Milestone;
 import java.security.SecureRandom;
 import java.util.Base64;
 import lombok.RequiredArgsConstructor;
@@ -54,6 +55,10 @@ public class DccTokenService {
 
     private final AccessTokenPayloadBuilder accessTokenPayloadBuilder;
 
+    private final SubjectBindingStore subjectBindingStore;
+
+    private final FlowLatencyTracker flowLatencyTracker;
+
     /**
      * Request validation- and backend service to create token.
      * 
@@ -63,6 +68,7 @@ public class DccTokenService {
     public AccessTokenPayload getAccessTockenForValidationService(
             final DccTokenRequest dccToken, final String subject) {
         final ServiceProperties service = this.identityService.getServicePropertiesById(dccToken.getService());
+        SubjectTracing.tagService(service.getId());
         if (!TYPE_VALIDATION_SERVICE.equalsIgnoreCase(service.getType())) {
             throw new NotImplementedException(String.format("Service type '%s' not implemented", service.getType()));
         }
@@ -81,6 +87,9 @@ public class DccTokenService {
         final AccessTokenPayload accessToken = this.accessTokenPayloadBuilder.build(
                 subject, initialize, subjectResponse, occurrenceInfo);
         accessToken.setNonce(nonce);
+
+        this.subjectBindingStore.bind(subject, service.getId(), initialize.getExp());
+        this.flowLatencyTracker.reached(subject, Milestone.TOKEN_ISSUED);
         return accessToken;
     }
 
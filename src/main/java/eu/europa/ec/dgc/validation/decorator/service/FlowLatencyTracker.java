@@ -0,0 +1,162 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.FlowTrackingProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Records the milestones of each subject flow and turns completed flows into histograms. The wallet asks for the
+ * token right after scanning the QR code, so time-to-result (token issued until result forwarded) is the time from
+ * scan to confirmed result.
+ */
+@Slf4j
+@Service
+public class FlowLatencyTracker {
+
+    public enum Milestone {
+        INITIALIZED,
+        TOKEN_ISSUED,
+        CALLBACK_RECEIVED,
+        RESULT_STATUS,
+        RESULT_FORWARDED
+    }
+
+    private final boolean enabled;
+
+    private final Cache<String, Flow> flows;
+
+    private final Timer timeToToken;
+
+    private final Timer timeToResult;
+
+    private final DistributionSummary pollsPerResult;
+
+    /**
+     * Creates the tracker.
+     * 
+     * @param dgcProperties {@link DgcProperties}
+     * @param meterRegistry {@link MeterRegistry}
+     */
+    public FlowLatencyTracker(final DgcProperties dgcProperties, final MeterRegistry meterRegistry) {
+        final FlowTrackingProperties properties = dgcProperties.getFlowTracking();
+        this.enabled = properties.isEnabled();
+        this.flows = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterWrite(dgcProperties.getValidationExpire())
+                .build();
+        this.timeToToken = Timer.builder("dgca.flow.time.to.token")
+                .description("Time from QR code initialize until the wallet got its access token")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.timeToResult = Timer.builder("dgca.flow.time.to.result")
+                .description("Time from access token (QR code scanned) until the result was forwarded")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.pollsPerResult = DistributionSummary.builder("dgca.flow.polls.per.result")
+                .description("Status polls of a subject until its result was forwarded")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("dgca.flow.active", this.flows, Cache::estimatedSize)
+                .description("Subject flows started and not yet completed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a milestone of a subject. Only the first occurrence of a milestone counts. Flows start with
+     * {@link Milestone#INITIALIZED} or {@link Milestone#TOKEN_ISSUED}, later milestones of unknown subjects are
+     * ignored.
+     * 
+     * @param subject Subject ID
+     * @param milestone {@link Milestone}
+     */
+    public void reached(final String subject, final Milestone milestone) {
+        if (!this.enabled || subject == null) {
+            return;
+        }
+        // Requests for subjects without flow, e.g. guessed or expired ones, must not fill the cache
+        final Flow flow = milestone == Milestone.INITIALIZED || milestone == Milestone.TOKEN_ISSUED
+                ? this.flows.get(subject, key -> new Flow()) : this.flows.getIfPresent(subject);
+        if (flow == null || !flow.reach(milestone, System.currentTimeMillis())) {
+            return;
+        }
+        if (milestone == Milestone.TOKEN_ISSUED) {
+            this.record(this.timeToToken, flow, Milestone.INITIALIZED, Milestone.TOKEN_ISSUED);
+        } else if (milestone == Milestone.RESULT_FORWARDED) {
+            this.flows.invalidate(subject);
+            this.record(this.timeToResult, flow, Milestone.TOKEN_ISSUED, Milestone.RESULT_FORWARDED);
+            // Flows whose token was issued by another instance missed some of their polls
+            if (flow.at(Milestone.TOKEN_ISSUED) > 0) {
+                this.pollsPerResult.record(flow.polls.get());
+                log.debug("Flow of subject '{}' completed after {} status polls", subject, flow.polls.get());
+            }
+        }
+    }
+
+    /**
+     * Counts a status poll of a subject with a flow.
+     * 
+     * @param subject Subject ID
+     */
+    public void polled(final String subject) {
+        if (!this.enabled || subject == null) {
+            return;
+        }
+        final Flow flow = this.flows.getIfPresent(subject);
+        if (flow != null) {
+            flow.polls.incrementAndGet();
+        }
+    }
+
+    private void record(final Timer timer, final Flow flow, final Milestone from, final Milestone to) {
+        // Flows started on another instance miss their earlier milestones
+        final long start = flow.at(from);
+        if (start > 0) {
+            timer.record(Math.max(0, flow.at(to) - start), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static final class Flow {
+
+        private final AtomicLongArray milestones = new AtomicLongArray(Milestone.values().length);
+
+        private final AtomicInteger polls = new AtomicInteger();
+
+        boolean reach(final Milestone milestone, final long timestamp) {
+            return this.milestones.compareAndSet(milestone.ordinal(), 0, timestamp);
+        }
+
+        long at(final Milestone milestone) {
+            return this.milestones.get(milestone.ordinal());
+        }
+    }
+}
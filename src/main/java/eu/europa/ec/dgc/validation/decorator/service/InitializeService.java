@@ -22,6 +22,7 @@ package eu.europa.ec.dgc.validation.decorator.service;
 
 import eu.europa.ec.dgc.validation.decorator.config.IdentityProperties;
 import eu.europa.ec.dgc.validation.decorator.dto.QrCodeDto;
+import eu.europa.ec.dgc.validation.decorator.service.FlowLatencyTracker.Milestone;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -33,6 +34,8 @@ public class InitializeService {
 
     private final AccessTokenService accessTokenService;
 
+    private final FlowLatencyTracker flowLatencyTracker;
+
     /**
      * Build data for QR code with given subject.
      * 
@@ -40,6 +43,7 @@ public class InitializeService {
      * @return {@link QrCodeDto}
      */
     public QrCodeDto getBySubject(String subject) {
+        this.flowLatencyTracker.reached(subject, Milestone.INITIALIZED);
         return QrCodeDto.builder()
                 .protocol(this.properties.getProtocol())
                 .protocolVersion(this.properties.getProtocolVersion())
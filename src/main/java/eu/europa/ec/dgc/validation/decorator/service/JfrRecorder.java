@@ -0,0 +1,124 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.JfrProperties;
+import eu.europa.ec.dgc.validation.decorator.jfr.CryptoEvent;
+import eu.europa.ec.dgc.validation.decorator.jfr.DownstreamCallEvent;
+import eu.europa.ec.dgc.validation.decorator.jfr.RequestEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps a continuous flight recording with the slow requests, downstream calls and signatures and dumps it on demand.
+ */
+@Slf4j
+@Service
+public class JfrRecorder {
+
+    private static final String RECORDING_NAME = "dgca";
+
+    // Environment, system properties and JVM arguments hold the key store passwords
+    private static final String[] SECRET_EVENTS = {
+        "jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation"
+    };
+
+    private final JfrProperties properties;
+
+    private Recording recording;
+
+    public JfrRecorder(final DgcProperties dgcProperties) {
+        this.properties = dgcProperties.getJfr();
+    }
+
+    /**
+     * Starts the continuous recording, if enabled.
+     */
+    @PostConstruct
+    public void start() {
+        if (!this.properties.isEnabled() || !FlightRecorder.isAvailable()) {
+            return;
+        }
+        final Recording continuous = new Recording();
+        try {
+            continuous.setSettings(Configuration.getConfiguration(this.properties.getSettings()).getSettings());
+        } catch (IOException | ParseException e) {
+            log.warn("JFR settings '{}' not available, only decorator events are recorded: {}",
+                    this.properties.getSettings(), e.getMessage());
+        }
+        for (final String event : SECRET_EVENTS) {
+            continuous.disable(event);
+        }
+        continuous.enable(RequestEvent.class).withThreshold(this.properties.getRequestThreshold());
+        continuous.enable(DownstreamCallEvent.class).withThreshold(this.properties.getDownstreamThreshold());
+        continuous.enable(CryptoEvent.class).withThreshold(this.properties.getCryptoThreshold());
+        continuous.setName(RECORDING_NAME);
+        continuous.setMaxAge(this.properties.getMaxAge());
+        continuous.setMaxSize(this.properties.getMaxSize().toBytes());
+        continuous.setToDisk(true);
+        continuous.start();
+        this.recording = continuous;
+        log.info("Flight recording '{}' started", RECORDING_NAME);
+    }
+
+    /**
+     * Stops the continuous recording.
+     */
+    @PreDestroy
+    public void stop() {
+        if (this.recording != null) {
+            this.recording.close();
+            this.recording = null;
+        }
+    }
+
+    /**
+     * Dumps the data of all running recordings, including recordings started by jcmd.
+     * 
+     * @return Dump file or null if nothing is recorded
+     */
+    public synchronized Path dump() {
+        if (!FlightRecorder.isAvailable() || FlightRecorder.getFlightRecorder().getRecordings().isEmpty()) {
+            return null;
+        }
+        final Path file = Path.of(this.properties.getDumpFile());
+        try (Recording snapshot = FlightRecorder.getFlightRecorder().takeSnapshot()) {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            snapshot.dump(file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -26,6 +26,8 @@ import eu.europa.ec.dgc.validation.decorator.entity.KeyType;
 import eu.europa.ec.dgc.validation.decorator.entity.KeyUse;
 import eu.europa.ec.dgc.validation.decorator.exception.DccException;
 import eu.europa.ec.dgc.validation.decorator.exception.NotImplementedException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -60,6 +62,8 @@ public class KeyStoreKeyProvider implements KeyProvider {
 
     private final DgcProperties dgcConfigProperties;
 
+    private final MeterRegistry meterRegistry;
+
     private final Map<String, Certificate[]> certificates = new HashMap<>();
 
     private final Map<String, PrivateKey> privateKeys = new HashMap<>();
@@ -120,6 +124,15 @@ public class KeyStoreKeyProvider implements KeyProvider {
                 this.handleCertificate(alias, certificates.toArray(new X509Certificate[0]));
             }
         }
+
+        Gauge.builder("dgca.keys.loaded", this.certificates, Map::size)
+                .description("Keys loaded from the keystore")
+                .tag("type", "certificate")
+                .register(this.meterRegistry);
+        Gauge.builder("dgca.keys.loaded", this.privateKeys, Map::size)
+                .description("Keys loaded from the keystore")
+                .tag("type", "private")
+                .register(this.meterRegistry);
     }
 
     private void handleCertificate(final String alias, final Certificate[] certs) {
@@ -130,10 +143,11 @@ public class KeyStoreKeyProvider implements KeyProvider {
         this.kids.put(alias, kid);
         this.kidToName.put(kid, alias);
 
-        if (cert.getSigAlgOID().contains("1.2.840.113549.1.1.1")) {
-            this.algs.put(alias, "RS256");
-        } else if (cert.getSigAlgOID().contains("1.2.840.113549.1.1.10")) {
+        // RSASSA-PSS first, its OID starts like the other RSA OIDs
+        if (cert.getSigAlgOID().contains("1.2.840.113549.1.1.10")) {
             this.algs.put(alias, "PS256");
+        } else if (cert.getSigAlgOID().contains("1.2.840.113549.1.1.1")) {
+            this.algs.put(alias, "RS256");
         } else if (cert.getSigAlgOID().contains("1.2.840.10045.4.3.2")) {
             this.algs.put(alias, "ES256");
         } else {
@@ -0,0 +1,185 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.LoadSheddingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Service;
+
+/**
+ * Sheds requests while too many requests are in progress, and calls to a downstream while it answers too slowly.
+ * Latencies are kept per downstream, so a slow downstream only sheds the requests routed to it. Above the latency
+ * threshold only a share of the calls is shed, so the latency keeps being measured and shedding ends once the
+ * downstream recovers.
+ */
+@Service
+public class LoadShedder {
+
+    public static final String IN_FLIGHT = "in_flight";
+
+    private static final double SMOOTHING = 0.1;
+
+    // Set while the current thread handles an admitted request
+    private static final ThreadLocal<Boolean> REQUEST = new ThreadLocal<>();
+
+    private final LoadSheddingProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final ConcurrentMap<String, DownstreamLatency> downstreamLatencies = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the load shedder.
+     * 
+     * @param dgcProperties {@link DgcProperties}
+     * @param meterRegistry {@link MeterRegistry}
+     */
+    public LoadShedder(final DgcProperties dgcProperties, final MeterRegistry meterRegistry) {
+        this.properties = dgcProperties.getRateLimit().getShedding();
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("dgca.requests.inflight", this.inFlight, AtomicInteger::get)
+                .description("Requests in progress")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Decides whether a new request is shed.
+     * 
+     * @return Reason to shed the request, null if the request may be processed
+     */
+    public String shouldShed() {
+        final int maxInFlight = this.properties.getMaxInFlight();
+        if (maxInFlight > 0 && this.inFlight.get() >= maxInFlight) {
+            return IN_FLIGHT;
+        }
+        return null;
+    }
+
+    /**
+     * Decides whether a call of the current request to a downstream is shed. Calls outside of requests, e.g. of the
+     * result outbox, are never shed.
+     * 
+     * @param downstream ID of the downstream
+     * @return true, if the call is shed
+     */
+    public boolean shouldShed(final String downstream) {
+        final long maxLatency = this.properties.getMaxDownstreamLatency().toMillis();
+        final DownstreamLatency downstreamLatency = this.downstreamLatencies.get(downstream);
+        if (maxLatency <= 0 || downstreamLatency == null || !isRequestThread()) {
+            return false;
+        }
+        final double latency = downstreamLatency.latency;
+        if (latency > maxLatency && ThreadLocalRandom.current().nextDouble() * latency > maxLatency) {
+            downstreamLatency.shedCounter.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks the current thread as handling an admitted request.
+     */
+    public void enter() {
+        this.inFlight.incrementAndGet();
+        REQUEST.set(Boolean.TRUE);
+    }
+
+    /**
+     * Removes the mark of {@link #enter()} from the current thread.
+     */
+    public void exit() {
+        REQUEST.remove();
+        this.inFlight.decrementAndGet();
+    }
+
+    /**
+     * Records the duration of a downstream call. Only calls of requests are recorded, calls of background tasks do
+     * not wait for a client.
+     * 
+     * @param downstream ID of the downstream
+     * @param millis Duration in milliseconds
+     */
+    public void recordDownstreamLatency(final String downstream, final long millis) {
+        if (!isRequestThread()) {
+            return;
+        }
+        final DownstreamLatency downstreamLatency = this.downstreamLatencies.computeIfAbsent(downstream,
+                key -> new DownstreamLatency(key, this.meterRegistry));
+        // Lost updates under contention only delay the average a bit
+        final double latency = downstreamLatency.latency;
+        downstreamLatency.latency = latency == 0 ? millis : latency + SMOOTHING * (millis - latency);
+    }
+
+    /**
+     * Wraps a call, so it counts as call of the request of the current thread when executed by another thread.
+     * 
+     * @param call Call to wrap
+     * @param <T> Result type
+     * @return Wrapped call
+     */
+    public static <T> Supplier<T> propagate(final Supplier<T> call) {
+        if (!isRequestThread()) {
+            return call;
+        }
+        return () -> {
+            REQUEST.set(Boolean.TRUE);
+            try {
+                return call.get();
+            } finally {
+                REQUEST.remove();
+            }
+        };
+    }
+
+    private static boolean isRequestThread() {
+        return REQUEST.get() != null;
+    }
+
+    private static final class DownstreamLatency {
+
+        private final Counter shedCounter;
+
+        // Smoothed latency in milliseconds
+        private volatile double latency;
+
+        private DownstreamLatency(final String downstream, final MeterRegistry meterRegistry) {
+            Gauge.builder("dgca.downstream.latency.smoothed", this, value -> value.latency / 1000)
+                    .description("Smoothed latency of the downstream calls of requests")
+                    .baseUnit("seconds")
+                    .tag("service", downstream)
+                    .register(meterRegistry);
+            this.shedCounter = Counter.builder("dgca.downstream.shed")
+                    .description("Downstream calls of requests shed because the downstream answers too slowly")
+                    .tag("service", downstream)
+                    .register(meterRegistry);
+        }
+    }
+}
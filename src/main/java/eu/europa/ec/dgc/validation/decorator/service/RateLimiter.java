@@ -0,0 +1,97 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.BucketProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.RateLimitProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Service;
+
+/**
+ * Token buckets per key. Each bucket is a single atomic value (generic cell rate algorithm), so acquiring a token
+ * needs neither locks nor allocations.
+ */
+@Service
+public class RateLimiter {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final Cache<String, TokenBucket> buckets;
+
+    /**
+     * Creates the rate limiter.
+     * 
+     * @param dgcProperties {@link DgcProperties}
+     */
+    public RateLimiter(final DgcProperties dgcProperties) {
+        final RateLimitProperties properties = dgcProperties.getRateLimit();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterAccess(properties.getIdleExpiry())
+                .build();
+    }
+
+    /**
+     * Takes a token from the bucket of a key.
+     * 
+     * @param key Key of the bucket
+     * @param limit Capacity and refill rate of the bucket
+     * @return 0 if a token was taken, otherwise nanoseconds until the next token is available
+     */
+    public long tryAcquire(final String key, final BucketProperties limit) {
+        return this.buckets.get(key, k -> new TokenBucket(limit)).tryAcquire(System.nanoTime());
+    }
+
+    private static final class TokenBucket {
+
+        // Time one token needs to refill
+        private final long interval;
+
+        // How far the bucket may be ahead of now, i.e. the burst
+        private final long tolerance;
+
+        // Time at which the bucket is full again
+        private final AtomicLong fullAt;
+
+        private TokenBucket(final BucketProperties limit) {
+            this.interval = Math.max(1, Math.round(NANOS_PER_SECOND / limit.getRefillPerSecond()));
+            this.tolerance = this.interval * Math.max(0, limit.getCapacity() - 1);
+            this.fullAt = new AtomicLong(System.nanoTime());
+        }
+
+        private long tryAcquire(final long now) {
+            while (true) {
+                final long current = this.fullAt.get();
+                final long start = current - now < 0 ? now : current;
+                final long ahead = start - now;
+                if (ahead > this.tolerance) {
+                    return ahead - this.tolerance;
+                }
+                if (this.fullAt.compareAndSet(current, start + this.interval)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
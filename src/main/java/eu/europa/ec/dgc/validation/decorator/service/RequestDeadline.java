@@ -0,0 +1,122 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+import lombok.Getter;
+
+/**
+ * End-to-end budget of the request handled by the current thread. All downstream calls of the request share the
+ * budget, each call gets only what is left.
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<>();
+
+    private static final long NANOS_PER_MILLI = 1_000_000;
+
+    @Getter
+    private final String endpoint;
+
+    @Getter
+    private final Duration budget;
+
+    private final long startNanos;
+
+    private final long deadlineNanos;
+
+    private RequestDeadline(final String endpoint, final Duration budget) {
+        this.endpoint = endpoint;
+        this.budget = budget;
+        this.startNanos = System.nanoTime();
+        this.deadlineNanos = this.startNanos + budget.toNanos();
+    }
+
+    /**
+     * Starts the budget of the request handled by the current thread.
+     * 
+     * @param endpoint Endpoint of the request
+     * @param budget End-to-end budget
+     * @return {@link RequestDeadline}
+     */
+    public static RequestDeadline start(final String endpoint, final Duration budget) {
+        final RequestDeadline deadline = new RequestDeadline(endpoint, budget);
+        CURRENT.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * Delivers the budget of the request handled by the current thread.
+     * 
+     * @return {@link RequestDeadline} or null, if the thread handles no request
+     */
+    public static RequestDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Lets a call on another thread use the budget of the current thread.
+     * 
+     * @param call Call to run on another thread
+     * @param <T> Result type
+     * @return Call running with the budget of the current thread
+     */
+    public static <T> Supplier<T> propagate(final Supplier<T> call) {
+        final RequestDeadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return call;
+        }
+        return () -> {
+            CURRENT.set(deadline);
+            try {
+                return call.get();
+            } finally {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * Removes the budget from the current thread.
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Remaining budget, rounded up to full milliseconds.
+     * 
+     * @return Remaining milliseconds, 0 or less if the budget is exhausted
+     */
+    public long remainingMillis() {
+        final long remaining = this.deadlineNanos - System.nanoTime();
+        return remaining > 0 ? (remaining + NANOS_PER_MILLI - 1) / NANOS_PER_MILLI : 0;
+    }
+
+    public boolean isExpired() {
+        return this.deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - this.startNanos;
+    }
+}
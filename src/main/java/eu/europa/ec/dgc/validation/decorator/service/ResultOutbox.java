@@ -0,0 +1,532 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.ResultOutboxProperties;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultRequest;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultRequest.SubjectResultRequest;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultResponse;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultResponse.SubjectResultResponse;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceResultRequest;
+import eu.europa.ec.dgc.validation.decorator.exception.RepositoryException;
+import eu.europa.ec.dgc.validation.decorator.repository.BackendRepository;
+import eu.europa.ec.dgc.validation.decorator.service.FlowLatencyTracker.Milestone;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+/**
+ * Forwards results to the booking service. If enabled, results are appended to a local journal and forwarded by a
+ * background dispatcher, so a slow or unavailable booking service does not affect the request of the client. Pending
+ * results are replayed from the journal at startup. Results are given up once the validation of the subject expired or
+ * after the maximum number of attempts.
+ */
+@Slf4j
+@Service
+public class ResultOutbox {
+
+    private static final String RECORD_ADD = "ADD";
+
+    private static final String RECORD_ACK = "ACK";
+
+    private final ResultOutboxProperties properties;
+
+    private final BackendRepository backendRepository;
+
+    private final ObjectMapper mapper;
+
+    private final FlowLatencyTracker flowLatencyTracker;
+
+    private final Duration validationExpire;
+
+    private final Map<String, PendingResult> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Object journalLock = new Object();
+
+    private final Object dispatchLock = new Object();
+
+    private final Counter forwardedCounter;
+
+    private final Counter retriedCounter;
+
+    private final Counter rejectedCounter;
+
+    private final Counter expiredCounter;
+
+    private final Counter exhaustedCounter;
+
+    private FileChannel journal;
+
+    // Own thread, a blocked booking service must not delay the other scheduled tasks
+    private ScheduledExecutorService dispatcher;
+
+    private int acknowledgedSinceCompaction;
+
+    /**
+     * Creates the outbox.
+     * 
+     * @param properties {@link DgcProperties}
+     * @param backendRepository {@link BackendRepository}
+     * @param mapper {@link ObjectMapper}
+     * @param flowLatencyTracker {@link FlowLatencyTracker}
+     * @param meterRegistry {@link MeterRegistry}
+     */
+    public ResultOutbox(final DgcProperties properties, final BackendRepository backendRepository,
+            final ObjectMapper mapper, final FlowLatencyTracker flowLatencyTracker,
+            final MeterRegistry meterRegistry) {
+        this.properties = properties.getResult().getOutbox();
+        this.backendRepository = backendRepository;
+        this.mapper = mapper;
+        this.flowLatencyTracker = flowLatencyTracker;
+        this.validationExpire = properties.getValidationExpire();
+        this.forwardedCounter = Counter.builder("dgca.result.outbox.forwarded")
+                .description("Results forwarded from the outbox to the booking service")
+                .register(meterRegistry);
+        this.retriedCounter = Counter.builder("dgca.result.outbox.retried")
+                .description("Failed result forwardings scheduled for retry")
+                .register(meterRegistry);
+        this.rejectedCounter = this.droppedCounter("rejected", meterRegistry);
+        this.expiredCounter = this.droppedCounter("expired", meterRegistry);
+        this.exhaustedCounter = this.droppedCounter("attempts_exhausted", meterRegistry);
+        Gauge.builder("dgca.result.outbox.pending", this.pending, Map::size)
+                .description("Results waiting in the outbox")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Replays the journal at startup and starts the dispatcher.
+     * 
+     * @throws IOException if the journal can not be read or written
+     */
+    @PostConstruct
+    public void replay() throws IOException {
+        if (!this.properties.isEnabled()) {
+            return;
+        }
+        final Path file = this.journalFile();
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    this.replayRecord(line);
+                }
+            }
+        }
+        synchronized (this.journalLock) {
+            this.rewriteJournal();
+        }
+        log.info("Result outbox '{}' replayed with {} pending results", file, this.pending.size());
+
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("result-outbox-");
+        threadFactory.setDaemon(true);
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        final long dispatchInterval = this.properties.getDispatchInterval().toMillis();
+        this.dispatcher.scheduleWithFixedDelay(this::dispatchSafely, dispatchInterval, dispatchInterval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Submits a result for the booking service. Without outbox the result is forwarded synchronously.
+     * 
+     * @param subject Subject ID
+     * @param request {@link ServiceResultRequest}
+     */
+    public void submit(final String subject, final ServiceResultRequest request) {
+        if (!this.properties.isEnabled()) {
+            try {
+                this.backendRepository.result(subject, request);
+            } catch (HttpClientErrorException e) {
+                log.error(e.getMessage(), e);
+                throw new RepositoryException("Backend service http client error", e);
+            }
+            this.flowLatencyTracker.reached(subject, Milestone.RESULT_FORWARDED);
+            return;
+        }
+
+        final OutboxRecord record = new OutboxRecord();
+        record.setType(RECORD_ADD);
+        record.setId(UUID.randomUUID().toString());
+        record.setSubject(subject);
+        record.setRequest(request);
+        record.setCreated(Instant.now().toEpochMilli());
+        // Under one lock with the append, a compaction in between would rewrite the journal without the record
+        synchronized (this.journalLock) {
+            this.append(record);
+            this.pending.put(record.getId(), new PendingResult(this.sequence.incrementAndGet(), record));
+        }
+        log.debug("Result of subject '{}' added to outbox", subject);
+    }
+
+    /**
+     * Forwards the pending results which are due.
+     */
+    public void dispatch() {
+        this.dispatch(false);
+    }
+
+    private void dispatchSafely() {
+        try {
+            this.dispatch(false);
+        } catch (RuntimeException e) {
+            // An exception would cancel the periodic execution
+            log.error("Result outbox dispatch failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void dispatch(final boolean flush) {
+        if (!this.properties.isEnabled() || this.pending.isEmpty()) {
+            return;
+        }
+        synchronized (this.dispatchLock) {
+            final long now = System.currentTimeMillis();
+            final List<PendingResult> due = this.pending.values().stream()
+                    .filter(pendingResult -> pendingResult.getNextAttempt() <= now)
+                    .sorted(Comparator.comparingLong(PendingResult::getSequence))
+                    .collect(Collectors.toList());
+            final int batchSize = this.properties.getBatchSize();
+            if (this.backendRepository.supportsBatchResults()) {
+                // Collect results until the batch is full or the oldest result waited for the batch window
+                if (due.isEmpty() || (!flush && due.size() < batchSize
+                        && now - this.dueSince(due.get(0)) < this.properties.getBatchWindow().toMillis())) {
+                    return;
+                }
+                for (int from = 0; from < due.size(); from += batchSize) {
+                    this.forwardBatch(due.subList(from, Math.min(from + batchSize, due.size())));
+                }
+            } else {
+                due.stream().limit(batchSize).forEach(this::forward);
+            }
+            this.compactIfNeeded();
+        }
+    }
+
+    /**
+     * Forwards pending results on shutdown. Results which could not be forwarded stay in the journal.
+     */
+    @PreDestroy
+    public void drain() {
+        if (!this.properties.isEnabled()) {
+            return;
+        }
+        final long drainEnd = System.currentTimeMillis() + this.properties.getDrainTimeout().toMillis();
+        if (this.dispatcher != null) {
+            this.dispatcher.shutdown();
+            try {
+                this.dispatcher.awaitTermination(this.properties.getDrainTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        while (!this.pending.isEmpty() && System.currentTimeMillis() < drainEnd) {
+            this.dispatch(true);
+            if (!this.pending.isEmpty()) {
+                try {
+                    Thread.sleep(Math.max(0, Math.min(this.properties.getDispatchInterval().toMillis(),
+                            drainEnd - System.currentTimeMillis())));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (!this.pending.isEmpty()) {
+            log.warn("Result outbox closed with {} pending results", this.pending.size());
+        }
+        synchronized (this.journalLock) {
+            try {
+                this.rewriteJournal();
+                this.journal.close();
+            } catch (IOException e) {
+                log.error("Result outbox journal could not be closed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void forward(final PendingResult pendingResult) {
+        final String subject = pendingResult.getRecord().getSubject();
+        try {
+            this.backendRepository.result(subject, pendingResult.getRecord().getRequest());
+            this.acknowledge(pendingResult);
+            this.forwardedCounter.increment();
+            this.flowLatencyTracker.reached(subject, Milestone.RESULT_FORWARDED);
+        } catch (HttpClientErrorException e) {
+            this.drop(pendingResult, e.getMessage());
+        } catch (RuntimeException e) {
+            this.retry(pendingResult, e.getMessage());
+        }
+    }
+
+    private void forwardBatch(final List<PendingResult> batch) {
+        // A newer result of a subject replaces the older one
+        final Map<String, PendingResult> bySubject = new LinkedHashMap<>();
+        for (final PendingResult pendingResult : batch) {
+            final PendingResult superseded = bySubject.put(pendingResult.getRecord().getSubject(), pendingResult);
+            if (superseded != null) {
+                this.acknowledge(superseded);
+            }
+        }
+
+        final ServiceBatchResultRequest request = new ServiceBatchResultRequest();
+        bySubject.forEach((subject, pendingResult) -> {
+            final SubjectResultRequest item = new SubjectResultRequest();
+            item.setSubject(subject);
+            item.setResult(pendingResult.getRecord().getRequest());
+            request.getResults().add(item);
+        });
+
+        final ServiceBatchResultResponse response;
+        try {
+            response = this.backendRepository.results(request);
+        } catch (RuntimeException e) {
+            bySubject.values().forEach(pendingResult -> this.retry(pendingResult, e.getMessage()));
+            return;
+        }
+
+        final Map<String, SubjectResultResponse> outcomes = response == null || response.getResults() == null
+                ? Map.of()
+                : response.getResults().stream().collect(Collectors.toMap(
+                        SubjectResultResponse::getSubject, Function.identity(), (first, second) -> second));
+        bySubject.forEach((subject, pendingResult) -> {
+            final SubjectResultResponse outcome = outcomes.get(subject);
+            if (outcome == null) {
+                this.retry(pendingResult, "No outcome in batch response");
+            } else if (HttpStatus.Series.resolve(outcome.getStatus()) == HttpStatus.Series.SUCCESSFUL) {
+                this.acknowledge(pendingResult);
+                this.forwardedCounter.increment();
+                this.flowLatencyTracker.reached(subject, Milestone.RESULT_FORWARDED);
+            } else if (HttpStatus.Series.resolve(outcome.getStatus()) == HttpStatus.Series.CLIENT_ERROR) {
+                this.drop(pendingResult, outcome.getMessage());
+            } else {
+                this.retry(pendingResult, outcome.getMessage());
+            }
+        });
+    }
+
+    private void drop(final PendingResult pendingResult, final String reason) {
+        log.error("Booking service rejected result of subject '{}': {}",
+                pendingResult.getRecord().getSubject(), reason);
+        this.acknowledge(pendingResult);
+        this.rejectedCounter.increment();
+    }
+
+    private void retry(final PendingResult pendingResult, final String reason) {
+        pendingResult.setAttempts(pendingResult.getAttempts() + 1);
+        if (System.currentTimeMillis() >= pendingResult.getRecord().getCreated() + this.validationExpire.toMillis()) {
+            log.error("Give up result of subject '{}', validation expired after {} attempts: {}",
+                    pendingResult.getRecord().getSubject(), pendingResult.getAttempts(), reason);
+            this.acknowledge(pendingResult);
+            this.expiredCounter.increment();
+            return;
+        }
+        if (pendingResult.getAttempts() >= this.properties.getMaxAttempts()) {
+            log.error("Give up result of subject '{}' after {} attempts: {}",
+                    pendingResult.getRecord().getSubject(), pendingResult.getAttempts(), reason);
+            this.acknowledge(pendingResult);
+            this.exhaustedCounter.increment();
+            return;
+        }
+        final long delay = this.backoff(pendingResult.getAttempts());
+        pendingResult.setNextAttempt(System.currentTimeMillis() + delay);
+        this.retriedCounter.increment();
+        log.warn("Forward result of subject '{}' failed (attempt {}), retry in {} ms: {}",
+                pendingResult.getRecord().getSubject(), pendingResult.getAttempts(), delay, reason);
+    }
+
+    private Counter droppedCounter(final String reason, final MeterRegistry meterRegistry) {
+        return Counter.builder("dgca.result.outbox.dropped")
+                .description("Results removed from the outbox without being forwarded")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private long dueSince(final PendingResult pendingResult) {
+        return Math.max(pendingResult.getRecord().getCreated(), pendingResult.getNextAttempt());
+    }
+
+    private long backoff(final int attempts) {
+        final long initial = this.properties.getInitialBackoff().toMillis();
+        final long delay = Math.min(this.properties.getMaxBackoff().toMillis(),
+                initial << Math.min(attempts - 1, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void acknowledge(final PendingResult pendingResult) {
+        final OutboxRecord record = new OutboxRecord();
+        record.setType(RECORD_ACK);
+        record.setId(pendingResult.getRecord().getId());
+        synchronized (this.journalLock) {
+            this.append(record);
+            this.pending.remove(record.getId());
+            this.acknowledgedSinceCompaction++;
+        }
+    }
+
+    private void compactIfNeeded() {
+        synchronized (this.journalLock) {
+            if (this.acknowledgedSinceCompaction < this.properties.getCompactThreshold()) {
+                return;
+            }
+            try {
+                this.rewriteJournal();
+            } catch (IOException e) {
+                log.error("Result outbox journal could not be compacted: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void append(final OutboxRecord record) {
+        synchronized (this.journalLock) {
+            try {
+                this.write(this.journal, record);
+                if (this.properties.isFsync()) {
+                    this.journal.force(false);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending results into a new journal which replaces the current one. Caller must hold the journal
+     * lock.
+     */
+    private void rewriteJournal() throws IOException {
+        final Path file = this.journalFile();
+        final Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final List<PendingResult> results = this.pending.values().stream()
+                    .sorted(Comparator.comparingLong(PendingResult::getSequence))
+                    .collect(Collectors.toList());
+            for (final PendingResult pendingResult : results) {
+                this.write(channel, pendingResult.getRecord());
+            }
+            channel.force(true);
+        }
+        if (this.journal != null) {
+            this.journal.close();
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.journal = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.acknowledgedSinceCompaction = 0;
+    }
+
+    private void write(final FileChannel channel, final OutboxRecord record) throws IOException {
+        final byte[] json = this.mapper.writeValueAsBytes(record);
+        final ByteBuffer buffer = ByteBuffer.allocate(json.length + 1);
+        buffer.put(json).put((byte) '\n').flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void replayRecord(final String line) {
+        if (line.isBlank()) {
+            return;
+        }
+        try {
+            final OutboxRecord record = this.mapper.readValue(line, OutboxRecord.class);
+            if (RECORD_ADD.equals(record.getType())) {
+                this.pending.put(record.getId(), new PendingResult(this.sequence.incrementAndGet(), record));
+            } else if (RECORD_ACK.equals(record.getType())) {
+                this.pending.remove(record.getId());
+            }
+        } catch (JsonProcessingException e) {
+            // An interrupted append leaves an incomplete last line
+            log.warn("Skip unreadable result outbox record: {}", e.getMessage());
+        }
+    }
+
+    private Path journalFile() {
+        return Path.of(this.properties.getFile());
+    }
+
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static final class OutboxRecord {
+
+        private String type;
+
+        private String id;
+
+        private String subject;
+
+        private ServiceResultRequest request;
+
+        private Long created;
+    }
+
+    @Data
+    static final class PendingResult {
+
+        private final long sequence;
+
+        private final OutboxRecord record;
+
+        private int attempts;
+
+        private long nextAttempt;
+    }
+}
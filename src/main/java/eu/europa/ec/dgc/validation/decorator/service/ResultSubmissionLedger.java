@@ -0,0 +1,117 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.dto.ResultToken;
+import eu.europa.ec.dgc.validation.decorator.exception.UncheckedNoSuchAlgorithmException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Remembers per subject which validation result was already submitted for the booking service. A result is identified
+ * by the hash of the result JWT, so the same result is submitted exactly once. Submitted results are forwarded by the
+ * {@link ResultOutbox}, which may still drop them if the booking service rejects them.
+ */
+@Slf4j
+@Service
+public class ResultSubmissionLedger {
+
+    private final Cache<String, LedgerEntry> entries;
+
+    private final Counter suppressedCounter;
+
+    /**
+     * Creates the ledger. Entries expire together with the validation of the subject.
+     * 
+     * @param properties {@link DgcProperties}
+     * @param meterRegistry {@link MeterRegistry}
+     */
+    public ResultSubmissionLedger(final DgcProperties properties, final MeterRegistry meterRegistry) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(properties.getResult().getLedger().getMaxSize())
+                .expireAfterWrite(properties.getValidationExpire())
+                .build();
+        this.suppressedCounter = Counter.builder("dgca.result.submission.suppressed")
+                .description("Results not submitted again because the same result was already submitted")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Builds the hash of a result JWT.
+     * 
+     * @param jwt Result JWT
+     * @return Base64 (URL) encoded SHA-256 hash
+     */
+    public String hash(final String jwt) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(jwt.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new UncheckedNoSuchAlgorithmException(e);
+        }
+    }
+
+    /**
+     * Delivers the already submitted result of a subject, if the result JWT has not changed.
+     * 
+     * @param subject Subject ID
+     * @param jwtHash Hash of the result JWT
+     * @return {@link ResultToken} or null if the result was not submitted yet
+     */
+    public ResultToken findSubmitted(final String subject, final String jwtHash) {
+        final LedgerEntry entry = this.entries.getIfPresent(subject);
+        if (entry != null && entry.getJwtHash().equals(jwtHash)) {
+            log.debug("Result of subject '{}' already submitted", subject);
+            this.suppressedCounter.increment();
+            return entry.getResultToken();
+        }
+        return null;
+    }
+
+    /**
+     * Records a submitted result.
+     * 
+     * @param subject Subject ID
+     * @param jwtHash Hash of the result JWT
+     * @param resultToken Submitted {@link ResultToken}
+     */
+    public void record(final String subject, final String jwtHash, final ResultToken resultToken) {
+        this.entries.put(subject, new LedgerEntry(jwtHash, resultToken));
+    }
+
+    @Value
+    private static class LedgerEntry {
+
+        String jwtHash;
+
+        ResultToken resultToken;
+    }
+}
@@ -0,0 +1,149 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.StatusPollingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Advises clients when to poll the status again. The hint is based on how long results took to become available
+ * recently and how long the subject is already waiting. Polls inside the hinted interval are answered without asking
+ * the validation service.
+ */
+@Slf4j
+@Service
+public class StatusPollingAdvisor {
+
+    private static final double SMOOTHING = 0.2;
+
+    private final StatusPollingProperties properties;
+
+    private final Cache<String, Long> pendingSince;
+
+    private final Cache<String, Long> hintedUntil;
+
+    private final Counter answeredLocallyCounter;
+
+    private volatile double expectedPending;
+
+    /**
+     * Creates the advisor.
+     * 
+     * @param dgcProperties {@link DgcProperties}
+     * @param meterRegistry {@link MeterRegistry}
+     */
+    public StatusPollingAdvisor(final DgcProperties dgcProperties, final MeterRegistry meterRegistry) {
+        this.properties = dgcProperties.getStatusPolling();
+        this.expectedPending = this.properties.getExpectedPending().toMillis();
+        this.pendingSince = Caffeine.newBuilder()
+                .maximumSize(this.properties.getMaxSize())
+                .expireAfterWrite(dgcProperties.getValidationExpire())
+                .build();
+        this.hintedUntil = Caffeine.newBuilder()
+                .maximumSize(this.properties.getMaxSize())
+                .expireAfterWrite(this.properties.getMaxRetryAfter())
+                .build();
+        this.answeredLocallyCounter = Counter.builder("dgca.status.pending.local")
+                .description("Status polls answered as pending without asking the validation service")
+                .register(meterRegistry);
+        Gauge.builder("dgca.status.pending.expected", this, advisor -> advisor.expectedPending / 1000)
+                .description("Expected time until a result is available")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Delivers the remaining hint, if the subject polls again inside the hinted interval.
+     * 
+     * @param subject Subject ID
+     * @return Seconds to wait or null if the validation service has to be asked
+     */
+    public Long getCachedRetryAfter(final String subject) {
+        if (!this.properties.isNegativeCache()) {
+            return null;
+        }
+        final Long until = this.hintedUntil.getIfPresent(subject);
+        final long remaining = until != null ? until - System.currentTimeMillis() : 0;
+        if (remaining <= 0) {
+            return null;
+        }
+        log.debug("Status of subject '{}' still pending, answered locally", subject);
+        this.answeredLocallyCounter.increment();
+        return Math.max(1, this.toSeconds(remaining));
+    }
+
+    /**
+     * Records that the result of a subject is still pending.
+     * 
+     * @param subject Subject ID
+     * @return Seconds the client should wait before polling again
+     */
+    public long pending(final String subject) {
+        final long now = System.currentTimeMillis();
+        final long elapsed = now - this.pendingSince.get(subject, key -> now);
+        // Wait for the expected rest, back off if the subject already waits longer than usual
+        final long wait = Math.max((long) this.expectedPending - elapsed, elapsed / 4);
+        final long retryAfter = Math.min(this.properties.getMaxRetryAfter().getSeconds(),
+                Math.max(this.properties.getMinRetryAfter().getSeconds(), this.toSeconds(wait)));
+        if (this.properties.isNegativeCache()) {
+            this.hintedUntil.put(subject, now + retryAfter * 1000);
+        }
+        return retryAfter;
+    }
+
+    /**
+     * Records that the result of a subject is available.
+     * 
+     * @param subject Subject ID
+     */
+    public void completed(final String subject) {
+        this.hintedUntil.invalidate(subject);
+        final Long since = this.pendingSince.getIfPresent(subject);
+        if (since != null) {
+            this.pendingSince.invalidate(subject);
+            this.updateExpectedPending(System.currentTimeMillis() - since);
+        }
+    }
+
+    /**
+     * Forgets the hint of a subject, e.g. because its result arrived.
+     * 
+     * @param subject Subject ID
+     */
+    public void invalidate(final String subject) {
+        this.hintedUntil.invalidate(subject);
+    }
+
+    private synchronized void updateExpectedPending(final long duration) {
+        this.expectedPending += SMOOTHING * (duration - this.expectedPending);
+    }
+
+    private long toSeconds(final long millis) {
+        return (millis + 999) / 1000;
+    }
+}
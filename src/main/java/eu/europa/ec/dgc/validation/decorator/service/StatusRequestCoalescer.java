@@ -0,0 +1,120 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceStatusResponse;
+import eu.europa.ec.dgc.validation.decorator.exception.DeadlineExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Lets concurrent status requests of the same subject share one evaluation. The first request evaluates the status,
+ * all requests arriving meanwhile wait for its response or exception.
+ */
+@Slf4j
+@Service
+public class StatusRequestCoalescer {
+
+    private final ConcurrentMap<String, CompletableFuture<ValidationServiceStatusResponse>> inFlight =
+            new ConcurrentHashMap<>();
+
+    private final Counter coalescedCounter;
+
+    /**
+     * Creates the coalescer.
+     * 
+     * @param meterRegistry {@link MeterRegistry}
+     */
+    public StatusRequestCoalescer(final MeterRegistry meterRegistry) {
+        this.coalescedCounter = Counter.builder("dgca.status.coalesced")
+                .description("Status requests answered by the evaluation of a concurrent request")
+                .register(meterRegistry);
+        Gauge.builder("dgca.status.inflight", this.inFlight, Map::size)
+                .description("Status evaluations in progress")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Evaluates the status of a subject or waits for the evaluation already in progress.
+     * 
+     * @param subject Subject ID
+     * @param evaluation Evaluation of the status
+     * @return {@link ValidationServiceStatusResponse}
+     */
+    public ValidationServiceStatusResponse execute(final String subject,
+            final Supplier<ValidationServiceStatusResponse> evaluation) {
+        final CompletableFuture<ValidationServiceStatusResponse> own = new CompletableFuture<>();
+        final CompletableFuture<ValidationServiceStatusResponse> running = this.inFlight.putIfAbsent(subject, own);
+        if (running != null) {
+            log.debug("Status of subject '{}' already in evaluation", subject);
+            this.coalescedCounter.increment();
+            return this.await(running);
+        }
+
+        try {
+            final ValidationServiceStatusResponse status = evaluation.get();
+            own.complete(status);
+            return status;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlight.remove(subject, own);
+        }
+    }
+
+    private ValidationServiceStatusResponse await(final CompletableFuture<ValidationServiceStatusResponse> running) {
+        final RequestDeadline deadline = RequestDeadline.current();
+        try {
+            if (deadline == null) {
+                return running.join();
+            }
+            // Wait no longer than the own budget allows
+            return running.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (CompletionException | ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException(String.format("Budget of endpoint '%s' exhausted waiting for status",
+                    deadline.getEndpoint()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
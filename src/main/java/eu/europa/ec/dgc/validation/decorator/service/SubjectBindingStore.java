@@ -0,0 +1,101 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import lombok.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the service a subject has chosen at /token, so later requests of the subject do not have to ask the booking
+ * service for it. A binding expires with the access token of the validation service.
+ */
+@Service
+public class SubjectBindingStore {
+
+    private final Cache<String, SubjectBinding> bindings;
+
+    /**
+     * Creates the store.
+     * 
+     * @param properties {@link DgcProperties}
+     */
+    public SubjectBindingStore(final DgcProperties properties) {
+        final long maxLifetime = properties.getValidationExpire().getSeconds();
+        this.bindings = Caffeine.newBuilder()
+                .maximumSize(properties.getSubjectBinding().getMaxSize())
+                .expireAfter(new Expiry<String, SubjectBinding>() {
+                    @Override
+                    public long expireAfterCreate(final String subject, final SubjectBinding binding,
+                            final long currentTime) {
+                        final long lifetime = binding.getExp() - Instant.now().getEpochSecond();
+                        return TimeUnit.SECONDS.toNanos(Math.max(0, Math.min(lifetime, maxLifetime)));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(final String subject, final SubjectBinding binding,
+                            final long currentTime, final long currentDuration) {
+                        return this.expireAfterCreate(subject, binding, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(final String subject, final SubjectBinding binding,
+                            final long currentTime, final long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Records the service chosen by a subject.
+     * 
+     * @param subject Subject ID
+     * @param serviceId Service ID
+     * @param exp Expiration of the validation service access token in seconds since epoch
+     */
+    public void bind(final String subject, final String serviceId, final long exp) {
+        this.bindings.put(subject, new SubjectBinding(serviceId, exp));
+    }
+
+    /**
+     * Delivers the binding of a subject.
+     * 
+     * @param subject Subject ID
+     * @return {@link SubjectBinding} or null if unknown or expired
+     */
+    public SubjectBinding getBinding(final String subject) {
+        return this.bindings.getIfPresent(subject);
+    }
+
+    @Value
+    public static class SubjectBinding {
+
+        String serviceId;
+
+        long exp;
+    }
+}
@@ -7,6 +7,7 @@ import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse.
 import eu.europa.ec.dgc.validation.decorator.exception.DccException;
 import eu.europa.ec.dgc.validation.decorator.exception.RepositoryException;
 import eu.europa.ec.dgc.validation.decorator.repository.BackendRepository;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectBindingStore.SubjectBinding;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +25,8 @@ public class SubjectService {
 
     private final BackendRepository backendRepository;
 
+    private final SubjectBindingStore subjectBindingStore;
+
     /**
      * Determines the service based on the subject.
      * 
@@ -31,6 +34,14 @@ public class SubjectService {
      * @return {@link ServiceProperties}
      */
     public ServiceProperties getServiceBySubject(String subject) {
+        final SubjectBinding binding = this.subjectBindingStore.getBinding(subject);
+        if (binding != null) {
+            log.debug("Receive service ID from subject binding '{}'", binding.getServiceId());
+            final ServiceProperties service = this.identityService.getServicePropertiesById(binding.getServiceId());
+            SubjectTracing.tagService(service.getId());
+            return service;
+        }
+
         final ServiceTokenContentResponse tokenContent = this.getBackendTokenContent(subject);
         if (tokenContent != null && tokenContent.getSubjects() == null || tokenContent.getSubjects().isEmpty()) {
             throw new DccException("Subject not found in token", HttpStatus.NO_CONTENT.value());
@@ -49,6 +60,7 @@ public class SubjectService {
 
         final ServiceProperties service = this.identityService.getServicePropertiesById(decodedServiceId);
         log.debug("Receive service: {}", service);
+        SubjectTracing.tagService(service.getId());
         return service;
     }
 
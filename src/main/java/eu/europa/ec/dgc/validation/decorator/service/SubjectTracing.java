@@ -0,0 +1,162 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import eu.europa.ec.dgc.validation.decorator.exception.UncheckedNoSuchAlgorithmException;
+import io.opentelemetry.api.trace.Span;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.function.Supplier;
+import org.springframework.util.StringUtils;
+
+/**
+ * Adds the subject and the service of the current request to spans and profiling events. Only a hash of the subject,
+ * salted with a secret, is stored: traces must not reveal subjects, not even to someone who knows a subject.
+ */
+public final class SubjectTracing {
+
+    public static final String ATTRIBUTE = "dgca.subject.hash";
+
+    public static final String ATTRIBUTE_SERVICE = "dgca.service";
+
+    private static final ThreadLocal<String> CURRENT_HASH = new ThreadLocal<>();
+
+    private static final ThreadLocal<String> CURRENT_SERVICE = new ThreadLocal<>();
+
+    private static volatile byte[] secret = randomSecret();
+
+    private SubjectTracing() {
+    }
+
+    /**
+     * Sets the secret the subjects are salted with. Instances with the same secret have the same hashes, without a
+     * secret a random one is used and the hashes change with each start.
+     * 
+     * @param secret Secret, random if empty
+     */
+    public static void setSecret(final String secret) {
+        SubjectTracing.secret = StringUtils.hasText(secret)
+                ? secret.getBytes(StandardCharsets.UTF_8)
+                : randomSecret();
+    }
+
+    /**
+     * Adds the hashed subject to the current span and the current thread.
+     * 
+     * @param subject Subject ID
+     */
+    public static void tag(final String subject) {
+        if (subject != null) {
+            CURRENT_HASH.set(hash(subject));
+            tag(Span.current(), subject);
+        }
+    }
+
+    /**
+     * Adds the hashed subject to a span.
+     * 
+     * @param span {@link Span}
+     * @param subject Subject ID
+     */
+    public static void tag(final Span span, final String subject) {
+        if (subject != null && span.isRecording()) {
+            span.setAttribute(ATTRIBUTE, hash(subject));
+        }
+    }
+
+    /**
+     * Adds the validation service to the current span and the current thread.
+     * 
+     * @param serviceId Service ID
+     */
+    public static void tagService(final String serviceId) {
+        if (serviceId != null) {
+            CURRENT_SERVICE.set(serviceId);
+            Span.current().setAttribute(ATTRIBUTE_SERVICE, serviceId);
+        }
+    }
+
+    public static String currentHash() {
+        return CURRENT_HASH.get();
+    }
+
+    public static String currentService() {
+        return CURRENT_SERVICE.get();
+    }
+
+    /**
+     * Removes subject and service from the current thread.
+     */
+    public static void clear() {
+        CURRENT_HASH.remove();
+        CURRENT_SERVICE.remove();
+    }
+
+    /**
+     * Wraps a call, so it sees the subject and service of the current thread when executed by another thread.
+     * 
+     * @param call Call to wrap
+     * @param <T> Result type
+     * @return Wrapped call
+     */
+    public static <T> Supplier<T> propagate(final Supplier<T> call) {
+        final String hash = CURRENT_HASH.get();
+        final String service = CURRENT_SERVICE.get();
+        if (hash == null && service == null) {
+            return call;
+        }
+        return () -> {
+            CURRENT_HASH.set(hash);
+            CURRENT_SERVICE.set(service);
+            try {
+                return call.get();
+            } finally {
+                clear();
+            }
+        };
+    }
+
+    /**
+     * Hashes a subject salted with the secret, the same subject always has the same hash.
+     * 
+     * @param subject Subject ID
+     * @return Hash, base64url encoded
+     */
+    public static String hash(final String subject) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(secret);
+            final byte[] hash = digest.digest(subject.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22);
+        } catch (NoSuchAlgorithmException e) {
+            throw new UncheckedNoSuchAlgorithmException(e);
+        }
+    }
+
+    private static byte[] randomSecret() {
+        final byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        return random;
+    }
+}
@@ -22,33 +22,23 @@ package eu.europa.ec.dgc.validation.decorator.service;
 
 import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.ServiceProperties;
 import eu.europa.ec.dgc.validation.decorator.dto.ResultToken;
-import eu.europa.ec.dgc.validation.decorator.dto.ResultToken.Result;
 import eu.europa.ec.dgc.validation.decorator.entity.KeyUse;
 import eu.europa.ec.dgc.validation.decorator.entity.ServiceResultRequest;
-import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse;
-import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse.SubjectResponse;
 import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceIdentityResponse;
 import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceIdentityResponse.PublicKeyJwk;
 import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceStatusResponse;
-import eu.europa.ec.dgc.validation.decorator.exception.DccException;
 import eu.europa.ec.dgc.validation.decorator.exception.NotFoundException;
 import eu.europa.ec.dgc.validation.decorator.exception.RepositoryException;
 import eu.europa.ec.dgc.validation.decorator.exception.UncheckedCertificateException;
-import eu.europa.ec.dgc.validation.decorator.repository.BackendRepository;
 import eu.europa.ec.dgc.validation.decorator.repository.ValidationServiceRepository;
-import io.jsonwebtoken.Header;
-import io.jsonwebtoken.Jwt;
+import eu.europa.ec.dgc.validation.decorator.service.FlowLatencyTracker.Milestone;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.nio.charset.StandardCharsets;
 import java.security.PublicKey;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.util.Base64;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.convert.ConversionService;
@@ -62,9 +52,7 @@ import org.springframework.web.client.HttpClientErrorException;
 @RequiredArgsConstructor
 public class ValidationStatusService {
 
-    private final BackendRepository backendRepository;
-
-    private final IdentityService identityService;
+    private final SubjectService subjectService;
 
     private final ValidationServiceRepository validationServiceRepository;
 
@@ -72,6 +60,16 @@ public class ValidationStatusService {
 
     private final ConversionService converter;
 
+    private final ResultSubmissionLedger resultSubmissionLedger;
+
+    private final ResultOutbox resultOutbox;
+
+    private final StatusRequestCoalescer statusRequestCoalescer;
+
+    private final StatusPollingAdvisor statusPollingAdvisor;
+
+    private final FlowLatencyTracker flowLatencyTracker;
+
     /**
      * Determines the status of the validation service.
      * 
@@ -79,103 +77,63 @@ public class ValidationStatusService {
      * @return {@link ValidationServiceStatusResponse}
      */
     public ValidationServiceStatusResponse determineStatus(final String subject) {
-        final ServiceTokenContentResponse tokenContent = this.getBackendTokenContent(subject);
-        if (tokenContent != null && tokenContent.getSubjects() == null || tokenContent.getSubjects().isEmpty()) {
-            throw new DccException("Subject not found in token", HttpStatus.NO_CONTENT.value());
-        }
-
-        final SubjectResponse subjectResponse = tokenContent.getSubjects().get(0);
-        final String serviceId = subjectResponse.getServiceIdUsed();
-        log.debug("Receive service ID (encoded) from booking service '{}'", serviceId);
-        if (serviceId == null || serviceId.isBlank()) {
-            throw new DccException(String.format("Subject without service ID '%s'", serviceId),
+        this.flowLatencyTracker.polled(subject);
+        final Long retryAfter = this.statusPollingAdvisor.getCachedRetryAfter(subject);
+        if (retryAfter != null) {
+            final ValidationServiceStatusResponse pending = new ValidationServiceStatusResponse(
                     HttpStatus.NO_CONTENT.value());
+            pending.setRetryAfter(retryAfter);
+            return pending;
         }
+        return this.statusRequestCoalescer.execute(subject, () -> this.evaluateStatus(subject));
+    }
 
-        final String decodedServiceId = new String(Base64.getUrlDecoder().decode(serviceId), StandardCharsets.UTF_8);
-        log.debug("Receive service ID (decoded) from booking service '{}'", decodedServiceId);
-
-        final ServiceProperties service = this.identityService.getServicePropertiesById(decodedServiceId);
-        log.debug("Receive service: {}", service);
+    private ValidationServiceStatusResponse evaluateStatus(final String subject) {
+        final ServiceProperties service = this.subjectService.getServiceBySubject(subject);
 
         final ValidationServiceStatusResponse status = this.getValidationServiceStatus(subject, service);
         log.debug("Receive validation service response (status code): {}", status.getHttpStatusCode());
 
+        if (status.getHttpStatusCode() == HttpStatus.NO_CONTENT.value()) {
+            status.setRetryAfter(this.statusPollingAdvisor.pending(subject));
+        } else if (status.getHttpStatusCode() == HttpStatus.OK.value()) {
+            this.statusPollingAdvisor.completed(subject);
+            this.flowLatencyTracker.reached(subject, Milestone.RESULT_STATUS);
+        }
+
         if (status.getHttpStatusCode() == HttpStatus.OK.value() && StringUtils.hasText(status.getJwt())) {
-            final Map<String, Object> jwtContent = this.getJwtContent(service, status);
-            final ResultToken resultToken = this.buildResultToken(jwtContent);
+            // Same result JWT as before: answer from the ledger without verifying and submitting again
+            final String jwtHash = this.resultSubmissionLedger.hash(status.getJwt());
+            final ResultToken submittedResultToken = this.resultSubmissionLedger.findSubmitted(subject, jwtHash);
+            if (submittedResultToken != null) {
+                status.setResultToken(submittedResultToken);
+                return status;
+            }
+
+            final ResultToken resultToken = this.parseResultToken(service, subject, status);
             status.setResultToken(resultToken);
 
             // Send result to backend service
-            try {
-                final ServiceResultRequest request = this.converter.convert(resultToken, ServiceResultRequest.class);
-                this.backendRepository.result(subject, request);
-            } catch (HttpClientErrorException e) {
-                log.error(e.getMessage(), e);
-                throw new RepositoryException("Backend service http client error", e);
-            }
+            final ServiceResultRequest request = this.converter.convert(resultToken, ServiceResultRequest.class);
+            this.resultOutbox.submit(subject, request);
+            this.resultSubmissionLedger.record(subject, jwtHash, resultToken);
         }
         return status;
     }
 
-    @SuppressWarnings("unchecked")
-    private ResultToken buildResultToken(final Map<String, Object> jwtContent) {
-        final ResultToken resultToken = new ResultToken();
-        if (jwtContent.containsKey("result")) {
-            resultToken.setResult((String) jwtContent.get("result"));
-        }
-        if (jwtContent.containsKey("confirmation")) {
-            resultToken.setConfirmation((String) jwtContent.get("confirmation"));
-        }
-        if (jwtContent.containsKey("iss")) {
-            resultToken.setIssuer((String) jwtContent.get("iss"));
-        }
-        if (jwtContent.containsKey("iat")) {
-            resultToken.setIat(((Integer) jwtContent.get("iat")).longValue());
-        }
-        if (jwtContent.containsKey("results")) {
-            final List<Map<String, Object>> jwtResults = (List<Map<String, Object>>) jwtContent.get("results");
-            final List<Result> results = jwtResults.stream().map(jwtRes -> {
-                final Result res = new Result();
-                if (jwtRes.containsKey("identifier")) {
-                    res.setIdentifier((String) jwtRes.get("identifier"));
-                }
-                if (jwtRes.containsKey("result")) {
-                    res.setResult((String) jwtRes.get("result"));
-                }
-                if (jwtRes.containsKey("type")) {
-                    res.setType((String) jwtRes.get("type"));
-                }
-                if (jwtRes.containsKey("details")) {
-                    res.setDetails((String) jwtRes.get("details"));
-                }
-                return res;
-            }).collect(Collectors.toList());
-            resultToken.setResults(results);
-        }
-        return resultToken;
-    }
-
-    private Map<String, Object> getJwtContent(final ServiceProperties service,
+    private ResultToken parseResultToken(final ServiceProperties service, final String subject,
             final ValidationServiceStatusResponse status) {
-        if (status.getHttpStatusCode() == HttpStatus.OK.value() && StringUtils.hasText(status.getJwt())) {
-            final Jwt jwt = this.accessTokenService.parseUnsecure(status.getJwt());
-            final Header jwtHeaders = jwt.getHeader();
-            if (jwtHeaders.containsKey("kid") && jwtHeaders.get("kid") instanceof String) {
-                final String keyId = (String) jwtHeaders.get("kid");
-
-                final PublicKey vsPublicKey = this.getSignPublicKey(service, keyId);
-                return this.accessTokenService.parseAccessToken(status.getJwt(), vsPublicKey);
-            } else {
+        return this.accessTokenService.parseToken(status.getJwt(), ResultToken.class, keyId -> {
+            if (keyId == null) {
                 throw new NotFoundException("Status JWT has no key ID");
             }
-        } else {
-            throw new NotFoundException("Status response has no JWT");
-        }
+            return this.getSignPublicKey(service, subject, keyId);
+        });
     }
 
-    private PublicKey getSignPublicKey(final ServiceProperties service, final String keyId) {
-        final ValidationServiceIdentityResponse identity = this.validationServiceRepository.identity(service);
+    private PublicKey getSignPublicKey(final ServiceProperties service, final String subject,
+            final String keyId) {
+        final ValidationServiceIdentityResponse identity = this.validationServiceRepository.identity(service, subject);
         return identity.getVerificationMethod().stream()
                 .filter(vm -> vm.getPublicKeyJwk() != null)
                 .filter(vm -> KeyUse.SIG.name().equalsIgnoreCase(vm.getPublicKeyJwk().getUse()))
@@ -197,15 +155,6 @@ public class ValidationStatusService {
         }
     }
 
-    private ServiceTokenContentResponse getBackendTokenContent(final String subject) {
-        try {
-            return this.backendRepository.tokenContent(subject);
-        } catch (HttpClientErrorException e) {
-            log.error(e.getMessage(), e);
-            throw new RepositoryException("Backend service http client error", e);
-        }
-    }
-
     private ValidationServiceStatusResponse getValidationServiceStatus(final String subject,
             final ServiceProperties service) {
         try {
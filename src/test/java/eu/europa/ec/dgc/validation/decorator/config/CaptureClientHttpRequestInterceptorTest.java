@@ -0,0 +1,207 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.CaptureProperties;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+class CaptureClientHttpRequestInterceptorTest {
+
+    private static final String SUBJECT = "6ab1fb0a-2a4b-4c31-8d8e-8b6c2b7c4f21";
+
+    private static final String OTHER_PASSENGER = "0f8fad5b-d9cb-469f-a165-70867728950e";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+
+    private CaptureClientHttpRequestInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        this.file = this.tempDir.resolve("captures/downstream.jsonl");
+        final CaptureProperties properties = new CaptureProperties();
+        properties.setFile(this.file.toString());
+        this.interceptor = new CaptureClientHttpRequestInterceptor(properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        this.interceptor.close();
+    }
+
+    @Test
+    void intercept_authorizationHeader_dropped() throws IOException {
+        final MockClientHttpRequest request = buildRequest("/identity", null);
+        request.getHeaders().add(HttpHeaders.AUTHORIZATION, "Bearer secret-token");
+
+        this.interceptor.intercept(request, new byte[0], (r, b) -> buildResponse(null, null));
+
+        final JsonNode entry = this.readEntry();
+        assertThat(entry.get("requestHeaders").has(HttpHeaders.AUTHORIZATION)).isFalse();
+        assertThat(Files.readString(this.file)).doesNotContain("secret-token");
+    }
+
+    @Test
+    void intercept_personalFields_maskedAtAnyDepthIgnoringCase() throws IOException {
+        final String body = "{\"passengers\":[{\"Forename\":\"Erika\",\"lastname\":\"Mustermann\","
+                + "\"BIRTHDATE\":\"1964-08-12\"}],\"booking\":{\"details\":{\"reference\":\"AB-123\"}},"
+                + "\"type\":\"Flight\"}";
+
+        this.interceptor.intercept(buildRequest("/booking", MediaType.APPLICATION_JSON),
+                body.getBytes(StandardCharsets.UTF_8), (r, b) -> buildResponse(null, null));
+
+        final JsonNode requestBody = this.mapper.readTree(this.readEntry().get("requestBody").asText());
+        final JsonNode passenger = requestBody.get("passengers").get(0);
+        assertThat(passenger.get("Forename").asText()).isEqualTo("Xxxxx");
+        assertThat(passenger.get("lastname").asText()).isEqualTo("Xxxxxxxxxx");
+        assertThat(passenger.get("BIRTHDATE").asText()).isEqualTo("1111-11-11");
+        assertThat(requestBody.get("booking").get("details").get("reference").asText()).isEqualTo("XX-111");
+        assertThat(requestBody.get("type").asText()).isEqualTo("Flight");
+    }
+
+    @Test
+    void intercept_pathSubject_replacedInRouteAndBodies() throws IOException {
+        final String requestBody = "{\"sub\":\"" + SUBJECT + "\"}";
+        final String responseBody = "{\"subject\":\"" + SUBJECT + "\"}";
+
+        this.interceptor.intercept(buildRequest("/tokencontent/" + SUBJECT, MediaType.APPLICATION_JSON),
+                requestBody.getBytes(StandardCharsets.UTF_8),
+                (r, b) -> buildResponse(MediaType.APPLICATION_JSON, responseBody));
+
+        final JsonNode entry = this.readEntry();
+        assertThat(entry.get("route").asText()).isEqualTo("/tokencontent/{subject}");
+        assertThat(entry.get("requestBody").asText()).isEqualTo("{\"sub\":\"{subject}\"}");
+        assertThat(entry.get("responseBody").asText()).isEqualTo("{\"subject\":\"{subject}\"}");
+        assertThat(Files.readString(this.file)).doesNotContain(SUBJECT);
+    }
+
+    @Test
+    void intercept_otherPassengerIds_masked() throws IOException {
+        final String responseBody = "{\"passengers\":[{\"id\":\"" + SUBJECT + "\"},{\"id\":\"" + OTHER_PASSENGER
+                + "\"}],\"subjects\":[\"" + OTHER_PASSENGER + "\"]}";
+
+        this.interceptor.intercept(buildRequest("/tokencontent/" + SUBJECT, null), new byte[0],
+                (r, b) -> buildResponse(MediaType.APPLICATION_JSON, responseBody));
+
+        final JsonNode body = this.mapper.readTree(this.readEntry().get("responseBody").asText());
+        assertThat(body.get("passengers").get(0).get("id").asText()).isEqualTo("{subject}");
+        assertThat(body.get("passengers").get(1).get("id").asText()).isEqualTo("1x1xxx1x-x1xx-111x-x111-11111111111x");
+        assertThat(body.get("subjects").get(0).asText()).isEqualTo("1x1xxx1x-x1xx-111x-x111-11111111111x");
+        assertThat(Files.readString(this.file)).doesNotContain(OTHER_PASSENGER);
+    }
+
+    @Test
+    void intercept_nonJsonBody_unchanged() throws IOException {
+        final String body = "forename=Erika&lastname=Mustermann";
+
+        this.interceptor.intercept(buildRequest("/booking", MediaType.APPLICATION_FORM_URLENCODED),
+                body.getBytes(StandardCharsets.UTF_8), (r, b) -> buildResponse(MediaType.TEXT_PLAIN, "OK"));
+
+        final JsonNode entry = this.readEntry();
+        assertThat(entry.get("requestBody").asText()).isEqualTo(body);
+        assertThat(entry.get("responseBody").asText()).isEqualTo("OK");
+    }
+
+    @Test
+    void intercept_responseBody_stillReadable() throws IOException {
+        final String responseBody = "{\"forename\":\"Erika\"}";
+
+        final String read = StreamUtils.copyToString(this.interceptor.intercept(buildRequest("/booking", null),
+                new byte[0], (r, b) -> buildResponse(MediaType.APPLICATION_JSON, responseBody)).getBody(),
+                StandardCharsets.UTF_8);
+
+        assertThat(read).isEqualTo(responseBody);
+    }
+
+    @Test
+    void intercept_downstreamFails_errorCapturedAndRethrown() throws IOException {
+        assertThatThrownBy(() -> this.interceptor.intercept(buildRequest("/booking", null), new byte[0],
+                (r, b) -> {
+                    throw new IOException("connection refused");
+                }))
+                .isInstanceOf(IOException.class);
+
+        final JsonNode entry = this.readEntry();
+        assertThat(entry.get("status").asInt()).isZero();
+        assertThat(entry.get("error").asText()).isEqualTo("IOException");
+    }
+
+    @Test
+    void close_laterExchanges_notCaptured() throws IOException {
+        this.interceptor.intercept(buildRequest("/booking", null), new byte[0],
+                (r, b) -> buildResponse(null, null));
+
+        this.interceptor.close();
+        this.interceptor.intercept(buildRequest("/booking", null), new byte[0],
+                (r, b) -> buildResponse(null, null));
+
+        assertThat(Files.readAllLines(this.file)).hasSize(1);
+    }
+
+    private JsonNode readEntry() throws IOException {
+        final List<String> lines = Files.readAllLines(this.file);
+        assertThat(lines).hasSize(1);
+        return this.mapper.readTree(lines.get(0));
+    }
+
+    private static MockClientHttpRequest buildRequest(final String path, final MediaType contentType) {
+        final MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.PUT,
+                URI.create("http://booking:8080" + path));
+        if (contentType != null) {
+            request.getHeaders().setContentType(contentType);
+        }
+        return request;
+    }
+
+    private static MockClientHttpResponse buildResponse(final MediaType contentType, final String body) {
+        final MockClientHttpResponse response = new MockClientHttpResponse(
+                body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+        if (contentType != null) {
+            response.getHeaders().setContentType(contentType);
+        }
+        return response;
+    }
+}
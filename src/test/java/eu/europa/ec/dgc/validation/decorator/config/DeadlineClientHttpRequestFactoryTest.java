@@ -0,0 +1,104 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import eu.europa.ec.dgc.validation.decorator.exception.DeadlineExceededException;
+import eu.europa.ec.dgc.validation.decorator.service.RequestDeadline;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DeadlineClientHttpRequestFactoryTest {
+
+    private static final int CONNECT_TIMEOUT = 5000;
+
+    private static final int READ_TIMEOUT = 10000;
+
+    private DeadlineClientHttpRequestFactory factory;
+
+    private HttpURLConnection connection;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.factory = new DeadlineClientHttpRequestFactory(CONNECT_TIMEOUT, READ_TIMEOUT);
+        // Not connected, only prepared
+        this.connection = (HttpURLConnection) new URL("http://localhost:1/status").openConnection();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    void prepareConnection_noBudget_configuredTimeouts() throws IOException {
+        this.factory.prepareConnection(this.connection, "GET");
+
+        assertThat(this.connection.getConnectTimeout()).isEqualTo(CONNECT_TIMEOUT);
+        assertThat(this.connection.getReadTimeout()).isEqualTo(READ_TIMEOUT);
+    }
+
+    @Test
+    void prepareConnection_largeBudget_configuredTimeouts() throws IOException {
+        RequestDeadline.start("status", Duration.ofMinutes(1));
+
+        this.factory.prepareConnection(this.connection, "GET");
+
+        assertThat(this.connection.getConnectTimeout()).isEqualTo(CONNECT_TIMEOUT);
+        assertThat(this.connection.getReadTimeout()).isEqualTo(READ_TIMEOUT);
+    }
+
+    @Test
+    void prepareConnection_smallBudget_timeoutsClampedToRemainingBudget() throws IOException {
+        RequestDeadline.start("status", Duration.ofSeconds(2));
+
+        this.factory.prepareConnection(this.connection, "GET");
+
+        assertThat(this.connection.getConnectTimeout()).isPositive().isLessThanOrEqualTo(2000);
+        assertThat(this.connection.getReadTimeout()).isPositive().isLessThanOrEqualTo(2000);
+    }
+
+    @Test
+    void prepareConnection_budgetBetweenTimeouts_onlyReadTimeoutClamped() throws IOException {
+        RequestDeadline.start("status", Duration.ofSeconds(8));
+
+        this.factory.prepareConnection(this.connection, "GET");
+
+        assertThat(this.connection.getConnectTimeout()).isEqualTo(CONNECT_TIMEOUT);
+        assertThat(this.connection.getReadTimeout()).isGreaterThan(CONNECT_TIMEOUT).isLessThanOrEqualTo(8000);
+    }
+
+    @Test
+    void prepareConnection_budgetExhausted_deadlineExceeded() throws InterruptedException {
+        RequestDeadline.start("status", Duration.ofMillis(1));
+        Thread.sleep(20);
+
+        assertThatThrownBy(() -> this.factory.prepareConnection(this.connection, "GET"))
+                .isInstanceOf(DeadlineExceededException.class)
+                .hasMessageContaining("status");
+    }
+}
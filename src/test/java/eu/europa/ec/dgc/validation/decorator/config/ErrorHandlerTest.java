@@ -0,0 +1,67 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import eu.europa.ec.dgc.gateway.connector.dto.ProblemReportDto;
+import eu.europa.ec.dgc.validation.decorator.exception.DownstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+class ErrorHandlerTest {
+
+    private ErrorHandler errorHandler;
+
+    @BeforeEach
+    void setUp() {
+        this.errorHandler = new ErrorHandler(new SimpleMeterRegistry());
+    }
+
+    @Test
+    void handleException_downstreamUnavailableWithRetryAfter_serviceUnavailableWithRetryAfter() {
+        final ResponseEntity<ProblemReportDto> response = this.errorHandler.handleException(
+                new DownstreamUnavailableException("booking", "Downstream 'booking' unavailable: circuit open", 10L,
+                        null));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("10");
+        assertThat(response.getBody()).isEqualTo(new ProblemReportDto("", "Downstream Unavailable", "",
+                "Downstream 'booking' unavailable: circuit open"));
+    }
+
+    @Test
+    void handleException_downstreamUnavailableWithoutRetryAfter_serviceUnavailableWithoutRetryAfter() {
+        final ResponseEntity<ProblemReportDto> response = this.errorHandler.handleException(
+                new DownstreamUnavailableException("booking", "Downstream 'booking' unavailable: too many concurrent "
+                        + "calls", null, null));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().containsKey(HttpHeaders.RETRY_AFTER)).isFalse();
+        assertThat(response.getBody()).isEqualTo(new ProblemReportDto("", "Downstream Unavailable", "",
+                "Downstream 'booking' unavailable: too many concurrent calls"));
+    }
+}
@@ -0,0 +1,75 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileSpanExporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+
+    private SdkTracerProvider tracerProvider;
+
+    @BeforeEach
+    void setUp() {
+        this.file = this.tempDir.resolve("traces/spans.jsonl");
+        this.tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(new FileSpanExporter(this.file)))
+                .build();
+    }
+
+    @Test
+    void export_finishedSpans_oneJsonLineEach() throws Exception {
+        final Span span = this.tracerProvider.get("test").spanBuilder("GET /status")
+                .setSpanKind(SpanKind.SERVER)
+                .setAttribute("http.route", "/status")
+                .startSpan();
+        span.end();
+        this.tracerProvider.get("test").spanBuilder("GET").startSpan().end();
+        this.tracerProvider.shutdown().join(5, TimeUnit.SECONDS);
+
+        final List<String> lines = Files.readAllLines(this.file);
+        assertThat(lines).hasSize(2);
+        final JsonNode line = new ObjectMapper().readTree(lines.get(0));
+        assertThat(line.get("traceId").asText()).isEqualTo(span.getSpanContext().getTraceId());
+        assertThat(line.get("spanId").asText()).isEqualTo(span.getSpanContext().getSpanId());
+        assertThat(line.get("name").asText()).isEqualTo("GET /status");
+        assertThat(line.get("kind").asText()).isEqualTo("SERVER");
+        assertThat(line.get("attributes").get("http.route").asText()).isEqualTo("/status");
+    }
+}
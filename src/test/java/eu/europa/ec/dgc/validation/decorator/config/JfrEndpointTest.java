@@ -0,0 +1,59 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import eu.europa.ec.dgc.validation.decorator.service.JfrRecorder;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+class JfrEndpointTest {
+
+    // Management settings of application.yml
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withBean(JfrRecorder.class, () -> mock(JfrRecorder.class))
+            .withUserConfiguration(JfrEndpoint.class)
+            .withPropertyValues(
+                    "management.endpoints.enabled-by-default=false",
+                    "management.endpoints.web.exposure.include=info,health,metrics,prometheus");
+
+    @Test
+    void endpoint_defaultSettings_absent() {
+        this.contextRunner.run(context -> assertThat(context).doesNotHaveBean(JfrEndpoint.class));
+    }
+
+    @Test
+    void endpoint_exposedButNotEnabled_absent() {
+        this.contextRunner
+                .withPropertyValues("management.endpoints.web.exposure.include=jfr")
+                .run(context -> assertThat(context).doesNotHaveBean(JfrEndpoint.class));
+    }
+
+    @Test
+    void endpoint_enabledAndExposed_present() {
+        this.contextRunner
+                .withPropertyValues("management.endpoint.jfr.enabled=true",
+                        "management.endpoints.web.exposure.include=jfr")
+                .run(context -> assertThat(context).hasSingleBean(JfrEndpoint.class));
+    }
+}
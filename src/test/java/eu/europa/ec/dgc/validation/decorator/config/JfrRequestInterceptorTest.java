@@ -0,0 +1,129 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import eu.europa.ec.dgc.validation.decorator.jfr.RequestEvent;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectTracing;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+class JfrRequestInterceptorTest {
+
+    private static final String REQUEST_EVENT = "eu.europa.ec.dgc.validation.decorator.Request";
+
+    @TempDir
+    Path tempDir;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(FlightRecorder.isAvailable());
+        this.mockMvc = MockMvcBuilders.standaloneSetup(new RequestController())
+                .addInterceptors(new JfrRequestInterceptor())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SubjectTracing.clear();
+    }
+
+    @Test
+    void afterCompletion_subjectInPath_eventWithRouteAndHashedSubject() throws Exception {
+        final String subject = UUID.randomUUID().toString();
+
+        final List<RecordedEvent> events = this.record(() -> this.mockMvc.perform(get("/status/" + subject))
+                .andExpect(status().isOk()));
+
+        assertThat(events).hasSize(1);
+        final RecordedEvent event = events.get(0);
+        assertThat(event.getString("endpoint")).isEqualTo("/status/{subject}");
+        assertThat(event.getString("method")).isEqualTo("GET");
+        assertThat(event.getInt("status")).isEqualTo(200);
+        assertThat(event.getString("outcome")).isEqualTo("success");
+        assertThat(event.getString("subjectHash")).isEqualTo(SubjectTracing.hash(subject));
+        assertThat(event.getString("service")).isEqualTo("service");
+        assertThat(List.of("endpoint", "method", "outcome", "subjectHash", "service"))
+                .noneMatch(field -> event.getString(field).contains(subject));
+    }
+
+    @Test
+    void afterCompletion_noRecording_noEvent() throws Exception {
+        this.mockMvc.perform(get("/status/" + UUID.randomUUID())).andExpect(status().isOk());
+
+        final List<RecordedEvent> events = this.record(() -> {
+        });
+
+        assertThat(events).isEmpty();
+    }
+
+    private List<RecordedEvent> record(final Action action) throws Exception {
+        final Path file = this.tempDir.resolve("requests.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(RequestEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> REQUEST_EVENT.equals(event.getEventType().getName()))
+                .collect(Collectors.toList());
+    }
+
+    private interface Action {
+
+        void run() throws Exception;
+    }
+
+    @RestController
+    static class RequestController {
+
+        @GetMapping("/status/{subject}")
+        public String status(@PathVariable final String subject) {
+            SubjectTracing.tag(subject);
+            SubjectTracing.tagService("service");
+            return "ok";
+        }
+    }
+}
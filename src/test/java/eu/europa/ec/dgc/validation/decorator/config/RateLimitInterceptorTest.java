@@ -0,0 +1,270 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.BucketProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.EndpointLimitProperties;
+import eu.europa.ec.dgc.validation.decorator.exception.RequestThrottledException;
+import eu.europa.ec.dgc.validation.decorator.service.LoadShedder;
+import eu.europa.ec.dgc.validation.decorator.service.RateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+class RateLimitInterceptorTest {
+
+    private DgcProperties dgcProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private LoadShedder loadShedder;
+
+    private RateLimitInterceptor interceptor;
+
+    private HandlerMethod handler;
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @BeforeEach
+    void setUp() throws NoSuchMethodException {
+        this.dgcProperties = new DgcProperties();
+        this.dgcProperties.getRateLimit().setClientHeader("X-Forwarded-For");
+        this.dgcProperties.getRateLimit().getShedding().setMaxInFlight(0);
+        final EndpointLimitProperties limits = new EndpointLimitProperties();
+        limits.setSubject(buildLimit(1, 1));
+        limits.setClient(buildLimit(2, 0.5));
+        this.dgcProperties.getRateLimit().getEndpoints().put("status", limits);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.loadShedder = new LoadShedder(this.dgcProperties, this.meterRegistry);
+        this.interceptor = new RateLimitInterceptor(this.dgcProperties, new RateLimiter(this.dgcProperties),
+                this.loadShedder, this.meterRegistry);
+        this.handler = new HandlerMethod(this, RateLimitInterceptorTest.class.getDeclaredMethod("status"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Removes the request mark of admitted requests from the test thread
+        this.loadShedder.exit();
+    }
+
+    @Test
+    void preHandle_withinLimits_admittedAndCountedInFlight() {
+        final MockHttpServletRequest request = buildRequest("subject", "1.2.3.4");
+
+        assertThat(this.interceptor.preHandle(request, this.response, this.handler)).isTrue();
+        assertThat(this.inFlight()).isEqualTo(1);
+
+        this.interceptor.afterCompletion(request, this.response, this.handler, null);
+        assertThat(this.inFlight()).isZero();
+    }
+
+    @Test
+    void preHandle_subjectLimitExceeded_tooManyRequestsWithRetryAfter() {
+        this.admit(buildRequest("subject", "1.2.3.4"));
+
+        assertThatThrownBy(() -> this.interceptor.preHandle(buildRequest("subject", "5.6.7.8"), this.response,
+                this.handler))
+                .isInstanceOfSatisfying(RequestThrottledException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(429);
+                    assertThat(e.getRetryAfter()).isEqualTo(1);
+                });
+        assertThat(this.rejected("subject")).isEqualTo(1);
+    }
+
+    @Test
+    void preHandle_otherSubject_ownBucket() {
+        this.admit(buildRequest("subject", "1.2.3.4"));
+
+        assertThat(this.interceptor.preHandle(buildRequest("other", "5.6.7.8"), this.response, this.handler))
+                .isTrue();
+    }
+
+    @Test
+    void preHandle_sameAccessToken_sameSubjectBucket() {
+        final MockHttpServletRequest first = buildRequest(null, "1.2.3.4");
+        first.addHeader(HttpHeaders.AUTHORIZATION, "Bearer token");
+        this.admit(first);
+        final MockHttpServletRequest second = buildRequest(null, "5.6.7.8");
+        second.addHeader(HttpHeaders.AUTHORIZATION, "Bearer token");
+
+        assertThatThrownBy(() -> this.interceptor.preHandle(second, this.response, this.handler))
+                .isInstanceOf(RequestThrottledException.class);
+        assertThat(this.rejected("subject")).isEqualTo(1);
+    }
+
+    @Test
+    void preHandle_clientLimitExceeded_tooManyRequestsWithRetryAfter() {
+        this.admit(buildRequest("subject-1", "1.2.3.4"));
+        this.admit(buildRequest("subject-2", "1.2.3.4"));
+
+        assertThatThrownBy(() -> this.interceptor.preHandle(buildRequest("subject-3", "1.2.3.4"), this.response,
+                this.handler))
+                .isInstanceOfSatisfying(RequestThrottledException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(429);
+                    assertThat(e.getRetryAfter()).isEqualTo(2);
+                });
+        assertThat(this.rejected("client")).isEqualTo(1);
+        assertThat(this.interceptor.preHandle(buildRequest("subject-4", "5.6.7.8"), this.response, this.handler))
+                .isTrue();
+    }
+
+    @Test
+    void preHandle_spoofedForwardingEntries_entryOfTrustedProxyIsClient() {
+        this.admit(buildRequest("subject-1", "1.2.3.4"));
+        this.admit(buildRequest("subject-2", "spoofed-1, 1.2.3.4"));
+
+        assertThatThrownBy(() -> this.interceptor.preHandle(buildRequest("subject-3", "spoofed-2, 1.2.3.4"),
+                this.response, this.handler))
+                .isInstanceOf(RequestThrottledException.class);
+        assertThat(this.rejected("client")).isEqualTo(1);
+    }
+
+    @Test
+    void preHandle_twoTrustedProxies_entryOfOutermostProxyIsClient() {
+        this.dgcProperties.getRateLimit().setTrustedProxies(2);
+        this.admit(buildRequest("subject-1", "1.2.3.4, 10.0.0.1"));
+        this.admit(buildRequest("subject-2", "spoofed, 1.2.3.4, 10.0.0.2"));
+
+        assertThatThrownBy(() -> this.interceptor.preHandle(buildRequest("subject-3", "1.2.3.4, 10.0.0.1"),
+                this.response, this.handler))
+                .isInstanceOf(RequestThrottledException.class);
+    }
+
+    @Test
+    void preHandle_chainShorterThanTrustedProxies_remoteAddress() {
+        this.dgcProperties.getRateLimit().setTrustedProxies(2);
+        this.admit(buildRequest("subject-1", "1.2.3.4"));
+        this.admit(buildRequest("subject-2", "5.6.7.8"));
+
+        // Both fall back to the remote address of the mock requests
+        assertThatThrownBy(() -> this.interceptor.preHandle(buildRequest("subject-3", "9.9.9.9"), this.response,
+                this.handler))
+                .isInstanceOf(RequestThrottledException.class);
+    }
+
+    @Test
+    void preHandle_noClientHeader_remoteAddress() {
+        this.dgcProperties.getRateLimit().setClientHeader(null);
+        this.admit(buildRequest("subject-1", "1.2.3.4"));
+        this.admit(buildRequest("subject-2", "5.6.7.8"));
+
+        final MockHttpServletRequest limited = buildRequest("subject-3", "9.9.9.9");
+        assertThatThrownBy(() -> this.interceptor.preHandle(limited, this.response, this.handler))
+                .isInstanceOf(RequestThrottledException.class);
+    }
+
+    @Test
+    void preHandle_endpointWithoutLimits_admitted() {
+        final MockHttpServletRequest request = buildRequest("subject", "1.2.3.4");
+        request.setRequestURI("/token/subject");
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(this.interceptor.preHandle(request, this.response, this.handler)).isTrue();
+        }
+    }
+
+    @Test
+    void preHandle_maxInFlightReached_serviceUnavailable() {
+        this.dgcProperties.getRateLimit().getShedding().setMaxInFlight(1);
+        final MockHttpServletRequest first = buildRequest("subject-1", "1.2.3.4");
+        this.admit(first);
+
+        assertThatThrownBy(() -> this.interceptor.preHandle(buildRequest("subject-2", "5.6.7.8"), this.response,
+                this.handler))
+                .isInstanceOfSatisfying(RequestThrottledException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(503);
+                    assertThat(e.getRetryAfter()).isEqualTo(1);
+                });
+        assertThat(this.rejected(LoadShedder.IN_FLIGHT)).isEqualTo(1);
+
+        this.interceptor.afterCompletion(first, this.response, this.handler, null);
+        assertThat(this.interceptor.preHandle(buildRequest("subject-3", "9.9.9.9"), this.response, this.handler))
+                .isTrue();
+    }
+
+    @Test
+    void afterCompletion_rejectedRequest_inFlightUnchanged() {
+        this.admit(buildRequest("subject", "1.2.3.4"));
+        final MockHttpServletRequest rejected = buildRequest("subject", "5.6.7.8");
+        assertThatThrownBy(() -> this.interceptor.preHandle(rejected, this.response, this.handler))
+                .isInstanceOf(RequestThrottledException.class);
+
+        this.interceptor.afterCompletion(rejected, this.response, this.handler, null);
+
+        assertThat(this.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void preHandle_disabled_admittedWithoutLimits() {
+        this.dgcProperties.getRateLimit().setEnabled(false);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(this.interceptor.preHandle(buildRequest("subject", "1.2.3.4"), this.response, this.handler))
+                    .isTrue();
+        }
+        assertThat(this.inFlight()).isZero();
+    }
+
+    // Handler of the requests
+    String status() {
+        return "status";
+    }
+
+    private void admit(final MockHttpServletRequest request) {
+        assertThat(this.interceptor.preHandle(request, this.response, this.handler)).isTrue();
+    }
+
+    private double inFlight() {
+        return this.meterRegistry.get("dgca.requests.inflight").gauge().value();
+    }
+
+    private double rejected(final String reason) {
+        return this.meterRegistry.get("dgca.requests.rejected").tag("endpoint", "status").tag("reason", reason)
+                .counter().count();
+    }
+
+    private static MockHttpServletRequest buildRequest(final String subject, final String client) {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET",
+                subject != null ? "/status/" + subject : "/status");
+        if (subject != null) {
+            request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("subject", subject));
+        }
+        request.addHeader("X-Forwarded-For", client);
+        return request;
+    }
+
+    private static BucketProperties buildLimit(final int capacity, final double refillPerSecond) {
+        final BucketProperties limit = new BucketProperties();
+        limit.setCapacity(capacity);
+        limit.setRefillPerSecond(refillPerSecond);
+        return limit;
+    }
+}
@@ -0,0 +1,144 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import eu.europa.ec.dgc.validation.decorator.service.RequestDeadline;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+class RequestDeadlineInterceptorTest {
+
+    private DgcProperties dgcProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private DeadlineController controller;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        this.dgcProperties = new DgcProperties();
+        this.dgcProperties.getDeadline().setDefaultBudget(Duration.ofSeconds(6));
+        this.dgcProperties.getDeadline().getBudgets().put("status", Duration.ofSeconds(3));
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.controller = new DeadlineController();
+        this.mockMvc = MockMvcBuilders.standaloneSetup(this.controller)
+                .addInterceptors(new RequestDeadlineInterceptor(this.dgcProperties, this.meterRegistry))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    void preHandle_endpointWithBudget_budgetOfEndpoint() throws Exception {
+        this.mockMvc.perform(get("/status/subject")).andExpect(status().isOk());
+
+        assertThat(this.controller.deadline.get().getEndpoint()).isEqualTo("status");
+        assertThat(this.controller.deadline.get().getBudget()).isEqualTo(Duration.ofSeconds(3));
+    }
+
+    @Test
+    void preHandle_endpointWithoutBudget_defaultBudget() throws Exception {
+        this.mockMvc.perform(get("/token/subject")).andExpect(status().isOk());
+
+        assertThat(this.controller.deadline.get().getEndpoint()).isEqualTo("token");
+        assertThat(this.controller.deadline.get().getBudget()).isEqualTo(Duration.ofSeconds(6));
+    }
+
+    @Test
+    void preHandle_disabled_noBudget() throws Exception {
+        this.dgcProperties.getDeadline().setEnabled(false);
+
+        this.mockMvc.perform(get("/status/subject")).andExpect(status().isOk());
+
+        assertThat(this.controller.deadline.get()).isNull();
+    }
+
+    @Test
+    void afterCompletion_requestFinished_budgetClearedAndRecorded() throws Exception {
+        this.mockMvc.perform(get("/status/subject")).andExpect(status().isOk());
+
+        assertThat(RequestDeadline.current()).isNull();
+        assertThat(this.meterRegistry.get("dgca.deadline.request").tag("endpoint", "status")
+                .tag("exceeded", "false").timer().count()).isEqualTo(1);
+        assertThat(this.meterRegistry.get("dgca.deadline.consumed").tag("endpoint", "status")
+                .summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    void downstreamCall_budgetExhausted_gatewayTimeout() throws Exception {
+        this.dgcProperties.getDeadline().getBudgets().put("status", Duration.ofMillis(1));
+
+        this.mockMvc.perform(get("/status/exhausted")).andExpect(status().isGatewayTimeout());
+
+        assertThat(RequestDeadline.current()).isNull();
+        assertThat(this.meterRegistry.get("dgca.deadline.request").tag("endpoint", "status")
+                .tag("exceeded", "true").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void getEndpoint_contextPath_firstSegmentAfterContextPath() {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/decorator/status/subject");
+        request.setContextPath("/decorator");
+
+        assertThat(RequestDeadlineInterceptor.getEndpoint(request)).isEqualTo("status");
+    }
+
+    @RestController
+    static class DeadlineController {
+
+        private final AtomicReference<RequestDeadline> deadline = new AtomicReference<>();
+
+        @GetMapping({"/status/subject", "/token/subject"})
+        public String subject() {
+            this.deadline.set(RequestDeadline.current());
+            return "ok";
+        }
+
+        @GetMapping("/status/exhausted")
+        public String exhausted() throws Exception {
+            Thread.sleep(20);
+            // Fails before connecting, the budget is gone
+            new DeadlineClientHttpRequestFactory(5000, 5000).createRequest(URI.create("http://localhost:1/"),
+                    HttpMethod.GET);
+            return "ok";
+        }
+    }
+}
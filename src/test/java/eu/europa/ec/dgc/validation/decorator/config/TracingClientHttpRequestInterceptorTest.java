@@ -0,0 +1,140 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+class TracingClientHttpRequestInterceptorTest {
+
+    private static final String SUBJECT = "6ab1fb0a-2a4b-4c31-8d8e-8b6c2b7c4f21";
+
+    private InMemorySpanExporter spanExporter;
+
+    private Tracer tracer;
+
+    private TracingClientHttpRequestInterceptor interceptor;
+
+    private final AtomicReference<String> traceparent = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        this.spanExporter = InMemorySpanExporter.create();
+        final OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+                .setTracerProvider(SdkTracerProvider.builder()
+                        .addSpanProcessor(SimpleSpanProcessor.create(this.spanExporter))
+                        .build())
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+        this.tracer = openTelemetry.getTracer("test");
+        this.interceptor = new TracingClientHttpRequestInterceptor(openTelemetry, this.tracer);
+    }
+
+    @Test
+    void intercept_insideRequestSpan_traceparentOfClientSpanSent() throws IOException {
+        final Span parent = this.tracer.spanBuilder("GET /status").startSpan();
+        try (Scope scope = parent.makeCurrent()) {
+            this.interceptor.intercept(buildRequest(), new byte[0], this.respond(HttpStatus.OK));
+        } finally {
+            parent.end();
+        }
+
+        final SpanData span = this.clientSpan();
+        assertThat(span.getTraceId()).isEqualTo(parent.getSpanContext().getTraceId());
+        assertThat(span.getParentSpanId()).isEqualTo(parent.getSpanContext().getSpanId());
+        assertThat(this.traceparent.get()).isEqualTo("00-" + span.getTraceId() + "-" + span.getSpanId() + "-01");
+    }
+
+    @Test
+    void intercept_downstreamRequest_hostRecordedWithoutPath() throws IOException {
+        this.interceptor.intercept(buildRequest(), new byte[0], this.respond(HttpStatus.OK));
+
+        final SpanData span = this.clientSpan();
+        assertThat(span.getName()).isEqualTo("GET");
+        assertThat(span.getAttributes().get(AttributeKey.stringKey("net.peer.name"))).isEqualTo("booking");
+        assertThat(span.getAttributes().get(AttributeKey.longKey("net.peer.port"))).isEqualTo(8080L);
+        assertThat(span.getAttributes().get(AttributeKey.longKey("http.status_code"))).isEqualTo(200L);
+        assertThat(span.getAttributes().asMap().values()).noneMatch(value -> value.toString().contains(SUBJECT));
+        assertThat(span.getStatus().getStatusCode()).isEqualTo(StatusCode.UNSET);
+    }
+
+    @Test
+    void intercept_serverError_errorSpan() throws IOException {
+        this.interceptor.intercept(buildRequest(), new byte[0], this.respond(HttpStatus.SERVICE_UNAVAILABLE));
+
+        assertThat(this.clientSpan().getStatus().getStatusCode()).isEqualTo(StatusCode.ERROR);
+    }
+
+    @Test
+    void intercept_downstreamFails_errorSpanAndRethrown() {
+        assertThatThrownBy(() -> this.interceptor.intercept(buildRequest(), new byte[0],
+                (request, body) -> {
+                    throw new IOException("connection refused");
+                }))
+                .isInstanceOf(IOException.class);
+
+        final SpanData span = this.clientSpan();
+        assertThat(span.getStatus().getStatusCode()).isEqualTo(StatusCode.ERROR);
+        assertThat(span.getEvents()).anyMatch(event -> "exception".equals(event.getName()));
+    }
+
+    private SpanData clientSpan() {
+        return this.spanExporter.getFinishedSpanItems().stream()
+                .filter(span -> span.getKind() == SpanKind.CLIENT)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private ClientHttpRequestExecution respond(final HttpStatus status) {
+        return (request, body) -> {
+            this.traceparent.set(request.getHeaders().getFirst("traceparent"));
+            return new MockClientHttpResponse(new byte[0], status);
+        };
+    }
+
+    private static MockClientHttpRequest buildRequest() {
+        return new MockClientHttpRequest(HttpMethod.GET, URI.create("http://booking:8080/tokencontent/" + SUBJECT));
+    }
+}
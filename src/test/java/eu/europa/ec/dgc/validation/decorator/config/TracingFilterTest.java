@@ -0,0 +1,166 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectTracing;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.ServletException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+class TracingFilterTest {
+
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+    private static final String PARENT_SPAN_ID = "00f067aa0ba902b7";
+
+    private InMemorySpanExporter spanExporter;
+
+    private TracedController controller;
+
+    private MockMvc mockMvc;
+
+    private String subject;
+
+    @BeforeEach
+    void setUp() {
+        this.spanExporter = InMemorySpanExporter.create();
+        final OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+                .setTracerProvider(SdkTracerProvider.builder()
+                        .addSpanProcessor(SimpleSpanProcessor.create(this.spanExporter))
+                        .build())
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+        this.controller = new TracedController();
+        this.mockMvc = MockMvcBuilders.standaloneSetup(this.controller)
+                .addFilters(new TracingFilter(openTelemetry, openTelemetry.getTracer("test"), "/management"))
+                .build();
+        this.subject = UUID.randomUUID().toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SubjectTracing.clear();
+    }
+
+    @Test
+    void doFilter_matchedRoute_serverSpanNamedByRoute() throws Exception {
+        this.mockMvc.perform(get("/status/" + this.subject)).andExpect(status().isOk());
+
+        final SpanData span = this.serverSpan();
+        assertThat(span.getName()).isEqualTo("GET /status/{subject}");
+        assertThat(span.getAttributes().get(AttributeKey.stringKey("http.route"))).isEqualTo("/status/{subject}");
+        assertThat(span.getAttributes().get(AttributeKey.longKey("http.status_code"))).isEqualTo(200L);
+        assertThat(span.getAttributes().get(AttributeKey.stringKey(SubjectTracing.ATTRIBUTE)))
+                .isEqualTo(SubjectTracing.hash(this.subject));
+        assertThat(span.getAttributes().asMap().values()).noneMatch(value -> value.toString().contains(this.subject));
+    }
+
+    @Test
+    void doFilter_traceparent_continuesTraceOfCaller() throws Exception {
+        this.mockMvc.perform(get("/status/" + this.subject)
+                .header("traceparent", "00-" + TRACE_ID + "-" + PARENT_SPAN_ID + "-01"))
+                .andExpect(status().isOk());
+
+        final SpanData span = this.serverSpan();
+        assertThat(span.getTraceId()).isEqualTo(TRACE_ID);
+        assertThat(span.getParentSpanId()).isEqualTo(PARENT_SPAN_ID);
+    }
+
+    @Test
+    void doFilter_managementPath_notTraced() throws Exception {
+        this.mockMvc.perform(get("/management/health"));
+
+        assertThat(this.spanExporter.getFinishedSpanItems()).isEmpty();
+    }
+
+    @Test
+    void doFilter_afterRequest_subjectTracingCleared() throws Exception {
+        this.mockMvc.perform(get("/status/" + this.subject)).andExpect(status().isOk());
+
+        assertThat(this.controller.hash.get()).isEqualTo(SubjectTracing.hash(this.subject));
+        assertThat(SubjectTracing.currentHash()).isNull();
+        assertThat(SubjectTracing.currentService()).isNull();
+    }
+
+    @Test
+    void doFilter_handlerFails_errorSpanAndSubjectTracingCleared() {
+        assertThatThrownBy(() -> this.mockMvc.perform(get("/fail/" + this.subject)))
+                .isInstanceOf(ServletException.class);
+
+        final SpanData span = this.serverSpan();
+        assertThat(span.getName()).isEqualTo("GET /fail/{subject}");
+        assertThat(span.getStatus().getStatusCode()).isEqualTo(StatusCode.ERROR);
+        assertThat(span.getEvents()).anyMatch(event -> "exception".equals(event.getName()));
+        assertThat(SubjectTracing.currentHash()).isNull();
+        assertThat(SubjectTracing.currentService()).isNull();
+    }
+
+    private SpanData serverSpan() {
+        assertThat(this.spanExporter.getFinishedSpanItems()).hasSize(1);
+        final SpanData span = this.spanExporter.getFinishedSpanItems().get(0);
+        assertThat(span.getKind()).isEqualTo(SpanKind.SERVER);
+        return span;
+    }
+
+    @RestController
+    static class TracedController {
+
+        private final AtomicReference<String> hash = new AtomicReference<>();
+
+        @GetMapping("/status/{subject}")
+        public String status(@PathVariable final String subject) {
+            SubjectTracing.tag(subject);
+            SubjectTracing.tagService("service");
+            this.hash.set(SubjectTracing.currentHash());
+            return "ok";
+        }
+
+        @GetMapping("/fail/{subject}")
+        public String fail(@PathVariable final String subject) {
+            SubjectTracing.tag(subject);
+            SubjectTracing.tagService("service");
+            throw new IllegalStateException("failed");
+        }
+    }
+}
@@ -24,13 +24,23 @@ import static org.assertj.core.api.Assertions.assertThat;
 import eu.europa.ec.dgc.validation.decorator.config.IdentityProperties;
 import eu.europa.ec.dgc.validation.decorator.dto.QrCodeDto;
 import eu.europa.ec.dgc.validation.decorator.service.AccessTokenService;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectTracing;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -51,6 +61,9 @@ class InitializeControllerTest {
     @Autowired
     private AccessTokenService accessTokenService;
 
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
     @Test
     void initialize_withRandomSubject_successQrCode() {
         // GIVEN
@@ -82,4 +95,51 @@ class InitializeControllerTest {
         assertThat(qrCode.getToken()).isNotBlank();
         assertThat(this.accessTokenService.isValid(qrCode.getToken())).isTrue();
     }
+
+    @Test
+    void initialize_withTraceparent_continuesTraceWithoutSubject() throws InterruptedException {
+        // GIVEN
+        final String subject = UUID.randomUUID().toString();
+        final String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+        final String url = UriComponentsBuilder.fromUriString("http://localhost")
+                .port(this.port)
+                .path(InitializeController.PATH.replace("{subject}", subject))
+                .toUriString();
+        final HttpHeaders headers = new HttpHeaders();
+        headers.add("traceparent", "00-" + traceId + "-00f067aa0ba902b7-01");
+        // WHEN
+        final ResponseEntity<QrCodeDto> result = this.restTpl.exchange(
+                url, HttpMethod.GET, new HttpEntity<>(headers), QrCodeDto.class);
+        // THEN
+        assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+        // AND server span, ended after the response was written
+        SpanData span = null;
+        for (int i = 0; i < 50 && span == null; i++) {
+            span = this.spanExporter.getFinishedSpanItems().stream()
+                    .filter(data -> data.getKind() == SpanKind.SERVER && traceId.equals(data.getTraceId()))
+                    .findFirst()
+                    .orElse(null);
+            if (span == null) {
+                Thread.sleep(20);
+            }
+        }
+        assertThat(span).isNotNull();
+        assertThat(span.getParentSpanId()).isEqualTo("00f067aa0ba902b7");
+        assertThat(span.getName()).isEqualTo("GET " + InitializeController.PATH);
+        assertThat(span.getAttributes().get(AttributeKey.stringKey("http.route")))
+                .isEqualTo(InitializeController.PATH);
+        assertThat(span.getAttributes().get(AttributeKey.stringKey(SubjectTracing.ATTRIBUTE)))
+                .isEqualTo(SubjectTracing.hash(subject))
+                .isNotEqualTo(subject);
+    }
+
+    @TestConfiguration
+    static class TracingTestConfig {
+
+        @Bean
+        @Primary
+        InMemorySpanExporter inMemorySpanExporter() {
+            return InMemorySpanExporter.create();
+        }
+    }
 }
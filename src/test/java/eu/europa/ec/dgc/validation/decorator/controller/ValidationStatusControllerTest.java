@@ -22,6 +22,8 @@ package eu.europa.ec.dgc.validation.decorator.controller;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import eu.europa.ec.dgc.validation.decorator.dto.DccTokenRequest;
 import eu.europa.ec.dgc.validation.decorator.dto.IdentityResponse.ServiceIdentityResponse;
@@ -84,7 +86,8 @@ public class ValidationStatusControllerTest {
         when(this.backendRepositoryMock.tokenContent(any())).thenReturn(tokenContent);
         when(this.backendRepositoryMock.tokenContent(any(), any())).thenReturn(tokenContent);
 
-        when(this.validationServiceRepositoryMock.identity(any())).thenReturn(TestHelper.buildValidationServiceIdentity());
+        when(this.validationServiceRepositoryMock.identity(any(), any()))
+                .thenReturn(TestHelper.buildValidationServiceIdentity());
     }
 
     @Test
@@ -114,6 +117,31 @@ public class ValidationStatusControllerTest {
         // AND header 
         assertThat(result.getHeaders()).containsKeys("Cache-Control");
         assertThat(result.getHeaders().get("Cache-Control")).contains("no-cache");
+        assertThat(result.getHeaders()).containsKeys("Retry-After");
+    }
+
+    @Test
+    void status_pendingPolledAgain_answeredWithoutValidationService() {
+        // GIVEN
+        final String subject = UUID.randomUUID().toString();
+        final String token = this.accessTokenService.buildHeaderToken(subject);
+        final String url = UriComponentsBuilder.fromUriString("http://localhost")
+                .port(this.port)
+                .path(ValidationStatusController.PATH)
+                .toUriString();
+        final HttpHeaders headers = new HttpHeaders();
+        headers.add("Authorization", token);
+        final HttpEntity<DccTokenRequest> entity = new HttpEntity<>(headers);
+        when(this.validationServiceRepositoryMock.status(any(), any()))
+                .thenReturn(this.buildValidationServiceStatus(HttpStatus.NO_CONTENT.value()));
+        this.restTpl.exchange(url, HttpMethod.GET, entity, ResultToken.class);
+        // WHEN polled again inside the hinted interval
+        final ResponseEntity<ResultToken> result = this.restTpl.exchange(url, HttpMethod.GET, entity,
+                ResultToken.class);
+        // THEN
+        assertThat(result.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(result.getHeaders()).containsKeys("Retry-After");
+        verify(this.validationServiceRepositoryMock, times(1)).status(any(), any());
     }
 
     @Test
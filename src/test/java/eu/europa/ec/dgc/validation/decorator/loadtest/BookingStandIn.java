@@ -0,0 +1,50 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.loadtest;
+
+import eu.europa.ec.dgc.validation.decorator.util.TestHelper;
+
+/**
+ * Stand-in of the booking backend with the token content and result endpoints of booking.urls.
+ */
+public class BookingStandIn extends StandInServer {
+
+    /**
+     * Creates the stand-in.
+     * 
+     * @param profile {@link StandInProfile}
+     * @param serviceId ID of the validation service reported as used by the subjects
+     */
+    public BookingStandIn(final StandInProfile profile, final String serviceId) {
+        super(profile);
+        this.route("GET", "/tokencontent/", true,
+                (subject, body) -> json(TestHelper.buildServiceTokenContent(subject, serviceId)));
+        this.route("PUT", "/result/", true, (subject, body) -> status(200));
+    }
+
+    public String tokenContentUrl() {
+        return this.baseUrl() + "/tokencontent/{subject}";
+    }
+
+    public String resultUrl() {
+        return this.baseUrl() + "/result/{subject}";
+    }
+}
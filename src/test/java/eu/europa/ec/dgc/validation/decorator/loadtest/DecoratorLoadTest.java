@@ -0,0 +1,208 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Load test of the decorator against local stand-ins of the booking backend and the validation service. Excluded
+ * from the default build, run with: mvn -Ploadtest test
+ * 
+ * <p>Parameters as system properties: loadtest.rate (flows per second), loadtest.duration (seconds),
+ * loadtest.concurrency, loadtest.resultDelay, loadtest.maxPollWait (milliseconds), loadtest.maxPolls,
+ * loadtest.rateLimit and the stand-in profiles loadtest.booking.* and loadtest.validation.* (median, p99, errorRate).
+ * The report is written to loadtest.reportFile.</p>
+ *
+ * <p>With loadtest.replayFile the downstream exchanges captured by dgc.capture are served instead, scaled by
+ * loadtest.replay.timeScale. The flows end with the result status then, as the captured results can not be signed
+ * for new subjects. Booking paths other than the defaults are given by loadtest.replay.tokenContentPath and
+ * loadtest.replay.resultPath.</p>
+ */
+@Slf4j
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class DecoratorLoadTest {
+
+    private static final String SERVICE_ID =
+            "http://localhost:8080/identity/service/ValidationService#ValidationService-1";
+
+    private static final String REQUEST_THREAD_PREFIX = "http-nio-";
+
+    private static final Map<String, StandInServer> STAND_INS = new LinkedHashMap<>();
+
+    // Signs the callback results, not available when replaying captures
+    private static ValidationServiceStandIn resultSigner;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void standIns(final DynamicPropertyRegistry registry) throws IOException, GeneralSecurityException {
+        final String replayFile = System.getProperty("loadtest.replayFile");
+        final StandInServer validationService;
+        if (replayFile != null) {
+            final ReplayStandIn replay = new ReplayStandIn(Path.of(replayFile),
+                    Double.parseDouble(System.getProperty("loadtest.replay.timeScale", "1.0")));
+            replay.start();
+            STAND_INS.put("replay", replay);
+            validationService = replay;
+            registry.add("booking.urls.tokenContent", () -> replay.baseUrl()
+                    + System.getProperty("loadtest.replay.tokenContentPath", "/tokencontent/{subject}"));
+            registry.add("booking.urls.result", () -> replay.baseUrl()
+                    + System.getProperty("loadtest.replay.resultPath", "/result/{subject}"));
+        } else {
+            final BookingStandIn booking = new BookingStandIn(
+                    StandInProfile.fromSystemProperties("loadtest.booking", new StandInProfile(20, 120, 0.01)),
+                    SERVICE_ID);
+            booking.start();
+            STAND_INS.put("booking", booking);
+            resultSigner = new ValidationServiceStandIn(
+                    StandInProfile.fromSystemProperties("loadtest.validation", new StandInProfile(30, 200, 0.01)),
+                    Long.getLong("loadtest.resultDelay", 2000));
+            resultSigner.start();
+            STAND_INS.put("validationService", resultSigner);
+            validationService = resultSigner;
+            registry.add("booking.urls.tokenContent", booking::tokenContentUrl);
+            registry.add("booking.urls.result", booking::resultUrl);
+        }
+
+        // A list is bound from one property source only, so the service is given completely
+        registry.add("dgc.services[0].id", () -> SERVICE_ID);
+        registry.add("dgc.services[0].type", () -> "ValidationService");
+        registry.add("dgc.services[0].serviceEndpoint", validationService::baseUrl);
+        registry.add("dgc.services[0].name", () -> "Validation Service Stand-in");
+        // All flows come from one client, which the client rate limits are not meant for
+        registry.add("dgc.rateLimit.enabled", () -> Boolean.getBoolean("loadtest.rateLimit"));
+    }
+
+    @AfterAll
+    static void stopStandIns() {
+        STAND_INS.values().forEach(StandInServer::stop);
+    }
+
+    @Test
+    void flows_atTargetRate_report() throws Exception {
+        final double rate = Double.parseDouble(System.getProperty("loadtest.rate", "20"));
+        final Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration", 30));
+        final LoadTestReport report = new LoadTestReport();
+        final FlowDriver driver = new FlowDriver(String.format("http://localhost:%d", this.port), resultSigner,
+                report, Integer.getInteger("loadtest.concurrency", 200), Long.getLong("loadtest.maxPollWait", 1000),
+                Integer.getInteger("loadtest.maxPolls", 30));
+
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        final long allocatedBefore = this.processAllocatedBytes();
+        final long requestThreadsAllocatedBefore = this.requestThreadsAllocatedBytes(threads);
+        final long start = System.nanoTime();
+
+        driver.run(rate, duration);
+
+        final double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        final long allocated = this.processAllocatedBytes() - allocatedBefore;
+        final long requestThreadsAllocated = this.requestThreadsAllocatedBytes(threads)
+                - requestThreadsAllocatedBefore;
+
+        final Map<String, Object> target = new LinkedHashMap<>();
+        target.put("flowsPerSecond", rate);
+        target.put("durationSeconds", duration.getSeconds());
+        report.put("target", target);
+
+        final Map<String, Object> allocation = new LinkedHashMap<>();
+        allocation.put("processBytesPerSecond", allocated / elapsedSeconds);
+        allocation.put("requestThreadBytesPerSecond", requestThreadsAllocated / elapsedSeconds);
+        allocation.put("requestThreadBytesPerFlow",
+                report.getCompletedFlows() == 0 ? 0 : requestThreadsAllocated / report.getCompletedFlows());
+        report.put("allocation", allocation);
+
+        final Map<String, Object> threadCounts = new LinkedHashMap<>();
+        threadCounts.put("live", threads.getThreadCount());
+        threadCounts.put("peak", threads.getPeakThreadCount());
+        threadCounts.put("requestThreads", this.requestThreads(threads).length);
+        report.put("threads", threadCounts);
+
+        final Map<String, Object> standIns = new LinkedHashMap<>();
+        STAND_INS.forEach((name, standIn) -> standIns.put(name, Map.of(
+                "requests", standIn.getRequests(),
+                "injectedErrors", standIn.getErrors())));
+        report.put("standIns", standIns);
+
+        final Map<String, Object> summary = report.summary(elapsedSeconds);
+        final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        final File reportFile = new File(System.getProperty("loadtest.reportFile", "target/loadtest-report.json"));
+        reportFile.getParentFile().mkdirs();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, summary);
+        log.info("Load test report written to {}:\n{}", reportFile.getAbsolutePath(),
+                mapper.writerWithDefaultPrettyPrinter().writeValueAsString(summary));
+
+        assertThat(report.getCompletedFlows()).isPositive();
+    }
+
+    private long processAllocatedBytes() {
+        // Counted by the GC metrics of the actuator, advances with every collection
+        final Counter counter = this.meterRegistry.find("jvm.gc.memory.allocated").counter();
+        return counter == null ? 0 : (long) counter.count();
+    }
+
+    private long requestThreadsAllocatedBytes(final com.sun.management.ThreadMXBean threads) {
+        final long[] ids = Arrays.stream(this.requestThreads(threads))
+                .mapToLong(ThreadInfo::getThreadId)
+                .toArray();
+        return Arrays.stream(threads.getThreadAllocatedBytes(ids))
+                .filter(bytes -> bytes > 0)
+                .sum();
+    }
+
+    private ThreadInfo[] requestThreads(final com.sun.management.ThreadMXBean threads) {
+        return Arrays.stream(threads.getThreadInfo(threads.getAllThreadIds()))
+                .filter(Objects::nonNull)
+                .filter(info -> info.getThreadName().startsWith(REQUEST_THREAD_PREFIX))
+                .toArray(ThreadInfo[]::new);
+    }
+}
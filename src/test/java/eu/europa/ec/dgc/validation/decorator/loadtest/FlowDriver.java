@@ -0,0 +1,243 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Drives wallet flows against the decorator at a fixed arrival rate: initialize, identity, token, status until the
+ * result is available and, if a validation service stand-in signs it, the callback. Flows are started open-loop, a
+ * flow that finds all workers busy is dropped and counted instead of delaying the following flows.
+ */
+@Slf4j
+public class FlowDriver {
+
+    private static final ObjectMapper MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final String TYPE_VALIDATION_SERVICE = "ValidationService";
+
+    private final String baseUrl;
+
+    private final ValidationServiceStandIn validationService;
+
+    private final LoadTestReport report;
+
+    private final int maxConcurrentFlows;
+
+    private final long maxPollWaitMillis;
+
+    private final int maxPolls;
+
+    private final HttpClient client;
+
+    private final String walletPublicKey;
+
+    /**
+     * Creates the driver.
+     * 
+     * @param baseUrl URL of the decorator
+     * @param validationService Stand-in signing the callback results, null to end the flows with the result status
+     * @param report {@link LoadTestReport}
+     * @param maxConcurrentFlows Number of flows running at the same time
+     * @param maxPollWaitMillis Upper bound of the wait between status polls, Retry-After is honoured below it
+     * @param maxPolls Number of status polls after which a flow fails
+     * @throws GeneralSecurityException if the wallet key can not be generated
+     */
+    public FlowDriver(final String baseUrl, final ValidationServiceStandIn validationService,
+            final LoadTestReport report, final int maxConcurrentFlows, final long maxPollWaitMillis,
+            final int maxPolls) throws GeneralSecurityException {
+        this.baseUrl = baseUrl;
+        this.validationService = validationService;
+        this.report = report;
+        this.maxConcurrentFlows = maxConcurrentFlows;
+        this.maxPollWaitMillis = maxPollWaitMillis;
+        this.maxPolls = maxPolls;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        this.walletPublicKey = Base64.getEncoder().encodeToString(generator.generateKeyPair().getPublic()
+                .getEncoded());
+    }
+
+    /**
+     * Starts flows at the given rate and waits for the running flows after the duration.
+     * 
+     * @param flowsPerSecond Arrival rate
+     * @param duration Duration in which flows are started
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run(final double flowsPerSecond, final Duration duration) throws InterruptedException {
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        final ExecutorService workers = Executors.newFixedThreadPool(this.maxConcurrentFlows);
+        final Semaphore permits = new Semaphore(this.maxConcurrentFlows);
+
+        scheduler.scheduleAtFixedRate(() -> {
+            if (!permits.tryAcquire()) {
+                this.report.flowDropped();
+                return;
+            }
+            workers.execute(() -> {
+                try {
+                    this.runFlow();
+                } finally {
+                    permits.release();
+                }
+            });
+        }, 0, Math.round(TimeUnit.SECONDS.toNanos(1) / flowsPerSecond), TimeUnit.NANOSECONDS);
+
+        Thread.sleep(duration.toMillis());
+        scheduler.shutdownNow();
+        workers.shutdown();
+        final long drainMillis = this.maxPolls * this.maxPollWaitMillis + 4 * REQUEST_TIMEOUT.toMillis();
+        if (!workers.awaitTermination(drainMillis, TimeUnit.MILLISECONDS)) {
+            log.warn("Flows still running after {} ms", drainMillis);
+            workers.shutdownNow();
+        }
+    }
+
+    private void runFlow() {
+        this.report.flowStarted();
+        final String subject = UUID.randomUUID().toString();
+        try {
+            final HttpResponse<String> initialize = this.send("initialize", this.request("/initialize/" + subject)
+                    .GET()
+                    .build(), 200);
+            final String qrToken = MAPPER.readTree(initialize.body()).get("token").asText();
+
+            final HttpResponse<String> identity = this.send("identity", this.request("/identity")
+                    .GET()
+                    .build(), 200);
+            final String serviceId = StreamSupport.stream(MAPPER.readTree(identity.body()).get("service")
+                    .spliterator(), false)
+                    .filter(service -> TYPE_VALIDATION_SERVICE.equals(service.path("type").asText()))
+                    .map(service -> service.get("id").asText())
+                    .findFirst()
+                    .orElseThrow(() -> new FlowException("Identity without validation service"));
+
+            final String tokenBody = MAPPER.writeValueAsString(Map.of(
+                    "service", serviceId,
+                    "pubKey", this.walletPublicKey));
+            final HttpResponse<String> token = this.send("token", this.request("/token")
+                    .header("Authorization", "Bearer " + qrToken)
+                    .header("Content-Type", "application/json")
+                    .POST(BodyPublishers.ofString(tokenBody))
+                    .build(), 200);
+            final String accessToken = token.body();
+
+            this.pollStatus(accessToken);
+
+            if (this.validationService == null) {
+                this.report.flowCompleted();
+                return;
+            }
+            this.send("callback", this.request("/callback/" + subject)
+                    .header("X-Version", "1.0")
+                    .header("Content-Type", "application/jwt")
+                    .PUT(BodyPublishers.ofString(this.validationService.signResult(subject)))
+                    .build(), 200);
+            this.report.flowCompleted();
+        } catch (FlowException | IOException e) {
+            log.debug("Flow of subject '{}' failed: {}", subject, e.getMessage());
+            this.report.flowFailed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.report.flowFailed();
+        }
+    }
+
+    private void pollStatus(final String accessToken) throws IOException, InterruptedException {
+        for (int poll = 0; poll < this.maxPolls; poll++) {
+            final HttpResponse<String> status = this.send("status", this.request("/status")
+                    .header("Authorization", "Bearer " + accessToken)
+                    .GET()
+                    .build(), 200, 204, 429);
+            if (status.statusCode() == 200) {
+                return;
+            }
+            final long retryAfterMillis = status.headers().firstValueAsLong("Retry-After")
+                    .stream()
+                    .map(TimeUnit.SECONDS::toMillis)
+                    .findFirst()
+                    .orElse(this.maxPollWaitMillis);
+            Thread.sleep(Math.min(retryAfterMillis, this.maxPollWaitMillis));
+        }
+        throw new FlowException(String.format("No result after %d status polls", this.maxPolls));
+    }
+
+    private HttpRequest.Builder request(final String path) {
+        return HttpRequest.newBuilder(URI.create(this.baseUrl + path))
+                .timeout(REQUEST_TIMEOUT);
+    }
+
+    private HttpResponse<String> send(final String step, final HttpRequest request, final int... expected)
+            throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        final HttpResponse<String> response;
+        try {
+            response = this.client.send(request, BodyHandlers.ofString());
+        } catch (IOException e) {
+            this.report.record(step, 0, System.nanoTime() - start);
+            throw e;
+        }
+        this.report.record(step, response.statusCode(), System.nanoTime() - start);
+        for (final int status : expected) {
+            if (response.statusCode() == status) {
+                return response;
+            }
+        }
+        throw new FlowException(String.format("Step '%s' answered %d", step, response.statusCode()));
+    }
+
+    private static final class FlowException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private FlowException(final String message) {
+            super(message);
+        }
+    }
+}
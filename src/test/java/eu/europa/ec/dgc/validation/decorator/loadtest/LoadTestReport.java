@@ -0,0 +1,150 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the latencies and status codes of the flow steps and the outcome of the flows of a load test run.
+ */
+public class LoadTestReport {
+
+    private final Map<String, Step> steps = new ConcurrentHashMap<>();
+
+    private final AtomicLong startedFlows = new AtomicLong();
+
+    private final AtomicLong completedFlows = new AtomicLong();
+
+    private final AtomicLong failedFlows = new AtomicLong();
+
+    private final AtomicLong droppedFlows = new AtomicLong();
+
+    private final Map<String, Object> environment = new LinkedHashMap<>();
+
+    /**
+     * Records one request of a flow step.
+     * 
+     * @param step Name of the step, e.g. status
+     * @param status HTTP status code, 0 if the request failed without response
+     * @param nanos Latency in nanoseconds
+     */
+    public void record(final String step, final int status, final long nanos) {
+        this.steps.computeIfAbsent(step, name -> new Step()).record(status, nanos);
+    }
+
+    public void flowStarted() {
+        this.startedFlows.incrementAndGet();
+    }
+
+    public void flowCompleted() {
+        this.completedFlows.incrementAndGet();
+    }
+
+    public void flowFailed() {
+        this.failedFlows.incrementAndGet();
+    }
+
+    public void flowDropped() {
+        this.droppedFlows.incrementAndGet();
+    }
+
+    public long getCompletedFlows() {
+        return this.completedFlows.get();
+    }
+
+    /**
+     * Adds a value measured outside of the flows, e.g. thread counts.
+     * 
+     * @param name Name
+     * @param value Value
+     */
+    public void put(final String name, final Object value) {
+        this.environment.put(name, value);
+    }
+
+    /**
+     * Summarizes the run.
+     * 
+     * @param elapsedSeconds Duration of the run
+     * @return Summary to be written as JSON
+     */
+    public Map<String, Object> summary(final double elapsedSeconds) {
+        final Map<String, Object> flows = new LinkedHashMap<>();
+        flows.put("started", this.startedFlows.get());
+        flows.put("completed", this.completedFlows.get());
+        flows.put("failed", this.failedFlows.get());
+        flows.put("dropped", this.droppedFlows.get());
+        flows.put("completedPerSecond", this.completedFlows.get() / elapsedSeconds);
+
+        final Map<String, Object> stepSummaries = new LinkedHashMap<>();
+        this.steps.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> stepSummaries.put(entry.getKey(), entry.getValue().summary(elapsedSeconds)));
+
+        final Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("elapsedSeconds", elapsedSeconds);
+        summary.put("flows", flows);
+        summary.put("steps", stepSummaries);
+        summary.putAll(this.environment);
+        return summary;
+    }
+
+    private static final class Step {
+
+        private final List<Long> latencies = new ArrayList<>();
+
+        private final Map<Integer, Long> statusCodes = new ConcurrentHashMap<>();
+
+        private synchronized void record(final int status, final long nanos) {
+            this.latencies.add(nanos);
+            this.statusCodes.merge(status, 1L, Long::sum);
+        }
+
+        private synchronized Map<String, Object> summary(final double elapsedSeconds) {
+            final long[] sorted = this.latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+
+            final Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", sorted.length);
+            summary.put("requestsPerSecond", sorted.length / elapsedSeconds);
+            summary.put("p50Millis", percentile(sorted, 0.50));
+            summary.put("p90Millis", percentile(sorted, 0.90));
+            summary.put("p99Millis", percentile(sorted, 0.99));
+            summary.put("maxMillis", sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1e6);
+            summary.put("statusCodes", new LinkedHashMap<>(this.statusCodes));
+            return summary;
+        }
+
+        private static double percentile(final long[] sorted, final double quantile) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            final int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
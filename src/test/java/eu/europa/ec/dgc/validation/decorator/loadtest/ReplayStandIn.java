@@ -0,0 +1,105 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import eu.europa.ec.dgc.validation.decorator.config.CaptureClientHttpRequestInterceptor;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stand-in serving the downstream exchanges captured by {@link CaptureClientHttpRequestInterceptor}. Requests are
+ * matched by method and route, the captured responses of a route are served in turn after their captured duration.
+ * The subject of the request takes the place of {subject} in the response body.
+ */
+@Slf4j
+public class ReplayStandIn extends StandInServer {
+
+    private static final String PLACEHOLDER = CaptureClientHttpRequestInterceptor.SUBJECT_PLACEHOLDER;
+
+    /**
+     * Creates the stand-in.
+     * 
+     * @param captureFile JSON lines written by the capture interceptor
+     * @param timeScale Factor applied to the captured durations, 0 serves without delay
+     * @throws IOException if the file can not be read
+     */
+    public ReplayStandIn(final Path captureFile, final double timeScale) throws IOException {
+        // Latency and errors come from the captures
+        super(new StandInProfile(0, 0, 0));
+
+        final Map<String, List<JsonNode>> exchanges = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(captureFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    final JsonNode exchange = MAPPER.readTree(line);
+                    exchanges.computeIfAbsent(exchange.path("method").asText() + " " + exchange.path("route").asText(),
+                            key -> new ArrayList<>()).add(exchange);
+                }
+            }
+        }
+
+        exchanges.forEach((key, captured) -> {
+            final String method = key.substring(0, key.indexOf(' '));
+            final String route = key.substring(key.indexOf(' ') + 1);
+            final int placeholder = route.indexOf(PLACEHOLDER);
+            final String prefix = placeholder < 0 ? route : route.substring(0, placeholder);
+            final String suffix = placeholder < 0 ? "" : route.substring(placeholder + PLACEHOLDER.length());
+            final AtomicInteger cursor = new AtomicInteger();
+            this.route(method, prefix, false, (rest, body) -> {
+                final String subject = rest.endsWith(suffix) ? rest.substring(0, rest.length() - suffix.length())
+                        : rest;
+                final JsonNode exchange = captured.get(Math.floorMod(cursor.getAndIncrement(), captured.size()));
+                return replay(exchange, subject, timeScale);
+            });
+            log.info("Replaying {} exchanges of {}", captured.size(), key);
+        });
+    }
+
+    private static Response replay(final JsonNode exchange, final String subject, final double timeScale) {
+        try {
+            Thread.sleep(Math.round(exchange.path("durationMillis").asDouble() * timeScale));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final int code = exchange.path("status").asInt();
+        if (code == 0) {
+            // Captured without response, e.g. a timeout
+            return status(503);
+        }
+        final JsonNode body = exchange.path("responseBody");
+        if (body.isMissingNode() || body.isNull()) {
+            return status(code);
+        }
+        return new Response(code, exchange.path("responseHeaders").path("Content-Type").asText("application/json"),
+                body.asText().replace(PLACEHOLDER, subject));
+    }
+}
@@ -0,0 +1,91 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.loadtest;
+
+import java.util.Random;
+import lombok.Getter;
+
+/**
+ * Latency distribution and error rate of a stand-in. Latencies are log-normal, given by median and 99th percentile.
+ */
+@Getter
+public class StandInProfile {
+
+    // Quantile of the standard normal distribution at 0.99
+    private static final double Z_99 = 2.326;
+
+    private final long medianMillis;
+
+    private final long p99Millis;
+
+    private final double errorRate;
+
+    /**
+     * Creates a profile.
+     * 
+     * @param medianMillis Median latency
+     * @param p99Millis 99th percentile of the latency, not below the median
+     * @param errorRate Share of requests answered with 503
+     */
+    public StandInProfile(final long medianMillis, final long p99Millis, final double errorRate) {
+        this.medianMillis = medianMillis;
+        this.p99Millis = Math.max(medianMillis, p99Millis);
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Reads a profile from the system properties [prefix].median, [prefix].p99 and [prefix].errorRate.
+     * 
+     * @param prefix Property prefix, e.g. loadtest.booking
+     * @param defaults Values of missing properties
+     * @return {@link StandInProfile}
+     */
+    public static StandInProfile fromSystemProperties(final String prefix, final StandInProfile defaults) {
+        return new StandInProfile(
+                Long.getLong(prefix + ".median", defaults.medianMillis),
+                Long.getLong(prefix + ".p99", defaults.p99Millis),
+                Double.parseDouble(System.getProperty(prefix + ".errorRate", String.valueOf(defaults.errorRate))));
+    }
+
+    /**
+     * Draws the latency of a request.
+     * 
+     * @param random {@link Random}
+     * @return Latency in milliseconds
+     */
+    public long sampleLatency(final Random random) {
+        if (this.medianMillis <= 0) {
+            return 0;
+        }
+        final double sigma = Math.log((double) this.p99Millis / this.medianMillis) / Z_99;
+        return Math.round(this.medianMillis * Math.exp(sigma * random.nextGaussian()));
+    }
+
+    public boolean sampleError(final Random random) {
+        return random.nextDouble() < this.errorRate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("median %d ms, p99 %d ms, error rate %.3f", this.medianMillis, this.p99Millis,
+                this.errorRate);
+    }
+}
@@ -0,0 +1,187 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Embedded HTTP server standing in for a downstream of the decorator. Requests are delayed and failed according to
+ * a {@link StandInProfile}.
+ */
+@Slf4j
+public abstract class StandInServer {
+
+    protected static final ObjectMapper MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+    private final List<Route> routes = new ArrayList<>();
+
+    private final StandInProfile profile;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    protected StandInServer(final StandInProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Handles the requests to a path below the prefix, the rest of the path is passed as subject.
+     * 
+     * @param method HTTP method
+     * @param prefix Path prefix, e.g. /status/
+     * @param faulty Whether errors of the profile are injected
+     * @param handler {@link Handler}
+     */
+    protected void route(final String method, final String prefix, final boolean faulty, final Handler handler) {
+        this.routes.add(new Route(method, prefix, faulty, handler));
+    }
+
+    /**
+     * Starts the server on a free local port.
+     * 
+     * @throws IOException if the server can not be started
+     */
+    public void start() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::dispatch);
+        this.server.start();
+        log.info("{} listening on {} ({})", this.getClass().getSimpleName(), this.baseUrl(), this.profile);
+    }
+
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    public String baseUrl() {
+        return String.format("http://localhost:%d", this.server.getAddress().getPort());
+    }
+
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    public long getErrors() {
+        return this.errors.get();
+    }
+
+    private void dispatch(final HttpExchange exchange) throws IOException {
+        try {
+            this.requests.incrementAndGet();
+            final String path = exchange.getRequestURI().getPath();
+            final Route route = this.routes.stream()
+                    .filter(candidate -> candidate.method.equals(exchange.getRequestMethod()))
+                    .filter(candidate -> path.startsWith(candidate.prefix))
+                    .findFirst()
+                    .orElse(null);
+            if (route == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            final Random random = ThreadLocalRandom.current();
+            Thread.sleep(this.profile.sampleLatency(random));
+            if (route.faulty && this.profile.sampleError(random)) {
+                this.errors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            final byte[] body = exchange.getRequestBody().readAllBytes();
+            final Response response = route.handler.handle(path.substring(route.prefix.length()),
+                    new String(body, StandardCharsets.UTF_8));
+            if (response.body == null) {
+                exchange.sendResponseHeaders(response.status, -1);
+                return;
+            }
+            final byte[] content = response.body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", response.contentType);
+            exchange.sendResponseHeaders(response.status, content.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(content);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    protected static Response json(final Object body) throws IOException {
+        return new Response(200, "application/json", MAPPER.writeValueAsString(body));
+    }
+
+    protected static Response status(final int status) {
+        return new Response(status, null, null);
+    }
+
+    @FunctionalInterface
+    protected interface Handler {
+
+        Response handle(String subject, String body) throws IOException;
+    }
+
+    @AllArgsConstructor
+    protected static final class Response {
+
+        private final int status;
+
+        private final String contentType;
+
+        private final String body;
+    }
+
+    @AllArgsConstructor
+    private static final class Route {
+
+        private final String method;
+
+        private final String prefix;
+
+        private final boolean faulty;
+
+        private final Handler handler;
+    }
+}
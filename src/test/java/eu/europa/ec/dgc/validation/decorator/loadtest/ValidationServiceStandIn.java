@@ -0,0 +1,107 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.loadtest;
+
+import eu.europa.ec.dgc.validation.decorator.util.TestHelper;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stand-in of a validation service with the identity, initialize and status endpoints. The status endpoint answers
+ * 204 until the result delay of a subject has passed, then 200 with a result JWT signed with the key of
+ * {@link TestHelper#buildValidationServiceIdentity()}.
+ */
+public class ValidationServiceStandIn extends StandInServer {
+
+    private final Map<String, Long> resultTimes = new ConcurrentHashMap<>();
+
+    private final long resultDelayMillis;
+
+    private final PrivateKey signKey;
+
+    /**
+     * Creates the stand-in.
+     * 
+     * @param profile {@link StandInProfile}
+     * @param resultDelayMillis Time between initialize and the availability of the result
+     * @throws GeneralSecurityException if the sign key can not be loaded
+     */
+    public ValidationServiceStandIn(final StandInProfile profile, final long resultDelayMillis)
+            throws GeneralSecurityException {
+        super(profile);
+        this.resultDelayMillis = resultDelayMillis;
+        this.signKey = KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(
+                Base64.getDecoder().decode(TestHelper.VALIDATION_SERVICE_PRIVATE_KEY)));
+
+        // The decorator needs the identity to verify results, errors are injected on the flow endpoints only
+        this.route("GET", "/identity", false, (subject, body) -> json(TestHelper.buildValidationServiceIdentity()));
+        this.route("PUT", "/initialize/", true, (subject, body) -> {
+            this.resultTimes.put(subject, System.currentTimeMillis() + this.resultDelayMillis);
+            return json(Map.of(
+                    "subject", subject,
+                    "exp", Instant.now().plusSeconds(3600).getEpochSecond(),
+                    "aud", this.baseUrl() + "/validate/" + subject));
+        });
+        this.route("GET", "/status/", true, (subject, body) -> {
+            final Long resultTime = this.resultTimes.get(subject);
+            if (resultTime == null) {
+                return status(410);
+            }
+            if (System.currentTimeMillis() < resultTime) {
+                return status(204);
+            }
+            return new Response(200, "application/jwt", this.signResult(subject));
+        });
+    }
+
+    /**
+     * Builds the result JWT of a subject as sent by the status and callback endpoints.
+     * 
+     * @param subject Subject
+     * @return Signed JWT
+     */
+    public String signResult(final String subject) {
+        return Jwts.builder()
+                .setHeaderParam("kid", TestHelper.VALIDATION_SERVICE_KID)
+                .setSubject(subject)
+                .setIssuer(this.baseUrl())
+                .setIssuedAt(new Date())
+                .claim("result", "OK")
+                .claim("confirmation", "LoadTestConfirmation")
+                .claim("results", List.of(Map.of(
+                        "identifier", "LoadTestRule",
+                        "result", "OK",
+                        "type", "TechnicalVerification",
+                        "details", "Stand-in result")))
+                .signWith(SignatureAlgorithm.ES256, this.signKey)
+                .compact();
+    }
+}
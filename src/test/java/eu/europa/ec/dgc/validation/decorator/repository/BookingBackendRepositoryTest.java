@@ -0,0 +1,268 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.ServiceProperties;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultRequest;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultRequest.SubjectResultRequest;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultResponse;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceResultRequest;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse;
+import eu.europa.ec.dgc.validation.decorator.service.AccessTokenService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+class BookingBackendRepositoryTest {
+
+    private static final String TOKEN_CONTENT_URL = "http://booking/tokencontent/{subject}";
+
+    private RestTemplate restTpl;
+
+    private DgcProperties dgcProperties;
+
+    private BookingBackendRepository repository;
+
+    private int loads;
+
+    @BeforeEach
+    void setUp() {
+        this.restTpl = mock(RestTemplate.class);
+        this.dgcProperties = new DgcProperties();
+        final ServiceProperties service = new ServiceProperties();
+        service.setId("service");
+        this.dgcProperties.getServices().add(service);
+
+        final DownstreamGuard downstreamGuard = mock(DownstreamGuard.class);
+        when(downstreamGuard.call(anyString(), anyString(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(2).get());
+        final DownstreamRetry downstreamRetry = mock(DownstreamRetry.class);
+        when(downstreamRetry.call(anyString(), anyBoolean(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(2).get());
+
+        this.repository = new BookingBackendRepository(this.restTpl, mock(AccessTokenService.class),
+                this.dgcProperties, new SimpleMeterRegistry(), downstreamGuard, downstreamRetry);
+        ReflectionTestUtils.setField(this.repository, "tokenContentUrl", TOKEN_CONTENT_URL);
+        ReflectionTestUtils.setField(this.repository, "resultUrl", "http://booking/result/{subject}");
+        ReflectionTestUtils.setField(this.repository, "resultsUrl", "http://booking/results");
+        ReflectionTestUtils.setField(this.repository, "batchEnabled", true);
+        ReflectionTestUtils.setField(this.repository, "tokenContentTtl", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(this.repository, "tokenContentMaxSize", 100L);
+
+        this.loads = 0;
+        when(this.restTpl.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class),
+                eq(ServiceTokenContentResponse.class)))
+                .thenAnswer(invocation -> ResponseEntity.ok(buildContent("reference-" + ++this.loads)));
+    }
+
+    @Test
+    void tokenContent_cached_bookingCalledOnce() {
+        this.repository.createTokenContentCache();
+
+        final ServiceTokenContentResponse first = this.repository.tokenContent("subject");
+        final ServiceTokenContentResponse second = this.repository.tokenContent("subject");
+
+        assertThat(second).isSameAs(first);
+        assertThat(this.loads).isEqualTo(1);
+    }
+
+    @Test
+    void tokenContent_otherSubject_bookingCalledAgain() {
+        this.repository.createTokenContentCache();
+
+        this.repository.tokenContent("subject");
+        this.repository.tokenContent("other");
+
+        assertThat(this.loads).isEqualTo(2);
+    }
+
+    @Test
+    void tokenContent_ttlElapsed_bookingCalledAgain() throws InterruptedException {
+        ReflectionTestUtils.setField(this.repository, "tokenContentTtl", Duration.ofMillis(50));
+        this.repository.createTokenContentCache();
+
+        this.repository.tokenContent("subject");
+        Thread.sleep(200);
+        final ServiceTokenContentResponse content = this.repository.tokenContent("subject");
+
+        assertThat(content.getReference()).isEqualTo("reference-2");
+    }
+
+    @Test
+    void tokenContent_ttlZero_notCached() {
+        ReflectionTestUtils.setField(this.repository, "tokenContentTtl", Duration.ZERO);
+        this.repository.createTokenContentCache();
+
+        this.repository.tokenContent("subject");
+        this.repository.tokenContent("subject");
+
+        assertThat(this.loads).isEqualTo(2);
+    }
+
+    @Test
+    void tokenContent_withService_contentWithoutServiceInvalidated() {
+        this.repository.createTokenContentCache();
+
+        this.repository.tokenContent("subject");
+        this.repository.tokenContent("subject", this.dgcProperties.getServices().get(0));
+        this.repository.tokenContent("subject");
+
+        assertThat(this.loads).isEqualTo(3);
+    }
+
+    @Test
+    void result_cachedContent_invalidated() {
+        this.repository.createTokenContentCache();
+        this.repository.tokenContent("subject");
+        this.repository.tokenContent("subject", this.dgcProperties.getServices().get(0));
+
+        this.repository.result("subject", new ServiceResultRequest());
+
+        assertThat(this.repository.tokenContent("subject").getReference()).isEqualTo("reference-3");
+        assertThat(this.repository.tokenContent("subject", this.dgcProperties.getServices().get(0))
+                .getReference()).isEqualTo("reference-4");
+    }
+
+    @Test
+    void results_cachedContent_invalidated() {
+        this.repository.createTokenContentCache();
+        this.repository.tokenContent("subject");
+        this.repository.tokenContent("other");
+        when(this.restTpl.exchange(anyString(), eq(HttpMethod.PUT), any(HttpEntity.class),
+                eq(ServiceBatchResultResponse.class)))
+                .thenReturn(ResponseEntity.ok(new ServiceBatchResultResponse()));
+        final SubjectResultRequest item = new SubjectResultRequest();
+        item.setSubject("subject");
+        item.setResult(new ServiceResultRequest());
+        final ServiceBatchResultRequest request = new ServiceBatchResultRequest();
+        request.getResults().add(item);
+
+        this.repository.results(request);
+
+        assertThat(this.repository.tokenContent("subject").getReference()).isEqualTo("reference-3");
+        assertThat(this.repository.tokenContent("other").getReference()).isEqualTo("reference-2");
+    }
+
+    @Test
+    void tokenContent_resultDuringLoad_loadedContentNotCached() {
+        this.repository.createTokenContentCache();
+        when(this.restTpl.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class),
+                eq(ServiceTokenContentResponse.class)))
+                .thenAnswer(invocation -> {
+                    if (++this.loads == 1) {
+                        this.repository.result("subject", new ServiceResultRequest());
+                    }
+                    return ResponseEntity.ok(buildContent("reference-" + this.loads));
+                });
+
+        this.repository.tokenContent("subject");
+        final ServiceTokenContentResponse content = this.repository.tokenContent("subject");
+
+        assertThat(content.getReference()).isEqualTo("reference-2");
+        verify(this.restTpl, times(2)).exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class),
+                eq(ServiceTokenContentResponse.class));
+    }
+
+    @Test
+    void tokenContent_resultOfOtherSubjectDuringLoad_loadedContentCached() {
+        this.repository.createTokenContentCache();
+        when(this.restTpl.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class),
+                eq(ServiceTokenContentResponse.class)))
+                .thenAnswer(invocation -> {
+                    this.repository.result("other", new ServiceResultRequest());
+                    return ResponseEntity.ok(buildContent("reference-" + ++this.loads));
+                });
+
+        this.repository.tokenContent("subject");
+        final ServiceTokenContentResponse content = this.repository.tokenContent("subject");
+
+        assertThat(content.getReference()).isEqualTo("reference-1");
+        assertThat(this.loads).isEqualTo(1);
+    }
+
+    @Test
+    void tokenContent_concurrentMisses_bookingCalledOnce() throws Exception {
+        this.repository.createTokenContentCache();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(this.restTpl.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class),
+                eq(ServiceTokenContentResponse.class)))
+                .thenAnswer(invocation -> {
+                    loading.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return ResponseEntity.ok(buildContent("reference-" + ++this.loads));
+                });
+
+        final CompletableFuture<ServiceTokenContentResponse> first =
+                CompletableFuture.supplyAsync(() -> this.repository.tokenContent("subject"));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        final CompletableFuture<ServiceTokenContentResponse> second =
+                CompletableFuture.supplyAsync(() -> this.repository.tokenContent("subject"));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+        assertThat(this.loads).isEqualTo(1);
+    }
+
+    @Test
+    void tokenContent_loadFailed_notCached() {
+        this.repository.createTokenContentCache();
+        when(this.restTpl.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class),
+                eq(ServiceTokenContentResponse.class)))
+                .thenThrow(new ResourceAccessException("booking down"))
+                .thenAnswer(invocation -> ResponseEntity.ok(buildContent("reference-" + ++this.loads)));
+
+        assertThatThrownBy(() -> this.repository.tokenContent("subject"))
+                .isInstanceOf(ResourceAccessException.class);
+        final ServiceTokenContentResponse content = this.repository.tokenContent("subject");
+
+        assertThat(content.getReference()).isEqualTo("reference-1");
+    }
+
+    private static ServiceTokenContentResponse buildContent(final String reference) {
+        final ServiceTokenContentResponse content = new ServiceTokenContentResponse();
+        content.setReference(reference);
+        return content;
+    }
+}
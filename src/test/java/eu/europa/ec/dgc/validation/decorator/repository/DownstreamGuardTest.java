@@ -0,0 +1,276 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.DownstreamProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.ServiceProperties;
+import eu.europa.ec.dgc.validation.decorator.exception.DeadlineExceededException;
+import eu.europa.ec.dgc.validation.decorator.exception.DownstreamUnavailableException;
+import eu.europa.ec.dgc.validation.decorator.service.LoadShedder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+class DownstreamGuardTest {
+
+    private static final int WINDOW = 4;
+
+    private DgcProperties dgcProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private LoadShedder loadShedder;
+
+    private DownstreamGuard downstreamGuard;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        this.dgcProperties = new DgcProperties();
+        final ServiceProperties service = new ServiceProperties();
+        service.setId("service");
+        this.dgcProperties.getServices().add(service);
+        final DownstreamProperties properties = this.dgcProperties.getDownstream();
+        properties.setSlidingWindowSize(WINDOW);
+        properties.setMinimumNumberOfCalls(WINDOW);
+        properties.setFailureRateThreshold(50);
+        properties.setWaitDurationInOpenState(Duration.ofSeconds(1));
+        properties.setPermittedNumberOfCallsInHalfOpenState(1);
+        properties.setMaxConcurrentCalls(1);
+        this.downstreamGuard = this.createGuard();
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    void call_slowDownstreamOfRequest_onlyCallsToSlowDownstreamShed() {
+        this.dgcProperties.getRateLimit().getShedding().setMaxDownstreamLatency(Duration.ofMillis(1));
+        this.downstreamGuard = this.createGuard();
+        this.loadShedder.enter();
+        try {
+            this.loadShedder.recordDownstreamLatency(DownstreamGuard.BOOKING, 10000);
+
+            assertThatThrownBy(() -> this.downstreamGuard.call(DownstreamGuard.BOOKING, "tokenContent",
+                    () -> ResponseEntity.ok("content")))
+                    .isInstanceOfSatisfying(DownstreamUnavailableException.class,
+                            e -> assertThat(e.getRetryAfter()).isEqualTo(1L));
+            assertThat(this.downstreamGuard.call("service", "status", () -> ResponseEntity.ok("status")).getBody())
+                    .isEqualTo("status");
+        } finally {
+            this.loadShedder.exit();
+        }
+        assertThat(this.meterRegistry.get("dgca.downstream.requests").tag("service", DownstreamGuard.BOOKING)
+                .tag("outcome", "rejected").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void call_slowDownstreamOutsideOfRequest_notShedAndNotRecorded() {
+        this.dgcProperties.getRateLimit().getShedding().setMaxDownstreamLatency(Duration.ofMillis(1));
+        this.downstreamGuard = this.createGuard();
+
+        this.downstreamGuard.call(DownstreamGuard.BOOKING, "result", () -> sleep(20));
+        this.downstreamGuard.call(DownstreamGuard.BOOKING, "result", () -> sleep(20));
+
+        assertThat(this.meterRegistry.find("dgca.downstream.latency.smoothed").gauge()).isNull();
+    }
+
+    @Test
+    void call_success_responseReturnedAndRecorded() {
+        final ResponseEntity<String> response = this.downstreamGuard.call(DownstreamGuard.BOOKING, "tokenContent",
+                () -> ResponseEntity.ok("content"));
+
+        assertThat(response.getBody()).isEqualTo("content");
+        assertThat(this.meterRegistry.get("dgca.downstream.requests").tag("service", DownstreamGuard.BOOKING)
+                .tag("status", "200").tag("outcome", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void call_failures_circuitOpensAndRejectsWithRetryAfter() {
+        this.fail(DownstreamGuard.BOOKING, WINDOW);
+
+        assertThatThrownBy(() -> this.downstreamGuard.call(DownstreamGuard.BOOKING, "tokenContent",
+                () -> ResponseEntity.ok("content")))
+                .isInstanceOfSatisfying(DownstreamUnavailableException.class, e -> {
+                    assertThat(e.getDownstream()).isEqualTo(DownstreamGuard.BOOKING);
+                    assertThat(e.getRetryAfter()).isEqualTo(1L);
+                });
+        assertThat(this.transitions(DownstreamGuard.BOOKING, "CLOSED", "OPEN")).isEqualTo(1);
+        assertThat(this.meterRegistry.get("dgca.downstream.requests").tag("service", DownstreamGuard.BOOKING)
+                .tag("outcome", "rejected").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void call_serverErrors_circuitOpens() {
+        for (int i = 0; i < WINDOW; i++) {
+            assertThatThrownBy(() -> this.downstreamGuard.call("service", "status", () -> {
+                throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+            })).isInstanceOf(HttpServerErrorException.class);
+        }
+
+        assertThat(this.transitions("service", "CLOSED", "OPEN")).isEqualTo(1);
+    }
+
+    @Test
+    void call_circuitOpenOfOtherDownstream_callPermitted() {
+        this.fail(DownstreamGuard.BOOKING, WINDOW);
+
+        final ResponseEntity<String> response = this.downstreamGuard.call("service", "status",
+                () -> ResponseEntity.ok("status"));
+
+        assertThat(response.getBody()).isEqualTo("status");
+    }
+
+    @Test
+    void call_waitDurationElapsedAndCallSucceeds_circuitCloses() throws InterruptedException {
+        this.dgcProperties.getDownstream().setWaitDurationInOpenState(Duration.ofMillis(100));
+        this.downstreamGuard = this.createGuard();
+        this.fail(DownstreamGuard.BOOKING, WINDOW);
+        Thread.sleep(200);
+
+        this.downstreamGuard.call(DownstreamGuard.BOOKING, "tokenContent", () -> ResponseEntity.ok("content"));
+
+        assertThat(this.transitions(DownstreamGuard.BOOKING, "OPEN", "HALF_OPEN")).isEqualTo(1);
+        assertThat(this.transitions(DownstreamGuard.BOOKING, "HALF_OPEN", "CLOSED")).isEqualTo(1);
+    }
+
+    @Test
+    void call_waitDurationElapsedAndCallFails_circuitOpensAgain() throws InterruptedException {
+        this.dgcProperties.getDownstream().setWaitDurationInOpenState(Duration.ofMillis(100));
+        this.downstreamGuard = this.createGuard();
+        this.fail(DownstreamGuard.BOOKING, WINDOW);
+        Thread.sleep(200);
+
+        this.fail(DownstreamGuard.BOOKING, 1);
+
+        assertThat(this.transitions(DownstreamGuard.BOOKING, "HALF_OPEN", "OPEN")).isEqualTo(1);
+    }
+
+    @Test
+    void call_clientErrors_ignoredByCircuit() {
+        for (int i = 0; i < WINDOW * 2; i++) {
+            assertThatThrownBy(() -> this.downstreamGuard.call(DownstreamGuard.BOOKING, "tokenContent", () -> {
+                throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+            })).isInstanceOf(HttpClientErrorException.class);
+        }
+
+        assertThat(this.downstreamGuard.call(DownstreamGuard.BOOKING, "tokenContent",
+                () -> ResponseEntity.ok("content")).getBody()).isEqualTo("content");
+        assertThat(this.meterRegistry.find("dgca.downstream.circuitbreaker.transitions").counter()).isNull();
+        assertThat(this.meterRegistry.get("dgca.downstream.requests").tag("status", "404")
+                .tag("outcome", "client_error").timer().count()).isEqualTo(WINDOW * 2);
+    }
+
+    @Test
+    void call_deadlineExceeded_ignoredByCircuit() {
+        for (int i = 0; i < WINDOW * 2; i++) {
+            assertThatThrownBy(() -> this.downstreamGuard.call(DownstreamGuard.BOOKING, "tokenContent", () -> {
+                throw new DeadlineExceededException("Budget exhausted");
+            })).isInstanceOf(DeadlineExceededException.class);
+        }
+
+        assertThat(this.meterRegistry.find("dgca.downstream.circuitbreaker.transitions").counter()).isNull();
+    }
+
+    @Test
+    void call_bulkheadFull_rejectedWithoutRetryAfterAndIgnoredByCircuit() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<ResponseEntity<String>> running = this.executor.submit(() ->
+                this.downstreamGuard.call(DownstreamGuard.BOOKING, "tokenContent", () -> {
+                    started.countDown();
+                    await(release);
+                    return ResponseEntity.ok("content");
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        for (int i = 0; i < WINDOW * 2; i++) {
+            assertThatThrownBy(() -> this.downstreamGuard.call(DownstreamGuard.BOOKING, "tokenContent",
+                    () -> ResponseEntity.ok("content")))
+                    .isInstanceOfSatisfying(DownstreamUnavailableException.class,
+                            e -> assertThat(e.getRetryAfter()).isNull());
+        }
+        release.countDown();
+
+        assertThat(running.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("content");
+        assertThat(this.meterRegistry.find("dgca.downstream.circuitbreaker.transitions").counter()).isNull();
+        assertThat(this.downstreamGuard.call(DownstreamGuard.BOOKING, "tokenContent",
+                () -> ResponseEntity.ok("content")).getBody()).isEqualTo("content");
+    }
+
+    private DownstreamGuard createGuard() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.loadShedder = new LoadShedder(this.dgcProperties, this.meterRegistry);
+        return new DownstreamGuard(this.dgcProperties, this.meterRegistry, this.loadShedder,
+                OpenTelemetry.noop().getTracer("test"));
+    }
+
+    private void fail(final String downstream, final int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertThatThrownBy(() -> this.downstreamGuard.call(downstream, "tokenContent", () -> {
+                throw new ResourceAccessException("Connection refused");
+            })).isInstanceOf(ResourceAccessException.class);
+        }
+    }
+
+    private double transitions(final String downstream, final String from, final String to) {
+        return this.meterRegistry.get("dgca.downstream.circuitbreaker.transitions")
+                .tag("name", downstream).tag("from", from).tag("to", to).counter().count();
+    }
+
+    private static String sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "response";
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.RetryProperties;
+import eu.europa.ec.dgc.validation.decorator.service.RequestDeadline;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+class DownstreamRetryTest {
+
+    private RetryProperties properties;
+
+    private MeterRegistry meterRegistry;
+
+    private DownstreamRetry downstreamRetry;
+
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        final DgcProperties dgcProperties = new DgcProperties();
+        this.properties = dgcProperties.getRetry();
+        this.properties.setMaxAttempts(3);
+        this.properties.setInitialBackoff(Duration.ofMillis(10));
+        this.properties.setMaxBackoff(Duration.ofMillis(20));
+        this.properties.setJitter(0);
+        this.properties.getSafeOperations().add("booking.result");
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.downstreamRetry = new DownstreamRetry(dgcProperties, this.meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    void call_idempotentAndTransientError_retriedUntilSuccess() {
+        final String response = this.downstreamRetry.call("booking.tokenContent", true,
+                this.failing(2, new ResourceAccessException("Connection refused")));
+
+        assertThat(response).isEqualTo("response");
+        assertThat(this.attempts.get()).isEqualTo(3);
+        assertThat(this.count("booking.tokenContent", "retry")).isEqualTo(2);
+        assertThat(this.count("booking.tokenContent", "success_after_retry")).isEqualTo(1);
+    }
+
+    @Test
+    void call_idempotentAndTransientErrors_maxAttempts() {
+        assertThatThrownBy(() -> this.downstreamRetry.call("booking.tokenContent", true,
+                this.failing(5, new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE))))
+                .isInstanceOf(HttpServerErrorException.class);
+
+        assertThat(this.attempts.get()).isEqualTo(3);
+        assertThat(this.count("booking.tokenContent", "exhausted")).isEqualTo(1);
+    }
+
+    @Test
+    void call_notIdempotent_notRetried() {
+        assertThatThrownBy(() -> this.downstreamRetry.call("validation.initialize", false,
+                this.failing(1, new ResourceAccessException("Connection refused"))))
+                .isInstanceOf(ResourceAccessException.class);
+
+        assertThat(this.attempts.get()).isEqualTo(1);
+        assertThat(this.meterRegistry.find("dgca.downstream.retry").counter()).isNull();
+    }
+
+    @Test
+    void call_notIdempotentButSafeOperation_retried() {
+        final String response = this.downstreamRetry.call("booking.result", false,
+                this.failing(1, new ResourceAccessException("Connection refused")));
+
+        assertThat(response).isEqualTo("response");
+        assertThat(this.attempts.get()).isEqualTo(2);
+    }
+
+    @Test
+    void call_transientStatus_retried() {
+        for (HttpStatus status : new HttpStatus[] {HttpStatus.BAD_GATEWAY, HttpStatus.SERVICE_UNAVAILABLE,
+            HttpStatus.GATEWAY_TIMEOUT}) {
+            this.attempts.set(0);
+
+            this.downstreamRetry.call("booking.tokenContent", true,
+                    this.failing(1, new HttpServerErrorException(status)));
+
+            assertThat(this.attempts.get()).as("attempts after %s", status).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void call_otherServerError_notRetried() {
+        assertThatThrownBy(() -> this.downstreamRetry.call("booking.tokenContent", true,
+                this.failing(1, new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR))))
+                .isInstanceOf(HttpServerErrorException.class);
+
+        assertThat(this.attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    void call_clientError_notRetried() {
+        assertThatThrownBy(() -> this.downstreamRetry.call("booking.tokenContent", true,
+                this.failing(1, new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS))))
+                .isInstanceOf(HttpClientErrorException.class);
+
+        assertThat(this.attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    void call_otherException_notRetried() {
+        assertThatThrownBy(() -> this.downstreamRetry.call("booking.tokenContent", true,
+                this.failing(1, new IllegalStateException("Broken response"))))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(this.attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    void call_budgetShorterThanBackoff_notRetried() {
+        this.properties.setInitialBackoff(Duration.ofSeconds(1));
+        this.properties.setMaxBackoff(Duration.ofSeconds(1));
+        RequestDeadline.start("status", Duration.ofMillis(500));
+        final long start = System.nanoTime();
+
+        assertThatThrownBy(() -> this.downstreamRetry.call("booking.tokenContent", true,
+                this.failing(1, new ResourceAccessException("Connection refused"))))
+                .isInstanceOf(ResourceAccessException.class);
+
+        assertThat(this.attempts.get()).isEqualTo(1);
+        assertThat(System.nanoTime() - start).isLessThan(Duration.ofMillis(500).toNanos());
+        assertThat(this.count("booking.tokenContent", "deadline")).isEqualTo(1);
+    }
+
+    @Test
+    void call_budgetLongerThanBackoff_retried() {
+        RequestDeadline.start("status", Duration.ofSeconds(5));
+
+        this.downstreamRetry.call("booking.tokenContent", true,
+                this.failing(1, new ResourceAccessException("Connection refused")));
+
+        assertThat(this.attempts.get()).isEqualTo(2);
+    }
+
+    @Test
+    void call_backoff_growsExponentiallyUpToMax() {
+        this.properties.setMaxAttempts(4);
+        this.properties.setInitialBackoff(Duration.ofMillis(40));
+        this.properties.setMaxBackoff(Duration.ofMillis(60));
+        final long start = System.nanoTime();
+
+        assertThatThrownBy(() -> this.downstreamRetry.call("booking.tokenContent", true,
+                this.failing(4, new ResourceAccessException("Connection refused"))))
+                .isInstanceOf(ResourceAccessException.class);
+
+        // 40 ms, then 80 ms capped to 60 ms twice
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(Duration.ofMillis(160).toNanos());
+    }
+
+    private Supplier<String> failing(final int failures, final RuntimeException exception) {
+        return () -> {
+            if (this.attempts.incrementAndGet() <= failures) {
+                throw exception;
+            }
+            return "response";
+        };
+    }
+
+    private double count(final String operation, final String outcome) {
+        return this.meterRegistry.get("dgca.downstream.retry").tag("operation", operation).tag("outcome", outcome)
+                .counter().count();
+    }
+}
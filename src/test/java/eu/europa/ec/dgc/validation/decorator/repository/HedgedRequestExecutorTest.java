@@ -0,0 +1,296 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.HedgingProperties;
+import eu.europa.ec.dgc.validation.decorator.exception.DeadlineExceededException;
+import eu.europa.ec.dgc.validation.decorator.service.RequestDeadline;
+import eu.europa.ec.dgc.validation.decorator.service.SubjectTracing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.Scope;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HedgedRequestExecutorTest {
+
+    private static final String DOWNSTREAM = "service";
+
+    private static final ContextKey<String> CONTEXT_KEY = ContextKey.named("test");
+
+    private DgcProperties dgcProperties;
+
+    private HedgingProperties properties;
+
+    private MeterRegistry meterRegistry;
+
+    private HedgedRequestExecutor executor;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        this.dgcProperties = new DgcProperties();
+        this.properties = this.dgcProperties.getHedging();
+        this.properties.setEnabled(true);
+        this.properties.setMinDelay(Duration.ofMillis(20));
+        this.properties.setInitialDelay(Duration.ofMillis(20));
+        this.properties.setMinSamples(5);
+        this.properties.setBudgetRatio(1);
+        this.properties.setMaxBurst(10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.release.countDown();
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+        RequestDeadline.clear();
+        SubjectTracing.clear();
+    }
+
+    @Test
+    void execute_disabled_calledOnCallerThread() {
+        this.properties.setEnabled(false);
+        this.createExecutor();
+
+        final Thread thread = this.executor.execute(DOWNSTREAM, Thread::currentThread);
+
+        assertThat(thread).isSameAs(Thread.currentThread());
+    }
+
+    @Test
+    void execute_fastResponse_noHedge() {
+        this.createExecutor();
+
+        final String response = this.executor.execute(DOWNSTREAM, () -> "response");
+
+        assertThat(response).isEqualTo("response");
+        assertThat(this.count("dgca.hedge.requests")).isEqualTo(1);
+        assertThat(this.meterRegistry.find("dgca.hedge.sent").counter()).isNull();
+    }
+
+    @Test
+    void execute_slowPrimary_firstResponseWins() {
+        this.createExecutor();
+        final AtomicInteger calls = new AtomicInteger();
+
+        final String response = this.executor.execute(DOWNSTREAM, () -> {
+            if (calls.incrementAndGet() == 1) {
+                this.awaitRelease();
+                return "primary";
+            }
+            return "hedge";
+        });
+
+        assertThat(response).isEqualTo("hedge");
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(this.count("dgca.hedge.sent")).isEqualTo(1);
+        assertThat(this.count("dgca.hedge.wins")).isEqualTo(1);
+    }
+
+    @Test
+    void execute_hedgeFails_responseOfPrimary() {
+        this.createExecutor();
+        final AtomicInteger calls = new AtomicInteger();
+
+        final String response = this.executor.execute(DOWNSTREAM, () -> {
+            if (calls.incrementAndGet() == 1) {
+                sleep(100);
+                return "primary";
+            }
+            throw new IllegalStateException("hedge failed");
+        });
+
+        assertThat(response).isEqualTo("primary");
+        assertThat(this.meterRegistry.find("dgca.hedge.wins").counter().count()).isZero();
+    }
+
+    @Test
+    void execute_bothFail_exceptionOfLastFailure() {
+        this.createExecutor();
+
+        assertThatThrownBy(() -> this.executor.execute(DOWNSTREAM, () -> {
+            sleep(50);
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("failed");
+    }
+
+    @Test
+    void execute_fewSamples_initialDelay() {
+        this.properties.setInitialDelay(Duration.ofSeconds(1));
+        this.createExecutor();
+
+        final String response = this.executor.execute(DOWNSTREAM, () -> {
+            sleep(100);
+            return "response";
+        });
+
+        assertThat(response).isEqualTo("response");
+        assertThat(this.meterRegistry.find("dgca.hedge.sent").counter()).isNull();
+    }
+
+    @Test
+    void execute_enoughSamples_percentileDelay() {
+        this.properties.setInitialDelay(Duration.ofSeconds(1));
+        this.createExecutor();
+        for (int i = 0; i < this.properties.getMinSamples(); i++) {
+            this.executor.execute(DOWNSTREAM, () -> "fast");
+        }
+        // Recorded after the response is returned
+        sleep(50);
+        final AtomicInteger calls = new AtomicInteger();
+
+        final String response = this.executor.execute(DOWNSTREAM, () -> {
+            if (calls.incrementAndGet() == 1) {
+                this.awaitRelease();
+                return "primary";
+            }
+            return "hedge";
+        });
+
+        // Fast samples give a percentile below the minimum delay, far below the initial delay
+        assertThat(response).isEqualTo("hedge");
+        assertThat(this.count("dgca.hedge.sent")).isEqualTo(1);
+    }
+
+    @Test
+    void execute_percentileOfOtherDownstream_initialDelay() {
+        this.properties.setInitialDelay(Duration.ofSeconds(1));
+        this.createExecutor();
+        for (int i = 0; i < this.properties.getMinSamples(); i++) {
+            this.executor.execute("other", () -> "fast");
+        }
+        sleep(50);
+
+        this.executor.execute(DOWNSTREAM, () -> {
+            sleep(100);
+            return "response";
+        });
+
+        assertThat(this.meterRegistry.find("dgca.hedge.sent").counter()).isNull();
+    }
+
+    @Test
+    void execute_budgetExhausted_hedgeSkipped() {
+        this.properties.setBudgetRatio(0.5);
+        this.createExecutor();
+        final Supplier<String> slow = () -> {
+            sleep(100);
+            return "response";
+        };
+
+        // Half a hedge earned
+        this.executor.execute(DOWNSTREAM, slow);
+        assertThat(this.count("dgca.hedge.skipped")).isEqualTo(1);
+
+        // A whole hedge earned
+        this.executor.execute(DOWNSTREAM, slow);
+        assertThat(this.count("dgca.hedge.sent")).isEqualTo(1);
+
+        // Spent again
+        this.executor.execute(DOWNSTREAM, slow);
+        assertThat(this.count("dgca.hedge.skipped")).isEqualTo(2);
+        assertThat(this.count("dgca.hedge.sent")).isEqualTo(1);
+    }
+
+    @Test
+    void execute_budgetBelowDelay_noHedge() {
+        this.createExecutor();
+        RequestDeadline.start("status", Duration.ofMillis(10));
+
+        assertThatThrownBy(() -> this.executor.execute(DOWNSTREAM, () -> {
+            this.awaitRelease();
+            return "response";
+        })).isInstanceOf(DeadlineExceededException.class);
+        assertThat(this.meterRegistry.find("dgca.hedge.sent").counter()).isNull();
+    }
+
+    @Test
+    void execute_hedge_contextOfRequestThreadPropagated() {
+        this.createExecutor();
+        final RequestDeadline deadline = RequestDeadline.start("status", Duration.ofSeconds(5));
+        SubjectTracing.tag("subject");
+        final List<Object> seen = new CopyOnWriteArrayList<>();
+        final AtomicInteger calls = new AtomicInteger();
+
+        try (Scope scope = Context.current().with(CONTEXT_KEY, "request").makeCurrent()) {
+            this.executor.execute(DOWNSTREAM, () -> {
+                final boolean primary = calls.incrementAndGet() == 1;
+                if (!primary) {
+                    seen.add(RequestDeadline.current());
+                    seen.add(SubjectTracing.currentHash());
+                    seen.add(Context.current().get(CONTEXT_KEY));
+                    seen.add(Thread.currentThread().getName());
+                }
+                if (primary) {
+                    this.awaitRelease();
+                }
+                return "response";
+            });
+        }
+
+        assertThat(seen).hasSize(4);
+        assertThat(seen.get(0)).isSameAs(deadline);
+        assertThat(seen.get(1)).isEqualTo(SubjectTracing.hash("subject"));
+        assertThat(seen.get(2)).isEqualTo("request");
+        assertThat((String) seen.get(3)).startsWith("hedged-request-");
+    }
+
+    private void createExecutor() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.executor = new HedgedRequestExecutor(this.dgcProperties, this.meterRegistry);
+    }
+
+    private double count(final String name) {
+        return this.meterRegistry.get(name).tag("service", DOWNSTREAM).counter().count();
+    }
+
+    private void awaitRelease() {
+        try {
+            this.release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.ServiceProperties;
+import eu.europa.ec.dgc.validation.decorator.exception.DownstreamUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+class ServiceLoadBalancerTest {
+
+    private static final String INSTANCE_A = "http://instance-a";
+
+    private static final String INSTANCE_B = "http://instance-b";
+
+    private static final String INSTANCE_C = "http://instance-c";
+
+    private DgcProperties dgcProperties;
+
+    private ServiceProperties service;
+
+    private RestTemplate restTpl;
+
+    private MeterRegistry meterRegistry;
+
+    private ServiceLoadBalancer loadBalancer;
+
+    @BeforeEach
+    void setUp() {
+        this.dgcProperties = new DgcProperties();
+        this.service = new ServiceProperties();
+        this.service.setId("service");
+        this.service.setServiceEndpoint(INSTANCE_A);
+        this.service.setInstanceEndpoints(List.of(INSTANCE_B, INSTANCE_C));
+        this.dgcProperties.getServices().add(this.service);
+        this.dgcProperties.getLoadBalancing().setUnhealthyThreshold(2);
+        this.dgcProperties.getLoadBalancing().setProbeInterval(Duration.ofSeconds(10));
+        this.restTpl = mock(RestTemplate.class);
+        when(this.restTpl.getForEntity(anyString(), eq(String.class))).thenReturn(ResponseEntity.ok("identity"));
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.loadBalancer = new ServiceLoadBalancer(this.dgcProperties, this.restTpl, this.meterRegistry);
+    }
+
+    @Test
+    void select_singleInstance_serviceEndpoint() {
+        final ServiceProperties single = new ServiceProperties();
+        single.setId("single");
+        single.setServiceEndpoint(INSTANCE_A);
+
+        assertThat(this.loadBalancer.select(single, "subject")).isEqualTo(INSTANCE_A);
+        assertThat(this.loadBalancer.isSticky(single)).isFalse();
+    }
+
+    @Test
+    void select_slowInstances_fastestInstance() {
+        this.loadBalancer.call(this.service, INSTANCE_A, () -> sleep(50));
+        this.loadBalancer.call(this.service, INSTANCE_B, () -> sleep(50));
+
+        assertThat(this.loadBalancer.select(this.service, "subject")).isEqualTo(INSTANCE_C);
+    }
+
+    @Test
+    void select_outstandingRequest_otherInstance() {
+        final String selected = this.loadBalancer.call(this.service, INSTANCE_A,
+                () -> this.loadBalancer.select(this.service, null));
+
+        assertThat(selected).isNotEqualTo(INSTANCE_A);
+    }
+
+    @Test
+    void select_unhealthyInstance_notSelected() {
+        this.failProbes(INSTANCE_A);
+        this.loadBalancer.probe();
+        this.loadBalancer.probe();
+        this.loadBalancer.call(this.service, INSTANCE_B, () -> sleep(50));
+        this.loadBalancer.call(this.service, INSTANCE_C, () -> sleep(50));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(this.loadBalancer.select(this.service, "subject-" + i)).isNotEqualTo(INSTANCE_A);
+        }
+    }
+
+    @Test
+    void select_allInstancesUnhealthy_instanceSelected() {
+        this.failProbes(INSTANCE_A);
+        this.failProbes(INSTANCE_B);
+        this.failProbes(INSTANCE_C);
+        this.loadBalancer.probe();
+        this.loadBalancer.probe();
+
+        assertThat(this.loadBalancer.select(this.service, "subject")).isIn(INSTANCE_A, INSTANCE_B, INSTANCE_C);
+    }
+
+    @Test
+    void select_stickyRouting_sameInstancePerSubject() {
+        this.service.setStickyRouting(true);
+        final Set<String> selected = new HashSet<>();
+
+        for (int i = 0; i < 50; i++) {
+            final String endpoint = this.loadBalancer.select(this.service, "subject-" + i);
+            // Load does not move a subject
+            this.loadBalancer.call(this.service, endpoint, () -> sleep(1));
+            assertThat(this.loadBalancer.select(this.service, "subject-" + i)).isEqualTo(endpoint);
+            selected.add(endpoint);
+        }
+
+        assertThat(this.loadBalancer.isSticky(this.service)).isTrue();
+        assertThat(selected).containsExactlyInAnyOrder(INSTANCE_A, INSTANCE_B, INSTANCE_C);
+    }
+
+    @Test
+    void select_stickyRoutingAndInstanceOfSubjectUnhealthy_downstreamUnavailable() {
+        this.service.setStickyRouting(true);
+        final String subject = this.subjectOf(INSTANCE_A);
+        final String otherSubject = this.subjectOf(INSTANCE_B);
+        this.failProbes(INSTANCE_A);
+        this.loadBalancer.probe();
+        this.loadBalancer.probe();
+
+        assertThatThrownBy(() -> this.loadBalancer.select(this.service, subject))
+                .isInstanceOfSatisfying(DownstreamUnavailableException.class, e -> {
+                    assertThat(e.getDownstream()).isEqualTo("service");
+                    assertThat(e.getRetryAfter()).isEqualTo(10L);
+                });
+        assertThat(this.loadBalancer.select(this.service, otherSubject)).isEqualTo(INSTANCE_B);
+    }
+
+    @Test
+    void select_stickyRoutingAndInstanceBackInRotation_sameInstanceAgain() {
+        this.service.setStickyRouting(true);
+        final String subject = this.subjectOf(INSTANCE_A);
+        this.failProbes(INSTANCE_A);
+        this.loadBalancer.probe();
+        this.loadBalancer.probe();
+        when(this.restTpl.getForEntity(startsWith(INSTANCE_A), eq(String.class)))
+                .thenReturn(ResponseEntity.ok("identity"));
+
+        this.loadBalancer.probe();
+
+        assertThat(this.loadBalancer.select(this.service, subject)).isEqualTo(INSTANCE_A);
+    }
+
+    @Test
+    void select_stickyRoutingWithoutSubject_balancedByLoad() {
+        this.service.setStickyRouting(true);
+        this.loadBalancer.call(this.service, INSTANCE_A, () -> sleep(50));
+        this.loadBalancer.call(this.service, INSTANCE_C, () -> sleep(50));
+
+        assertThat(this.loadBalancer.select(this.service, null)).isEqualTo(INSTANCE_B);
+    }
+
+    @Test
+    void probe_failedProbes_unhealthyAfterThresholdAndHealthyAfterSuccess() {
+        this.failProbes(INSTANCE_A);
+
+        this.loadBalancer.probe();
+        assertThat(this.healthy()).isEqualTo(3);
+
+        this.loadBalancer.probe();
+        assertThat(this.healthy()).isEqualTo(2);
+
+        when(this.restTpl.getForEntity(startsWith(INSTANCE_A), eq(String.class)))
+                .thenReturn(ResponseEntity.status(503).body("down"));
+        this.loadBalancer.probe();
+        assertThat(this.healthy()).isEqualTo(2);
+
+        when(this.restTpl.getForEntity(startsWith(INSTANCE_A), eq(String.class)))
+                .thenReturn(ResponseEntity.ok("identity"));
+        this.loadBalancer.probe();
+        assertThat(this.healthy()).isEqualTo(3);
+    }
+
+    @Test
+    void probe_singleInstance_notProbed() {
+        final ServiceProperties single = new ServiceProperties();
+        single.setId("single");
+        single.setServiceEndpoint(INSTANCE_A);
+        this.dgcProperties.getServices().add(single);
+        this.loadBalancer = new ServiceLoadBalancer(this.dgcProperties, this.restTpl, this.meterRegistry);
+        this.failProbes(INSTANCE_A);
+
+        this.loadBalancer.probe();
+        this.loadBalancer.probe();
+
+        assertThat(this.meterRegistry.get("dgca.loadbalancer.healthy").tag("service", "single").gauge().value())
+                .isEqualTo(1);
+    }
+
+    private void failProbes(final String endpoint) {
+        when(this.restTpl.getForEntity(startsWith(endpoint), eq(String.class)))
+                .thenThrow(new ResourceAccessException("Connection refused"));
+    }
+
+    private String subjectOf(final String endpoint) {
+        for (int i = 0; i < 1000; i++) {
+            if (endpoint.equals(this.loadBalancer.select(this.service, "subject-" + i))) {
+                return "subject-" + i;
+            }
+        }
+        throw new IllegalStateException("No subject of " + endpoint);
+    }
+
+    private double healthy() {
+        return this.meterRegistry.get("dgca.loadbalancer.healthy").tag("service", "service").gauge().value();
+    }
+
+    private static String sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "response";
+    }
+}
@@ -0,0 +1,317 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.dto.AccessTokenPayload;
+import eu.europa.ec.dgc.validation.decorator.dto.AccessTokenPayload.AccessTokenConditions;
+import eu.europa.ec.dgc.validation.decorator.dto.CallbackRequest;
+import eu.europa.ec.dgc.validation.decorator.dto.ResultToken;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse.OccurrenceInfoResponse;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse.SubjectResponse;
+import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceInitializeResponse;
+import eu.europa.ec.dgc.validation.decorator.util.TestHelper;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.PrematureJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import io.jsonwebtoken.UnsupportedJwtException;
+import java.io.ByteArrayInputStream;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class AccessTokenServiceTest {
+
+    @Autowired
+    private AccessTokenService accessTokenService;
+
+    @Autowired
+    private AccessTokenPayloadBuilder accessTokenPayloadBuilder;
+
+    @Autowired
+    private KeyProvider keyProvider;
+
+    @Autowired
+    private DgcProperties properties;
+
+    @Test
+    void buildAccessToken_fromPayloadBuilder_sameHeaderAndClaimsAsJjwt() {
+        // GIVEN token content of the booking service
+        final String subject = UUID.randomUUID().toString();
+        final ServiceTokenContentResponse tokenContent = TestHelper.buildServiceTokenContent(subject, "service");
+        final SubjectResponse subjectResponse = tokenContent.getSubjects().get(0);
+        final OccurrenceInfoResponse occurrenceInfo = tokenContent.getOccurrenceInfo();
+        final ValidationServiceInitializeResponse initialize = new ValidationServiceInitializeResponse();
+        initialize.setSubject(subject);
+        initialize.setExp(Instant.now().plusSeconds(3600).getEpochSecond());
+        initialize.setAud("http://localhost:8081/validate/" + subject);
+
+        // WHEN
+        final AccessTokenPayload payload = this.accessTokenPayloadBuilder.build(
+                subject, initialize, subjectResponse, occurrenceInfo);
+        final String token = this.accessTokenService.buildAccessToken(payload);
+
+        // THEN equal to the conditions serialized by jjwt
+        final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssxxxxx");
+        final AccessTokenConditions conditions = new AccessTokenConditions();
+        conditions.setLang(occurrenceInfo.getLanguage());
+        conditions.setGnt(subjectResponse.getForename());
+        conditions.setFnt(subjectResponse.getLastname());
+        conditions.setCoa(occurrenceInfo.getCountryOfArrival());
+        conditions.setCod(occurrenceInfo.getCountryOfDeparture());
+        conditions.setRoa(occurrenceInfo.getRegionOfArrival());
+        conditions.setRod(occurrenceInfo.getRegionOfDeparture());
+        conditions.setType(occurrenceInfo.getConditionTypes());
+        conditions.setCategory(occurrenceInfo.getCategories());
+        conditions.setDob(subjectResponse.getBirthDate());
+        conditions.setValidFrom(occurrenceInfo.getDepartureTime().format(formatter));
+        conditions.setValidationClock(occurrenceInfo.getArrivalTime().format(formatter));
+        conditions.setValidTo(occurrenceInfo.getArrivalTime().format(formatter));
+        payload.setConditions(conditions);
+        assertThat(unsigned(token)).isEqualTo(unsigned(this.buildWithJjwt(payload)));
+    }
+
+    @Test
+    void buildAccessToken_withCharactersToEscape_sameHeaderAndClaimsAsJjwt() {
+        // GIVEN conditions with quotes, control and non-ASCII characters and null values
+        final AccessTokenConditions conditions = new AccessTokenConditions();
+        conditions.setLang("en-en");
+        conditions.setFnt("M\u00fcller \"Quote\" \\ Back/slash");
+        conditions.setGnt("Line\nBreak\tTab\r\u0001\u001f\u007f \ud83d\ude00 \u2028");
+        conditions.setDob("1994-05-25");
+        conditions.setType(Arrays.asList("r", null, "t"));
+        conditions.setValidFrom("2021-09-24T10:00:00+00:00");
+
+        final long now = Instant.now().getEpochSecond();
+        final AccessTokenPayload payload = new AccessTokenPayload();
+        payload.setJti(UUID.randomUUID().toString());
+        payload.setSub(UUID.randomUUID().toString());
+        payload.setIat(now);
+        payload.setExp(now + 3600);
+        payload.setType(2);
+        payload.setVersion("1.0");
+        payload.setConditions(conditions);
+
+        // WHEN
+        final String token = this.accessTokenService.buildAccessToken(payload);
+
+        // THEN
+        assertThat(unsigned(token)).isEqualTo(unsigned(this.buildWithJjwt(payload)));
+    }
+
+    @Test
+    void buildAccessToken_withoutConditions_sameHeaderAndClaimsAsJjwt() {
+        final AccessTokenPayload payload = new AccessTokenPayload();
+        payload.setSub(UUID.randomUUID().toString());
+        payload.setExp(Instant.now().getEpochSecond());
+
+        final String token = this.accessTokenService.buildAccessToken(payload);
+
+        assertThat(unsigned(token)).isEqualTo(unsigned(this.buildWithJjwt(payload)));
+    }
+
+    @Test
+    void buildAccessToken_withSubject_sameHeaderAndClaimsAsJjwt() {
+        final String subject = UUID.randomUUID().toString();
+
+        final String token = this.accessTokenService.buildAccessToken(subject);
+
+        // Expiration as issued, it depends on the time of the call
+        final Date expiration = Jwts.parser()
+                .setSigningKey(this.keyProvider.receiveCertificate(this.keyProvider.getActiveSignKey())[0]
+                        .getPublicKey())
+                .parseClaimsJws(token)
+                .getBody()
+                .getExpiration();
+        final Map<String, Object> claims = new HashMap<>();
+        claims.put("sub", subject);
+        assertThat(unsigned(token)).isEqualTo(unsigned(this.jjwtBuilder(expiration, claims)));
+    }
+
+    @Test
+    void parseToken_resultOfValidationService_typedClaims() throws Exception {
+        // GIVEN a result token issued after 2038, iat does not fit into an Integer
+        final long iat = 4_102_444_800L;
+        final String token = this.buildResultToken(Jwts.builder()
+                .setIssuer("http://localhost:8082")
+                .claim("iat", iat)
+                .claim("sub", UUID.randomUUID().toString())
+                .claim("result", "NOK")
+                .claim("confirmation", "confirmation")
+                .claim("results", List.of(Map.of(
+                        "identifier", "GR-01",
+                        "result", "NOK",
+                        "type", "TechnicalVerification",
+                        "details", "name does not match"))));
+        final List<String> keyIds = new ArrayList<>();
+
+        // WHEN
+        final ResultToken resultToken = this.accessTokenService.parseToken(token, ResultToken.class, keyId -> {
+            keyIds.add(keyId);
+            return validationServicePublicKey();
+        });
+
+        // THEN
+        assertThat(keyIds).containsExactly(TestHelper.VALIDATION_SERVICE_KID);
+        assertThat(resultToken.getIssuer()).isEqualTo("http://localhost:8082");
+        assertThat(resultToken.getIat()).isEqualTo(iat);
+        assertThat(resultToken.getResult()).isEqualTo("NOK");
+        assertThat(resultToken.getConfirmation()).isEqualTo("confirmation");
+        assertThat(resultToken.getResults()).hasSize(1);
+        assertThat(resultToken.getResults().get(0).getIdentifier()).isEqualTo("GR-01");
+        assertThat(resultToken.getResults().get(0).getDetails()).isEqualTo("name does not match");
+    }
+
+    @Test
+    void parseToken_callbackOfValidationService_typedClaims() throws Exception {
+        final String subject = UUID.randomUUID().toString();
+        final String token = this.buildResultToken(Jwts.builder()
+                .setIssuer("http://localhost:8082")
+                .setIssuedAt(new Date())
+                .setSubject(subject)
+                .claim("result", "OK"));
+
+        final CallbackRequest request = this.accessTokenService.parseToken(token, CallbackRequest.class,
+                keyId -> validationServicePublicKey());
+
+        assertThat(request.getIssuer()).isEqualTo("http://localhost:8082");
+        assertThat(request.getSub()).isEqualTo(subject);
+        assertThat(request.getResult()).isEqualTo("OK");
+        assertThat(request.getIat()).isNotNull();
+    }
+
+    @Test
+    void parseToken_expired_throwsExpiredJwtException() throws Exception {
+        final String token = this.buildResultToken(Jwts.builder()
+                .setExpiration(new Date(System.currentTimeMillis() - 60_000))
+                .claim("result", "OK"));
+
+        assertThatThrownBy(() -> this.accessTokenService.parseToken(token, ResultToken.class,
+                keyId -> validationServicePublicKey()))
+                .isInstanceOf(ExpiredJwtException.class);
+    }
+
+    @Test
+    void parseToken_notYetValid_throwsPrematureJwtException() throws Exception {
+        final String token = this.buildResultToken(Jwts.builder()
+                .setNotBefore(new Date(System.currentTimeMillis() + 60_000))
+                .claim("result", "OK"));
+
+        assertThatThrownBy(() -> this.accessTokenService.parseToken(token, ResultToken.class,
+                keyId -> validationServicePublicKey()))
+                .isInstanceOf(PrematureJwtException.class);
+    }
+
+    @Test
+    void parseToken_signatureOfOtherToken_throwsSignatureException() throws Exception {
+        final String token = this.buildResultToken(Jwts.builder().claim("result", "OK"));
+        final String otherToken = this.buildResultToken(Jwts.builder().claim("result", "NOK"));
+        final String forgedToken = unsigned(otherToken) + token.substring(token.lastIndexOf('.'));
+
+        assertThatThrownBy(() -> this.accessTokenService.parseToken(forgedToken, ResultToken.class,
+                keyId -> validationServicePublicKey()))
+                .isInstanceOf(SignatureException.class);
+    }
+
+    @Test
+    void parseToken_notSigned_throwsUnsupportedJwtException() {
+        final String token = Jwts.builder().claim("result", "OK").compact();
+
+        assertThatThrownBy(() -> this.accessTokenService.parseToken(token, ResultToken.class,
+                keyId -> validationServicePublicKey()))
+                .isInstanceOf(UnsupportedJwtException.class);
+    }
+
+    private String buildResultToken(final JwtBuilder builder) throws Exception {
+        final PrivateKey privateKey = KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(
+                Base64.getDecoder().decode(TestHelper.VALIDATION_SERVICE_PRIVATE_KEY)));
+        return builder
+                .setHeaderParam("kid", TestHelper.VALIDATION_SERVICE_KID)
+                .signWith(SignatureAlgorithm.ES256, privateKey)
+                .compact();
+    }
+
+    private static PublicKey validationServicePublicKey() {
+        final String x5c = TestHelper.buildValidationServiceIdentity().getVerificationMethod().get(0)
+                .getPublicKeyJwk().getX5c()[0];
+        try {
+            return CertificateFactory.getInstance("X.509")
+                    .generateCertificate(new ByteArrayInputStream(Base64.getDecoder().decode(x5c)))
+                    .getPublicKey();
+        } catch (CertificateException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Old serialization: jjwt builder with the claims in a HashMap
+    private String buildWithJjwt(final AccessTokenPayload payload) {
+        final Map<String, Object> claims = new HashMap<>();
+        claims.put("jti", payload.getJti());
+        claims.put("sub", payload.getSub());
+        claims.put("aud", payload.getAud());
+        claims.put("iat", payload.getIat());
+        claims.put("t", payload.getType());
+        claims.put("v", payload.getVersion());
+        claims.put("vc", payload.getConditions());
+        return this.jjwtBuilder(new Date(payload.getExp() * 1000), claims);
+    }
+
+    private String jjwtBuilder(final Date expiration, final Map<String, Object> claims) {
+        final String activeSignKey = this.keyProvider.getActiveSignKey();
+        return Jwts.builder()
+                .signWith(SignatureAlgorithm.valueOf(this.keyProvider.getAlg(activeSignKey)),
+                        this.keyProvider.receivePrivateKey(activeSignKey))
+                .setHeaderParam("typ", this.properties.getToken().getType())
+                .setHeaderParam("kid", this.keyProvider.getKid(activeSignKey))
+                .setIssuer(this.properties.getToken().getIssuer())
+                .setExpiration(expiration)
+                .addClaims(claims)
+                .compact();
+    }
+
+    // Signatures of ES256 and PS256 differ with every call
+    private static String unsigned(final String token) {
+        return token.substring(0, token.lastIndexOf('.'));
+    }
+}
@@ -0,0 +1,210 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BirthDateNormalizerTest {
+
+    private static final String ALPHABET = "0123456789--TZ:+. /ax\u00e4\u0660";
+
+    private MeterRegistry meterRegistry;
+
+    private BirthDateNormalizer birthDateNormalizer;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.birthDateNormalizer = new BirthDateNormalizer(this.meterRegistry);
+    }
+
+    @Test
+    void normalize_fuzzedInput_sameAsParsingWithExceptions() {
+        final Random random = new Random(20211019L);
+        int compared = 0;
+        for (int i = 0; i < 200_000; i++) {
+            final String in = this.randomBirthDate(random);
+            if (isExpandedYear(in)) {
+                continue;
+            }
+            assertThat(this.birthDateNormalizer.normalize(in)).as("normalize(\"%s\")", in).isEqualTo(parseBirthDay(in));
+            compared++;
+        }
+        assertThat(compared).isGreaterThan(150_000);
+    }
+
+    @Test
+    void normalize_supportedFormats_isoDate() {
+        assertThat(this.birthDateNormalizer.normalize("1994-05-25")).isEqualTo("1994-05-25");
+        assertThat(this.birthDateNormalizer.normalize("1994-05-25T10:15:30+02:00")).isEqualTo("1994-05-25");
+        assertThat(this.birthDateNormalizer.normalize("05-25-1994")).isEqualTo("1994-05-25");
+        assertThat(this.birthDateNormalizer.normalize("02-30-2000")).isEqualTo("2000-02-29");
+        assertThat(this.birthDateNormalizer.normalize("02-29-1900")).isEqualTo("1900-02-28");
+        assertThat(this.birthDateNormalizer.normalize("04-31-2001")).isEqualTo("2001-04-30");
+        assertThat(this.meterRegistry.get("dgca.birthdate.unrecognized").counters())
+                .allSatisfy(counter -> assertThat(counter.count()).isZero());
+    }
+
+    @Test
+    void normalize_unrecognizedFormats_counted() {
+        assertThat(this.birthDateNormalizer.normalize(null)).isNull();
+        assertThat(this.birthDateNormalizer.normalize(" ")).isEqualTo(" ");
+        assertThat(this.birthDateNormalizer.normalize("25.05.1994 00:00")).isEqualTo("25.05.1994");
+        assertThat(this.birthDateNormalizer.normalize("13-25-1994")).isEqualTo("13-25-1994");
+        assertThat(this.birthDateNormalizer.normalize("1994")).isEqualTo("1994");
+        assertThat(this.meterRegistry.get("dgca.birthdate.unrecognized").tag("fallback", "truncated").counter()
+                .count()).isEqualTo(2);
+        assertThat(this.meterRegistry.get("dgca.birthdate.unrecognized").tag("fallback", "unchanged").counter()
+                .count()).isEqualTo(1);
+    }
+
+    @Test
+    void normalize_unsignedYearBeyondFourDigits_truncatedLikeFormerImplementation() {
+        // The strict yyyy pattern requires a sign for more than four digits, so these were truncated before as well
+        for (String in : new String[] {"05-25-12345", "02-29-10000", "12345-05-25", "12345-05-25T10:15:30+02:00"}) {
+            assertThat(this.birthDateNormalizer.normalize(in)).as("normalize(\"%s\")", in)
+                    .isEqualTo(in.substring(0, 10))
+                    .isEqualTo(parseBirthDay(in));
+        }
+        assertThat(this.meterRegistry.get("dgca.birthdate.unrecognized").tag("fallback", "truncated").counter()
+                .count()).isEqualTo(4);
+    }
+
+    @Test
+    void normalize_signedYearBeyondFourDigits_truncated() {
+        // Resolved by the former implementation, not supported by the normalizer
+        assertThat(parseBirthDay("05-25-+12345")).isEqualTo("+12345-05-25");
+        assertThat(this.birthDateNormalizer.normalize("05-25-+12345")).isEqualTo("05-25-+123");
+        assertThat(parseBirthDay("+12345-05-25T10:15:30+02:00")).isEqualTo("+12345-05-25");
+        assertThat(this.birthDateNormalizer.normalize("+12345-05-25T10:15:30+02:00")).isEqualTo("+12345-05-");
+    }
+
+    private String randomBirthDate(final Random random) {
+        final String in;
+        switch (random.nextInt(4)) {
+            case 0:
+                in = digits(random, yearLength(random)) + "-" + twoDigits(random, 14) + "-" + twoDigits(random, 33)
+                        + this.randomTime(random);
+                break;
+            case 1:
+                in = twoDigits(random, 14) + "-" + twoDigits(random, 33) + "-" + digits(random, yearLength(random))
+                        + (random.nextInt(8) == 0 ? randomText(random, 3) : "");
+                break;
+            case 2:
+                in = randomText(random, 24);
+                break;
+            default:
+                // a supported format with one character replaced
+                final StringBuilder mutated = new StringBuilder(this.randomBirthDate(random));
+                if (mutated.length() > 0) {
+                    mutated.setCharAt(random.nextInt(mutated.length()), ALPHABET.charAt(random.nextInt(
+                            ALPHABET.length())));
+                }
+                in = mutated.toString();
+                break;
+        }
+        return in;
+    }
+
+    private String randomTime(final Random random) {
+        switch (random.nextInt(5)) {
+            case 0:
+                return "";
+            case 1:
+                return "T" + twoDigits(random, 25) + ":" + twoDigits(random, 61) + ":" + twoDigits(random, 61)
+                        + "." + digits(random, 1 + random.nextInt(9)) + "Z";
+            case 2:
+                return (random.nextBoolean() ? "T" : "t") + twoDigits(random, 24) + ":" + twoDigits(random, 60)
+                        + (random.nextBoolean() ? "+" : "-") + twoDigits(random, 20) + ":" + twoDigits(random, 60);
+            case 3:
+                return " " + twoDigits(random, 24) + ":" + twoDigits(random, 60);
+            default:
+                return randomText(random, 12);
+        }
+    }
+
+    private static String randomText(final Random random, final int maxLength) {
+        final int length = random.nextInt(maxLength + 1);
+        final StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+
+    private static int yearLength(final Random random) {
+        return random.nextInt(8) == 0 ? 5 : 4;
+    }
+
+    private static String twoDigits(final Random random, final int bound) {
+        return String.format("%02d", random.nextInt(bound));
+    }
+
+    private static String digits(final Random random, final int length) {
+        final StringBuilder digits = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            digits.append((char) ('0' + random.nextInt(10)));
+        }
+        return digits.toString();
+    }
+
+    /**
+     * Signed years and year 0 are resolved through the era by java.time and not supported by the normalizer.
+     */
+    private static boolean isExpandedYear(final String in) {
+        return in.startsWith("+") || in.startsWith("-") || in.startsWith("0000")
+                || (in.length() > 6 && in.charAt(6) == '+');
+    }
+
+    /**
+     * Former implementation of AccessTokenPayloadBuilderImpl, parsing with exceptions.
+     */
+    private static String parseBirthDay(final String in) {
+        if (in != null && !in.isBlank()) {
+            try {
+                return OffsetDateTime.parse(in).format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+            } catch (Exception e) {
+                // not handle
+            }
+            try {
+                return LocalDate.parse(in, DateTimeFormatter.ofPattern("MM-dd-yyyy"))
+                        .format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+            } catch (Exception e) {
+                // not handle
+            }
+            try {
+                return in.substring(0, 10);
+            } catch (Exception e) {
+                // not handle
+            }
+        }
+        return in;
+    }
+}
@@ -0,0 +1,128 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.service.FlowLatencyTracker.Milestone;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FlowLatencyTrackerTest {
+
+    private DgcProperties dgcProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private FlowLatencyTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        this.dgcProperties = new DgcProperties();
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.tracker = new FlowLatencyTracker(this.dgcProperties, this.meterRegistry);
+    }
+
+    @Test
+    void reached_completeFlow_timesAndPollsRecorded() {
+        this.tracker.reached("subject", Milestone.INITIALIZED);
+        this.tracker.reached("subject", Milestone.TOKEN_ISSUED);
+        this.tracker.polled("subject");
+        this.tracker.polled("subject");
+        this.tracker.reached("subject", Milestone.RESULT_STATUS);
+        this.tracker.reached("subject", Milestone.RESULT_FORWARDED);
+
+        assertThat(this.meterRegistry.get("dgca.flow.time.to.token").timer().count()).isEqualTo(1);
+        assertThat(this.meterRegistry.get("dgca.flow.time.to.result").timer().count()).isEqualTo(1);
+        assertThat(this.meterRegistry.get("dgca.flow.polls.per.result").summary().count()).isEqualTo(1);
+        assertThat(this.meterRegistry.get("dgca.flow.polls.per.result").summary().totalAmount()).isEqualTo(2);
+        assertThat(this.activeFlows()).isZero();
+    }
+
+    @Test
+    void reached_flowStartedWithToken_resultRecordedWithoutTimeToToken() {
+        this.tracker.reached("subject", Milestone.TOKEN_ISSUED);
+        this.tracker.polled("subject");
+        this.tracker.reached("subject", Milestone.RESULT_FORWARDED);
+
+        assertThat(this.meterRegistry.get("dgca.flow.time.to.token").timer().count()).isZero();
+        assertThat(this.meterRegistry.get("dgca.flow.time.to.result").timer().count()).isEqualTo(1);
+        assertThat(this.meterRegistry.get("dgca.flow.polls.per.result").summary().totalAmount()).isEqualTo(1);
+    }
+
+    @Test
+    void reached_laterMilestonesOfUnknownSubject_noFlowCreated() {
+        this.tracker.reached("unknown", Milestone.CALLBACK_RECEIVED);
+        this.tracker.reached("unknown", Milestone.RESULT_STATUS);
+        this.tracker.reached("unknown", Milestone.RESULT_FORWARDED);
+
+        assertThat(this.activeFlows()).isZero();
+        assertThat(this.meterRegistry.get("dgca.flow.time.to.result").timer().count()).isZero();
+        assertThat(this.meterRegistry.get("dgca.flow.polls.per.result").summary().count()).isZero();
+    }
+
+    @Test
+    void polled_unknownSubject_noFlowCreated() {
+        for (int i = 0; i < 100; i++) {
+            this.tracker.polled("unknown-" + i);
+        }
+
+        assertThat(this.activeFlows()).isZero();
+    }
+
+    @Test
+    void reached_resultWithoutToken_pollsNotRecorded() {
+        this.tracker.reached("subject", Milestone.INITIALIZED);
+        this.tracker.polled("subject");
+        this.tracker.reached("subject", Milestone.RESULT_FORWARDED);
+
+        assertThat(this.meterRegistry.get("dgca.flow.time.to.result").timer().count()).isZero();
+        assertThat(this.meterRegistry.get("dgca.flow.polls.per.result").summary().count()).isZero();
+        assertThat(this.activeFlows()).isZero();
+    }
+
+    @Test
+    void reached_milestoneTwice_recordedOnce() {
+        this.tracker.reached("subject", Milestone.INITIALIZED);
+        this.tracker.reached("subject", Milestone.TOKEN_ISSUED);
+        this.tracker.reached("subject", Milestone.TOKEN_ISSUED);
+
+        assertThat(this.meterRegistry.get("dgca.flow.time.to.token").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void reached_disabled_nothingRecorded() {
+        this.dgcProperties.getFlowTracking().setEnabled(false);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.tracker = new FlowLatencyTracker(this.dgcProperties, this.meterRegistry);
+
+        this.tracker.reached("subject", Milestone.INITIALIZED);
+        this.tracker.polled("subject");
+
+        assertThat(this.activeFlows()).isZero();
+    }
+
+    private double activeFlows() {
+        return this.meterRegistry.get("dgca.flow.active").gauge().value();
+    }
+}
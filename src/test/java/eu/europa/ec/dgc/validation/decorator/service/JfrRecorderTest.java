@@ -0,0 +1,111 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JfrRecorderTest {
+
+    private static final List<String> SECRET_EVENTS = List.of(
+            "jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation");
+
+    @TempDir
+    Path tempDir;
+
+    private DgcProperties dgcProperties;
+
+    private JfrRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(FlightRecorder.isAvailable());
+        this.dgcProperties = new DgcProperties();
+        this.dgcProperties.getJfr().setEnabled(true);
+        this.dgcProperties.getJfr().setDumpFile(this.tempDir.resolve("jfr/dgca.jfr").toString());
+        this.recorder = new JfrRecorder(this.dgcProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (this.recorder != null) {
+            this.recorder.stop();
+        }
+    }
+
+    @Test
+    void start_enabled_secretEventsDisabled() {
+        this.recorder.start();
+
+        final Recording recording = findRecording().orElseThrow();
+        SECRET_EVENTS.forEach(event -> assertThat(recording.getSettings()).containsEntry(event + "#enabled", "false"));
+        assertThat(recording.getSettings())
+                .containsEntry("eu.europa.ec.dgc.validation.decorator.Request#enabled", "true");
+    }
+
+    @Test
+    void start_disabled_noRecording() {
+        this.dgcProperties.getJfr().setEnabled(false);
+
+        this.recorder.start();
+
+        assertThat(findRecording()).isEmpty();
+    }
+
+    @Test
+    void dump_runningRecording_noSecretEvents() throws Exception {
+        this.recorder.start();
+
+        final Path file = this.recorder.dump();
+
+        assertThat(file).exists();
+        assertThat(RecordingFile.readAllEvents(file))
+                .isNotEmpty()
+                .noneMatch(event -> SECRET_EVENTS.contains(event.getEventType().getName()));
+    }
+
+    @Test
+    void stop_runningRecording_closed() {
+        this.recorder.start();
+
+        this.recorder.stop();
+
+        assertThat(findRecording()).isEmpty();
+    }
+
+    private static Optional<Recording> findRecording() {
+        return FlightRecorder.getFlightRecorder().getRecordings().stream()
+                .filter(recording -> "dgca".equals(recording.getName()))
+                .findFirst();
+    }
+}
@@ -0,0 +1,140 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.TokenInitializeProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.TokenProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class KeyStoreKeyProviderTest {
+
+    private static final String PASSWORD = "dgca";
+
+    private static final String PSS_KEY = "pss";
+
+    private static final String RSA_KEY = "rsa";
+
+    @TempDir
+    Path tempDir;
+
+    private DgcProperties properties;
+
+    private MeterRegistry meterRegistry;
+
+    private KeyStoreKeyProvider keyProvider;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        final KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, PASSWORD.toCharArray());
+        this.addKey(keyStore, PSS_KEY, "SHA256withRSAandMGF1");
+        this.addKey(keyStore, RSA_KEY, "SHA256withRSA");
+        final Path keyStoreFile = this.tempDir.resolve("keystore.jks");
+        try (OutputStream os = Files.newOutputStream(keyStoreFile)) {
+            keyStore.store(os, PASSWORD.toCharArray());
+        }
+
+        final TokenInitializeProperties initialize = new TokenInitializeProperties();
+        initialize.setValidity(60);
+        final TokenProperties token = new TokenProperties();
+        token.setInitialize(initialize);
+        this.properties = new DgcProperties();
+        this.properties.setKeyStoreFile(keyStoreFile.toString());
+        this.properties.setKeyStorePassword(PASSWORD);
+        this.properties.setPrivateKeyPassword(PASSWORD);
+        this.properties.setSignAliases(List.of(PSS_KEY, RSA_KEY));
+        this.properties.setActiveSignKey(PSS_KEY);
+        this.properties.setToken(token);
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.keyProvider = new KeyStoreKeyProvider(this.properties, this.meterRegistry);
+        this.keyProvider.createKeys();
+    }
+
+    @Test
+    void getAlg_rsassaPssCertificate_ps256() {
+        assertThat(this.keyProvider.getAlg(PSS_KEY)).isEqualTo("PS256");
+    }
+
+    @Test
+    void getAlg_rsaCertificate_rs256() {
+        assertThat(this.keyProvider.getAlg(RSA_KEY)).isEqualTo("RS256");
+    }
+
+    @Test
+    void buildAccessToken_rsassaPssSignKey_verifiedWithCertificate() {
+        final AccessTokenService accessTokenService =
+                new AccessTokenService(this.properties, this.keyProvider, this.meterRegistry);
+        final String subject = UUID.randomUUID().toString();
+
+        final String token = accessTokenService.buildAccessToken(subject);
+
+        assertThat(accessTokenService.parseUnsecure(token).getHeader()).containsEntry("alg", "PS256");
+        final Map<String, Object> claims = accessTokenService.parseAccessToken(token);
+        assertThat(claims).containsEntry("sub", subject);
+        assertThat(this.meterRegistry.get("dgca.crypto.operations").tag("alg", "PS256").tag("outcome", "ok").timer()
+                .count()).isEqualTo(1L);
+    }
+
+    private void addKey(final KeyStore keyStore, final String alias, final String sigAlg) throws Exception {
+        final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        final KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        final X500Name name = new X500Name("CN=" + alias);
+        final Instant now = Instant.now();
+        final X509Certificate certificate = new JcaX509CertificateConverter()
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .getCertificate(new JcaX509v3CertificateBuilder(name, BigInteger.ONE, Date.from(now),
+                        Date.from(now.plus(1, ChronoUnit.DAYS)), name, keyPair.getPublic())
+                        .build(new JcaContentSignerBuilder(sigAlg)
+                                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                                .build(keyPair.getPrivate())));
+        keyStore.setKeyEntry(alias, keyPair.getPrivate(), PASSWORD.toCharArray(), new Certificate[] {certificate});
+    }
+}
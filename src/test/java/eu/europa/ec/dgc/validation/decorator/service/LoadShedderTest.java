@@ -0,0 +1,205 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.LoadSheddingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LoadShedderTest {
+
+    private static final int TRIALS = 10000;
+
+    private DgcProperties dgcProperties;
+
+    private LoadSheddingProperties properties;
+
+    private MeterRegistry meterRegistry;
+
+    private LoadShedder loadShedder;
+
+    private int entered;
+
+    @BeforeEach
+    void setUp() {
+        this.dgcProperties = new DgcProperties();
+        this.properties = this.dgcProperties.getRateLimit().getShedding();
+        this.properties.setMaxInFlight(2);
+        this.properties.setMaxDownstreamLatency(Duration.ofSeconds(2));
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.loadShedder = new LoadShedder(this.dgcProperties, this.meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (; this.entered > 0; this.entered--) {
+            this.loadShedder.exit();
+        }
+    }
+
+    @Test
+    void shouldShed_maxInFlightReached_inFlight() {
+        this.enter();
+        assertThat(this.loadShedder.shouldShed()).isNull();
+
+        this.enter();
+        assertThat(this.loadShedder.shouldShed()).isEqualTo(LoadShedder.IN_FLIGHT);
+        assertThat(this.meterRegistry.get("dgca.requests.inflight").gauge().value()).isEqualTo(2);
+
+        this.exit();
+        assertThat(this.loadShedder.shouldShed()).isNull();
+        assertThat(this.meterRegistry.get("dgca.requests.inflight").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldShed_maxInFlightZero_neverInFlight() {
+        this.properties.setMaxInFlight(0);
+        this.enter();
+        this.enter();
+        this.enter();
+
+        assertThat(this.loadShedder.shouldShed()).isNull();
+    }
+
+    @Test
+    void shouldShed_downstreamBelowMaxLatency_notShed() {
+        this.enter();
+        this.loadShedder.recordDownstreamLatency("booking", 1000);
+
+        assertThat(this.shedShare("booking")).isZero();
+    }
+
+    @Test
+    void shouldShed_downstreamAboveMaxLatency_shedInProportion() {
+        this.enter();
+        this.loadShedder.recordDownstreamLatency("booking", 5000);
+
+        // 1 - 2000 / 5000 of the calls
+        assertThat(this.shedShare("booking")).isBetween(0.55, 0.65);
+        assertThat(this.meterRegistry.get("dgca.downstream.shed").tag("service", "booking").counter().count())
+                .isPositive();
+    }
+
+    @Test
+    void shouldShed_otherDownstreamSlow_notShed() {
+        this.enter();
+        this.loadShedder.recordDownstreamLatency("booking", 5000);
+        this.loadShedder.recordDownstreamLatency("service", 100);
+
+        assertThat(this.shedShare("service")).isZero();
+        assertThat(this.shedShare("unknown")).isZero();
+    }
+
+    @Test
+    void shouldShed_maxLatencyZero_notShed() {
+        this.properties.setMaxDownstreamLatency(Duration.ZERO);
+        this.enter();
+        this.loadShedder.recordDownstreamLatency("booking", 5000);
+
+        assertThat(this.shedShare("booking")).isZero();
+    }
+
+    @Test
+    void shouldShed_notRequestThread_notShed() {
+        this.enter();
+        this.loadShedder.recordDownstreamLatency("booking", 5000);
+        this.exit();
+
+        assertThat(this.shedShare("booking")).isZero();
+    }
+
+    @Test
+    void recordDownstreamLatency_notRequestThread_notRecorded() {
+        this.loadShedder.recordDownstreamLatency("booking", 5000);
+
+        assertThat(this.meterRegistry.find("dgca.downstream.latency.smoothed").gauge()).isNull();
+        this.enter();
+        assertThat(this.shedShare("booking")).isZero();
+    }
+
+    @Test
+    void recordDownstreamLatency_requestThread_smoothedPerDownstream() {
+        this.enter();
+        this.loadShedder.recordDownstreamLatency("booking", 1000);
+        this.loadShedder.recordDownstreamLatency("booking", 2000);
+        this.loadShedder.recordDownstreamLatency("service", 3000);
+
+        assertThat(this.latency("booking")).isCloseTo(1.1, within(1e-9));
+        assertThat(this.latency("service")).isEqualTo(3.0);
+    }
+
+    @Test
+    void propagate_otherThread_recordedAsRequest() throws Exception {
+        this.enter();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture.supplyAsync(LoadShedder.propagate(() -> {
+                this.loadShedder.recordDownstreamLatency("booking", 1000);
+                return null;
+            }), executor).get(5, TimeUnit.SECONDS);
+            CompletableFuture.supplyAsync(() -> {
+                this.loadShedder.recordDownstreamLatency("service", 1000);
+                return null;
+            }, executor).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(this.latency("booking")).isEqualTo(1.0);
+        assertThat(this.meterRegistry.find("dgca.downstream.latency.smoothed").tag("service", "service").gauge())
+                .isNull();
+    }
+
+    private double shedShare(final String downstream) {
+        int shed = 0;
+        for (int i = 0; i < TRIALS; i++) {
+            if (this.loadShedder.shouldShed(downstream)) {
+                shed++;
+            }
+        }
+        return (double) shed / TRIALS;
+    }
+
+    private double latency(final String downstream) {
+        return this.meterRegistry.get("dgca.downstream.latency.smoothed").tag("service", downstream).gauge().value();
+    }
+
+    private void enter() {
+        this.loadShedder.enter();
+        this.entered++;
+    }
+
+    private void exit() {
+        this.loadShedder.exit();
+        this.entered--;
+    }
+}
@@ -0,0 +1,122 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.BucketProperties;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTest {
+
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        this.rateLimiter = new RateLimiter(new DgcProperties());
+    }
+
+    @Test
+    void tryAcquire_withinCapacity_acquired() {
+        final BucketProperties limit = buildLimit(3, 1);
+
+        assertThat(this.rateLimiter.tryAcquire("key", limit)).isZero();
+        assertThat(this.rateLimiter.tryAcquire("key", limit)).isZero();
+        assertThat(this.rateLimiter.tryAcquire("key", limit)).isZero();
+    }
+
+    @Test
+    void tryAcquire_burstExhausted_waitUntilNextToken() {
+        final BucketProperties limit = buildLimit(3, 1);
+        for (int i = 0; i < 3; i++) {
+            this.rateLimiter.tryAcquire("key", limit);
+        }
+
+        final long wait = this.rateLimiter.tryAcquire("key", limit);
+
+        assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    void tryAcquire_slowRefill_longerWait() {
+        final BucketProperties limit = buildLimit(1, 0.5);
+        this.rateLimiter.tryAcquire("key", limit);
+
+        final long wait = this.rateLimiter.tryAcquire("key", limit);
+
+        assertThat(wait).isGreaterThan(TimeUnit.SECONDS.toNanos(1)).isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    void tryAcquire_refilled_acquiredAgain() throws InterruptedException {
+        final BucketProperties limit = buildLimit(1, 20);
+        assertThat(this.rateLimiter.tryAcquire("key", limit)).isZero();
+        assertThat(this.rateLimiter.tryAcquire("key", limit)).isPositive();
+
+        Thread.sleep(100);
+
+        assertThat(this.rateLimiter.tryAcquire("key", limit)).isZero();
+    }
+
+    @Test
+    void tryAcquire_rejected_noTokenTaken() throws InterruptedException {
+        final BucketProperties limit = buildLimit(1, 20);
+        this.rateLimiter.tryAcquire("key", limit);
+        for (int i = 0; i < 10; i++) {
+            this.rateLimiter.tryAcquire("key", limit);
+        }
+
+        // Rejected attempts do not push the next token further out
+        Thread.sleep(100);
+
+        assertThat(this.rateLimiter.tryAcquire("key", limit)).isZero();
+    }
+
+    @Test
+    void tryAcquire_idleBucket_refilledUpToCapacityOnly() throws InterruptedException {
+        final BucketProperties limit = buildLimit(2, 100);
+        this.rateLimiter.tryAcquire("key", limit);
+
+        Thread.sleep(100);
+
+        assertThat(this.rateLimiter.tryAcquire("key", limit)).isZero();
+        assertThat(this.rateLimiter.tryAcquire("key", limit)).isZero();
+        assertThat(this.rateLimiter.tryAcquire("key", limit)).isPositive();
+    }
+
+    @Test
+    void tryAcquire_otherKey_ownBucket() {
+        final BucketProperties limit = buildLimit(1, 1);
+        this.rateLimiter.tryAcquire("key", limit);
+
+        assertThat(this.rateLimiter.tryAcquire("key", limit)).isPositive();
+        assertThat(this.rateLimiter.tryAcquire("other", limit)).isZero();
+    }
+
+    private static BucketProperties buildLimit(final int capacity, final double refillPerSecond) {
+        final BucketProperties limit = new BucketProperties();
+        limit.setCapacity(capacity);
+        limit.setRefillPerSecond(refillPerSecond);
+        return limit;
+    }
+}
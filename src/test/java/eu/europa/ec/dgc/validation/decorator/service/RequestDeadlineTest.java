@@ -0,0 +1,82 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RequestDeadlineTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    void start_budget_currentWithRemainingBudget() {
+        final RequestDeadline deadline = RequestDeadline.start("status", Duration.ofSeconds(2));
+
+        assertThat(RequestDeadline.current()).isSameAs(deadline);
+        assertThat(deadline.remainingMillis()).isPositive().isLessThanOrEqualTo(2000);
+        assertThat(deadline.isExpired()).isFalse();
+    }
+
+    @Test
+    void remainingMillis_budgetExhausted_zeroAndExpired() throws InterruptedException {
+        final RequestDeadline deadline = RequestDeadline.start("status", Duration.ofMillis(1));
+        Thread.sleep(20);
+
+        assertThat(deadline.remainingMillis()).isZero();
+        assertThat(deadline.isExpired()).isTrue();
+    }
+
+    @Test
+    void clear_started_noCurrent() {
+        RequestDeadline.start("status", Duration.ofSeconds(2));
+
+        RequestDeadline.clear();
+
+        assertThat(RequestDeadline.current()).isNull();
+    }
+
+    @Test
+    void propagate_otherThread_budgetUsedAndRemovedAfterCall() throws Exception {
+        final RequestDeadline deadline = RequestDeadline.start("status", Duration.ofSeconds(2));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final RequestDeadline propagated = CompletableFuture.supplyAsync(
+                    RequestDeadline.propagate(RequestDeadline::current), executor).get(5, TimeUnit.SECONDS);
+            final RequestDeadline afterCall = CompletableFuture.supplyAsync(RequestDeadline::current, executor)
+                    .get(5, TimeUnit.SECONDS);
+
+            assertThat(propagated).isSameAs(deadline);
+            assertThat(afterCall).isNull();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
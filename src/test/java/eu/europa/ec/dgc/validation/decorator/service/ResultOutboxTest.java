@@ -0,0 +1,359 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.ResultOutboxProperties;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultRequest;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultResponse;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceBatchResultResponse.SubjectResultResponse;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceResultRequest;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceResultRequest.DccStatusRequest;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceResultRequest.ResultRequest;
+import eu.europa.ec.dgc.validation.decorator.exception.RepositoryException;
+import eu.europa.ec.dgc.validation.decorator.repository.BackendRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+class ResultOutboxTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DgcProperties dgcProperties;
+
+    private ResultOutboxProperties properties;
+
+    private BackendRepository backendRepository;
+
+    private MeterRegistry meterRegistry;
+
+    private final List<ResultOutbox> outboxes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        this.dgcProperties = new DgcProperties();
+        this.properties = this.dgcProperties.getResult().getOutbox();
+        this.properties.setEnabled(true);
+        this.properties.setFile(this.tempDir.resolve("outbox.journal").toString());
+        this.properties.setFsync(false);
+        // Dispatched by the tests only
+        this.properties.setDispatchInterval(Duration.ofHours(1));
+        this.properties.setInitialBackoff(Duration.ofMinutes(1));
+        this.properties.setDrainTimeout(Duration.ofMillis(500));
+        this.backendRepository = mock(BackendRepository.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.outboxes.forEach(ResultOutbox::drain);
+    }
+
+    @Test
+    void submit_outboxDisabled_forwardedSynchronously() throws IOException {
+        this.properties.setEnabled(false);
+        final ResultOutbox outbox = this.createOutbox();
+        final ServiceResultRequest request = buildRequest("OK");
+
+        outbox.submit("subject", request);
+
+        verify(this.backendRepository).result("subject", request);
+        assertThat(Files.exists(this.journal())).isFalse();
+    }
+
+    @Test
+    void submit_outboxDisabledAndClientError_repositoryException() throws IOException {
+        this.properties.setEnabled(false);
+        final ResultOutbox outbox = this.createOutbox();
+        doThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST))
+                .when(this.backendRepository).result(anyString(), any());
+
+        assertThatThrownBy(() -> outbox.submit("subject", buildRequest("OK")))
+                .isInstanceOf(RepositoryException.class);
+    }
+
+    @Test
+    void dispatch_bookingServiceAvailable_forwardedAndAcknowledged() throws IOException {
+        final ResultOutbox outbox = this.createOutbox();
+        final ServiceResultRequest request = buildRequest("OK");
+
+        outbox.submit("subject", request);
+        verify(this.backendRepository, never()).result(anyString(), any());
+        outbox.dispatch();
+
+        verify(this.backendRepository).result("subject", request);
+        assertThat(this.pending()).isZero();
+        assertThat(this.meterRegistry.get("dgca.result.outbox.forwarded").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void replay_afterRestart_pendingResultForwarded() throws IOException {
+        // GIVEN a result submitted before a crash
+        this.createOutbox().submit("subject", buildRequest("NOK"));
+
+        // WHEN restarted
+        final ResultOutbox restarted = this.createOutbox();
+        assertThat(this.pending()).isEqualTo(1);
+        restarted.dispatch();
+
+        // THEN
+        verify(this.backendRepository).result("subject", buildRequest("NOK"));
+        assertThat(this.pending()).isZero();
+    }
+
+    @Test
+    void replay_afterRestart_acknowledgedResultNotForwardedAgain() throws IOException {
+        final ResultOutbox outbox = this.createOutbox();
+        outbox.submit("subject", buildRequest("OK"));
+        outbox.dispatch();
+
+        this.createOutbox().dispatch();
+
+        verify(this.backendRepository, times(1)).result(anyString(), any());
+        assertThat(this.pending()).isZero();
+    }
+
+    @Test
+    void dispatch_compactThresholdReached_journalRewritten() throws IOException {
+        this.properties.setCompactThreshold(2);
+        final ResultOutbox outbox = this.createOutbox();
+        outbox.submit("subject-1", buildRequest("OK"));
+        outbox.submit("subject-2", buildRequest("OK"));
+        assertThat(Files.readAllLines(this.journal())).hasSize(2);
+
+        outbox.dispatch();
+
+        assertThat(Files.readAllLines(this.journal())).isEmpty();
+    }
+
+    @Test
+    void dispatch_compactThresholdNotReached_acknowledgementsAppended() throws IOException {
+        final ResultOutbox outbox = this.createOutbox();
+        outbox.submit("subject-1", buildRequest("OK"));
+        outbox.submit("subject-2", buildRequest("OK"));
+
+        outbox.dispatch();
+
+        assertThat(Files.readAllLines(this.journal())).hasSize(4);
+    }
+
+    @Test
+    void dispatch_bookingServiceUnavailable_retriedAfterBackoff() throws IOException {
+        final ResultOutbox outbox = this.createOutbox();
+        doThrow(new ResourceAccessException("timeout")).when(this.backendRepository).result(anyString(), any());
+        outbox.submit("subject", buildRequest("OK"));
+
+        outbox.dispatch();
+        outbox.dispatch();
+
+        // Second run is inside the backoff
+        verify(this.backendRepository, times(1)).result(anyString(), any());
+        assertThat(this.pending()).isEqualTo(1);
+        assertThat(this.meterRegistry.get("dgca.result.outbox.retried").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void dispatch_clientError_dropped() throws IOException {
+        final ResultOutbox outbox = this.createOutbox();
+        doThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST))
+                .when(this.backendRepository).result(anyString(), any());
+        outbox.submit("subject", buildRequest("OK"));
+
+        outbox.dispatch();
+
+        assertThat(this.pending()).isZero();
+        assertThat(this.dropped("rejected")).isEqualTo(1);
+        assertThat(this.meterRegistry.get("dgca.result.outbox.retried").counter().count()).isZero();
+    }
+
+    @Test
+    void dispatch_validationExpired_droppedInsteadOfRetried() throws IOException {
+        this.dgcProperties.setValidationExpire(Duration.ZERO);
+        final ResultOutbox outbox = this.createOutbox();
+        doThrow(new ResourceAccessException("timeout")).when(this.backendRepository).result(anyString(), any());
+        outbox.submit("subject", buildRequest("OK"));
+
+        outbox.dispatch();
+
+        assertThat(this.pending()).isZero();
+        assertThat(this.dropped("expired")).isEqualTo(1);
+    }
+
+    @Test
+    void dispatch_maxAttemptsReached_droppedInsteadOfRetried() throws IOException {
+        this.properties.setMaxAttempts(2);
+        this.properties.setInitialBackoff(Duration.ZERO);
+        final ResultOutbox outbox = this.createOutbox();
+        doThrow(new ResourceAccessException("timeout")).when(this.backendRepository).result(anyString(), any());
+        outbox.submit("subject", buildRequest("OK"));
+
+        outbox.dispatch();
+        assertThat(this.pending()).isEqualTo(1);
+        outbox.dispatch();
+
+        verify(this.backendRepository, times(2)).result(anyString(), any());
+        assertThat(this.pending()).isZero();
+        assertThat(this.dropped("attempts_exhausted")).isEqualTo(1);
+    }
+
+    @Test
+    void drain_pendingResults_forwardedOnShutdown() throws IOException {
+        final ResultOutbox outbox = this.createOutbox();
+        outbox.submit("subject", buildRequest("OK"));
+
+        outbox.drain();
+        this.outboxes.remove(outbox);
+
+        verify(this.backendRepository).result(eq("subject"), any());
+        assertThat(this.pending()).isZero();
+        assertThat(Files.readAllLines(this.journal())).isEmpty();
+    }
+
+    @Test
+    void drain_bookingServiceUnavailable_resultsKeptInJournal() throws IOException {
+        final ResultOutbox outbox = this.createOutbox();
+        doThrow(new ResourceAccessException("timeout")).when(this.backendRepository).result(anyString(), any());
+        outbox.submit("subject", buildRequest("OK"));
+
+        outbox.drain();
+        this.outboxes.remove(outbox);
+
+        assertThat(Files.readAllLines(this.journal())).hasSize(1);
+    }
+
+    @Test
+    void dispatch_batchOutcomes_acknowledgedDroppedOrRetried() throws IOException {
+        this.properties.setBatchWindow(Duration.ZERO);
+        when(this.backendRepository.supportsBatchResults()).thenReturn(true);
+        final ServiceBatchResultResponse response = new ServiceBatchResultResponse();
+        response.getResults().add(buildOutcome("accepted", 200));
+        response.getResults().add(buildOutcome("rejected", 400));
+        response.getResults().add(buildOutcome("unavailable", 503));
+        when(this.backendRepository.results(any())).thenReturn(response);
+        final ResultOutbox outbox = this.createOutbox();
+        outbox.submit("accepted", buildRequest("OK"));
+        outbox.submit("rejected", buildRequest("OK"));
+        outbox.submit("unavailable", buildRequest("OK"));
+        outbox.submit("missing", buildRequest("OK"));
+
+        outbox.dispatch();
+
+        verify(this.backendRepository, times(1)).results(any());
+        verify(this.backendRepository, never()).result(anyString(), any());
+        // unavailable and missing outcome stay for retry
+        assertThat(this.pending()).isEqualTo(2);
+        assertThat(this.meterRegistry.get("dgca.result.outbox.forwarded").counter().count()).isEqualTo(1);
+        assertThat(this.dropped("rejected")).isEqualTo(1);
+        assertThat(this.meterRegistry.get("dgca.result.outbox.retried").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void dispatch_batchWithSupersededResult_newestResultSent() throws IOException {
+        this.properties.setBatchWindow(Duration.ZERO);
+        when(this.backendRepository.supportsBatchResults()).thenReturn(true);
+        final ServiceBatchResultResponse response = new ServiceBatchResultResponse();
+        response.getResults().add(buildOutcome("subject", 200));
+        when(this.backendRepository.results(any())).thenReturn(response);
+        final ResultOutbox outbox = this.createOutbox();
+        outbox.submit("subject", buildRequest("NOK"));
+        outbox.submit("subject", buildRequest("OK"));
+
+        outbox.dispatch();
+
+        final ArgumentCaptor<ServiceBatchResultRequest> captor = ArgumentCaptor.forClass(
+                ServiceBatchResultRequest.class);
+        verify(this.backendRepository).results(captor.capture());
+        assertThat(captor.getValue().getResults()).hasSize(1);
+        assertThat(captor.getValue().getResults().get(0).getResult()).isEqualTo(buildRequest("OK"));
+        assertThat(this.pending()).isZero();
+    }
+
+    private ResultOutbox createOutbox() throws IOException {
+        this.meterRegistry = new SimpleMeterRegistry();
+        final ResultOutbox outbox = new ResultOutbox(this.dgcProperties, this.backendRepository, new ObjectMapper(),
+                mock(FlowLatencyTracker.class), this.meterRegistry);
+        outbox.replay();
+        this.outboxes.add(outbox);
+        return outbox;
+    }
+
+    private double pending() {
+        return this.meterRegistry.get("dgca.result.outbox.pending").gauge().value();
+    }
+
+    private double dropped(final String reason) {
+        return this.meterRegistry.get("dgca.result.outbox.dropped").tag("reason", reason).counter().count();
+    }
+
+    private Path journal() {
+        return Path.of(this.properties.getFile());
+    }
+
+    private static ServiceResultRequest buildRequest(final String result) {
+        final ResultRequest resultRequest = new ResultRequest();
+        resultRequest.setIdentifier("GR-01");
+        resultRequest.setResult(result);
+        resultRequest.setType("TechnicalVerification");
+        final DccStatusRequest dccStatus = new DccStatusRequest();
+        dccStatus.setIssuer("http://localhost:8082");
+        dccStatus.setIat(1632382654L);
+        dccStatus.setSub("subject");
+        dccStatus.setResults(List.of(resultRequest));
+        final ServiceResultRequest request = new ServiceResultRequest();
+        request.setToken("token");
+        request.setDccStatus(dccStatus);
+        return request;
+    }
+
+    private static SubjectResultResponse buildOutcome(final String subject, final int status) {
+        final SubjectResultResponse outcome = new SubjectResultResponse();
+        outcome.setSubject(subject);
+        outcome.setStatus(status);
+        return outcome;
+    }
+}
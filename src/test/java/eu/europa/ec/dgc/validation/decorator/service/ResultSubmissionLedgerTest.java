@@ -0,0 +1,71 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.dto.ResultToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ResultSubmissionLedgerTest {
+
+    private MeterRegistry meterRegistry;
+
+    private ResultSubmissionLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.ledger = new ResultSubmissionLedger(new DgcProperties(), this.meterRegistry);
+    }
+
+    @Test
+    void hash_sameJwt_sameHash() {
+        assertThat(this.ledger.hash("header.claims.signature")).isEqualTo(this.ledger.hash("header.claims.signature"))
+                .isNotEqualTo(this.ledger.hash("header.claims.other"));
+    }
+
+    @Test
+    void findSubmitted_sameResult_submittedResultTokenAndSuppressionCounted() {
+        final ResultToken resultToken = new ResultToken();
+        resultToken.setResult("OK");
+        final String jwtHash = this.ledger.hash("header.claims.signature");
+        this.ledger.record("subject", jwtHash, resultToken);
+
+        assertThat(this.ledger.findSubmitted("subject", jwtHash)).isSameAs(resultToken);
+        assertThat(this.meterRegistry.get("dgca.result.submission.suppressed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void findSubmitted_changedResultOrOtherSubject_null() {
+        final String jwtHash = this.ledger.hash("header.claims.signature");
+        this.ledger.record("subject", jwtHash, new ResultToken());
+
+        assertThat(this.ledger.findSubmitted("subject", this.ledger.hash("header.claims.other"))).isNull();
+        assertThat(this.ledger.findSubmitted("other-subject", jwtHash)).isNull();
+        assertThat(this.ledger.findSubmitted("unknown", jwtHash)).isNull();
+        assertThat(this.meterRegistry.get("dgca.result.submission.suppressed").counter().count()).isZero();
+    }
+}
@@ -0,0 +1,152 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import com.github.benmanes.caffeine.cache.Cache;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.StatusPollingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class StatusPollingAdvisorTest {
+
+    private DgcProperties dgcProperties;
+
+    private StatusPollingProperties properties;
+
+    private MeterRegistry meterRegistry;
+
+    private StatusPollingAdvisor advisor;
+
+    @BeforeEach
+    void setUp() {
+        this.dgcProperties = new DgcProperties();
+        this.properties = this.dgcProperties.getStatusPolling();
+        this.properties.setMinRetryAfter(Duration.ofSeconds(1));
+        this.properties.setMaxRetryAfter(Duration.ofSeconds(10));
+        this.properties.setExpectedPending(Duration.ofSeconds(5));
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.advisor = new StatusPollingAdvisor(this.dgcProperties, this.meterRegistry);
+    }
+
+    @Test
+    void pending_firstPoll_expectedPending() {
+        assertThat(this.advisor.pending("subject")).isEqualTo(5);
+    }
+
+    @Test
+    void pending_waitingLongerThanExpected_hintGrowsUpToMaximum() {
+        // A quarter of the time already waited
+        this.pendingSince("subject", 22_000);
+        assertThat(this.advisor.pending("subject")).isEqualTo(6);
+
+        this.pendingSince("subject", 30_000);
+        assertThat(this.advisor.pending("subject")).isEqualTo(8);
+
+        this.pendingSince("subject", 100_000);
+        assertThat(this.advisor.pending("subject")).isEqualTo(10);
+    }
+
+    @Test
+    void pending_expectedRestBelowMinimum_minimum() {
+        this.properties.setMinRetryAfter(Duration.ofSeconds(3));
+        this.pendingSince("subject", 4_500);
+
+        assertThat(this.advisor.pending("subject")).isEqualTo(3);
+    }
+
+    @Test
+    void completed_pendingSubject_expectedPendingSmoothed() {
+        this.advisor.pending("subject");
+        this.pendingSince("subject", 15_000);
+
+        this.advisor.completed("subject");
+
+        // 5s + 0.2 * (15s - 5s)
+        assertThat(this.meterRegistry.get("dgca.status.pending.expected").gauge().value()).isCloseTo(7, within(0.1));
+        assertThat(this.advisor.pending("other")).isEqualTo(7);
+    }
+
+    @Test
+    void completed_unknownSubject_expectedPendingUnchanged() {
+        this.advisor.completed("subject");
+
+        assertThat(this.meterRegistry.get("dgca.status.pending.expected").gauge().value()).isEqualTo(5);
+    }
+
+    @Test
+    void getCachedRetryAfter_insideHintedInterval_answeredLocally() {
+        this.advisor.pending("subject");
+
+        final Long retryAfter = this.advisor.getCachedRetryAfter("subject");
+
+        assertThat(retryAfter).isBetween(1L, 5L);
+        assertThat(this.meterRegistry.get("dgca.status.pending.local").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void getCachedRetryAfter_notHinted_null() {
+        assertThat(this.advisor.getCachedRetryAfter("subject")).isNull();
+        assertThat(this.meterRegistry.get("dgca.status.pending.local").counter().count()).isZero();
+    }
+
+    @Test
+    void getCachedRetryAfter_negativeCacheDisabled_null() {
+        this.properties.setNegativeCache(false);
+        this.advisor.pending("subject");
+
+        assertThat(this.advisor.getCachedRetryAfter("subject")).isNull();
+    }
+
+    @Test
+    void invalidate_hintedSubjects_onlySubjectForgotten() {
+        this.advisor.pending("subject");
+        this.advisor.pending("other");
+
+        this.advisor.invalidate("subject");
+
+        assertThat(this.advisor.getCachedRetryAfter("subject")).isNull();
+        assertThat(this.advisor.getCachedRetryAfter("other")).isNotNull();
+    }
+
+    @Test
+    void completed_hintedSubject_hintForgotten() {
+        this.advisor.pending("subject");
+
+        this.advisor.completed("subject");
+
+        assertThat(this.advisor.getCachedRetryAfter("subject")).isNull();
+    }
+
+    // Moves the first pending status of the subject into the past
+    @SuppressWarnings("unchecked")
+    private void pendingSince(final String subject, final long millisAgo) {
+        ((Cache<String, Long>) ReflectionTestUtils.getField(this.advisor, "pendingSince"))
+                .put(subject, System.currentTimeMillis() - millisAgo);
+    }
+}
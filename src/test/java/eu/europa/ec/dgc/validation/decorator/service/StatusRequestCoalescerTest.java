@@ -0,0 +1,205 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import eu.europa.ec.dgc.validation.decorator.entity.ValidationServiceStatusResponse;
+import eu.europa.ec.dgc.validation.decorator.exception.DeadlineExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StatusRequestCoalescerTest {
+
+    private static final int CALLERS = 4;
+
+    private MeterRegistry meterRegistry;
+
+    private StatusRequestCoalescer coalescer;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.coalescer = new StatusRequestCoalescer(this.meterRegistry);
+        this.executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.executor.shutdownNow();
+        RequestDeadline.clear();
+    }
+
+    @Test
+    void execute_concurrentCallers_oneEvaluationShared() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger evaluations = new AtomicInteger();
+        final ValidationServiceStatusResponse status = new ValidationServiceStatusResponse(200);
+
+        final List<Future<ValidationServiceStatusResponse>> results = this.executeConcurrently(() -> {
+            evaluations.incrementAndGet();
+            await(release);
+            return status;
+        });
+        this.awaitCoalesced(CALLERS - 1);
+        release.countDown();
+
+        for (Future<ValidationServiceStatusResponse> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(status);
+        }
+        assertThat(evaluations.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_evaluationFails_exceptionPropagatedToAllCallers() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final IllegalStateException failure = new IllegalStateException("validation service down");
+
+        final List<Future<ValidationServiceStatusResponse>> results = this.executeConcurrently(() -> {
+            await(release);
+            throw failure;
+        });
+        this.awaitCoalesced(CALLERS - 1);
+        release.countDown();
+
+        for (Future<ValidationServiceStatusResponse> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCause(failure);
+        }
+    }
+
+    @Test
+    void execute_evaluationFinished_laterCallEvaluatesAgain() {
+        final AtomicInteger evaluations = new AtomicInteger();
+        final Supplier<ValidationServiceStatusResponse> evaluation = () -> {
+            evaluations.incrementAndGet();
+            return new ValidationServiceStatusResponse(200);
+        };
+
+        this.coalescer.execute("subject", evaluation);
+        this.coalescer.execute("subject", evaluation);
+
+        assertThat(evaluations.get()).isEqualTo(2);
+        assertThat(this.inFlight()).isZero();
+    }
+
+    @Test
+    void execute_evaluationFailed_laterCallEvaluatesAgain() {
+        assertThatThrownBy(() -> this.coalescer.execute("subject", () -> {
+            throw new IllegalStateException("validation service down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        final ValidationServiceStatusResponse status = this.coalescer.execute("subject",
+                () -> new ValidationServiceStatusResponse(204));
+
+        assertThat(status.getHttpStatusCode()).isEqualTo(204);
+        assertThat(this.inFlight()).isZero();
+    }
+
+    @Test
+    void execute_otherSubject_notCoalesced() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<ValidationServiceStatusResponse> running = this.executor.submit(() ->
+                this.coalescer.execute("subject", () -> {
+                    await(release);
+                    return new ValidationServiceStatusResponse(200);
+                }));
+        this.awaitInFlight(1);
+
+        final ValidationServiceStatusResponse status = this.coalescer.execute("other",
+                () -> new ValidationServiceStatusResponse(204));
+        release.countDown();
+
+        assertThat(status.getHttpStatusCode()).isEqualTo(204);
+        assertThat(running.get(5, TimeUnit.SECONDS).getHttpStatusCode()).isEqualTo(200);
+        assertThat(this.meterRegistry.get("dgca.status.coalesced").counter().count()).isZero();
+    }
+
+    @Test
+    void execute_waitLongerThanBudget_deadlineExceeded() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<ValidationServiceStatusResponse> running = this.executor.submit(() ->
+                this.coalescer.execute("subject", () -> {
+                    await(release);
+                    return new ValidationServiceStatusResponse(200);
+                }));
+        this.awaitInFlight(1);
+        RequestDeadline.start("status", Duration.ofMillis(50));
+
+        assertThatThrownBy(() -> this.coalescer.execute("subject", () -> new ValidationServiceStatusResponse(204)))
+                .isInstanceOf(DeadlineExceededException.class);
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS).getHttpStatusCode()).isEqualTo(200);
+    }
+
+    private List<Future<ValidationServiceStatusResponse>> executeConcurrently(
+            final Supplier<ValidationServiceStatusResponse> evaluation) {
+        final List<Future<ValidationServiceStatusResponse>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(this.executor.submit(() -> this.coalescer.execute("subject", evaluation)));
+        }
+        return results;
+    }
+
+    private void awaitCoalesced(final int callers) throws InterruptedException {
+        final long end = System.currentTimeMillis() + 5000;
+        while (this.meterRegistry.get("dgca.status.coalesced").counter().count() < callers
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitInFlight(final int evaluations) throws InterruptedException {
+        final long end = System.currentTimeMillis() + 5000;
+        while (this.inFlight() < evaluations && System.currentTimeMillis() < end) {
+            Thread.sleep(5);
+        }
+    }
+
+    private double inFlight() {
+        return this.meterRegistry.get("dgca.status.inflight").gauge().value();
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
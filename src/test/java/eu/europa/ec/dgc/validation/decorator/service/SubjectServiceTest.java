@@ -0,0 +1,131 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties;
+import eu.europa.ec.dgc.validation.decorator.config.DgcProperties.ServiceProperties;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse;
+import eu.europa.ec.dgc.validation.decorator.entity.ServiceTokenContentResponse.SubjectResponse;
+import eu.europa.ec.dgc.validation.decorator.exception.DccException;
+import eu.europa.ec.dgc.validation.decorator.repository.BackendRepository;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SubjectServiceTest {
+
+    private IdentityService identityService;
+
+    private BackendRepository backendRepository;
+
+    private SubjectBindingStore subjectBindingStore;
+
+    private SubjectService subjectService;
+
+    @BeforeEach
+    void setUp() {
+        this.identityService = mock(IdentityService.class);
+        this.backendRepository = mock(BackendRepository.class);
+        this.subjectBindingStore = new SubjectBindingStore(new DgcProperties());
+        this.subjectService = new SubjectService(this.identityService, this.backendRepository,
+                this.subjectBindingStore);
+        when(this.identityService.getServicePropertiesById("bound")).thenReturn(buildService("bound"));
+        when(this.identityService.getServicePropertiesById("booked")).thenReturn(buildService("booked"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SubjectTracing.clear();
+    }
+
+    @Test
+    void getServiceBySubject_binding_serviceOfBindingWithoutBookingCall() {
+        this.subjectBindingStore.bind("subject", "bound", Instant.now().plusSeconds(60).getEpochSecond());
+
+        final ServiceProperties service = this.subjectService.getServiceBySubject("subject");
+
+        assertThat(service.getId()).isEqualTo("bound");
+        verify(this.backendRepository, never()).tokenContent("subject");
+    }
+
+    @Test
+    void getServiceBySubject_noBinding_serviceOfBookingService() {
+        when(this.backendRepository.tokenContent("subject")).thenReturn(buildTokenContent("booked"));
+
+        final ServiceProperties service = this.subjectService.getServiceBySubject("subject");
+
+        assertThat(service.getId()).isEqualTo("booked");
+    }
+
+    @Test
+    void getServiceBySubject_bindingOfOtherSubject_serviceOfBookingService() {
+        this.subjectBindingStore.bind("other", "bound", Instant.now().plusSeconds(60).getEpochSecond());
+        when(this.backendRepository.tokenContent("subject")).thenReturn(buildTokenContent("booked"));
+
+        final ServiceProperties service = this.subjectService.getServiceBySubject("subject");
+
+        assertThat(service.getId()).isEqualTo("booked");
+    }
+
+    @Test
+    void getServiceBySubject_expiredBinding_serviceOfBookingService() {
+        this.subjectBindingStore.bind("subject", "bound", Instant.now().minusSeconds(1).getEpochSecond());
+        when(this.backendRepository.tokenContent("subject")).thenReturn(buildTokenContent("booked"));
+
+        final ServiceProperties service = this.subjectService.getServiceBySubject("subject");
+
+        assertThat(service.getId()).isEqualTo("booked");
+    }
+
+    @Test
+    void getServiceBySubject_noBindingAndNoServiceUsed_dccException() {
+        when(this.backendRepository.tokenContent("subject")).thenReturn(buildTokenContent(null));
+
+        assertThatThrownBy(() -> this.subjectService.getServiceBySubject("subject"))
+                .isInstanceOf(DccException.class);
+    }
+
+    private static ServiceProperties buildService(final String id) {
+        final ServiceProperties service = new ServiceProperties();
+        service.setId(id);
+        return service;
+    }
+
+    private static ServiceTokenContentResponse buildTokenContent(final String serviceId) {
+        final SubjectResponse subject = new SubjectResponse();
+        if (serviceId != null) {
+            subject.setServiceIdUsed(Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(serviceId.getBytes(StandardCharsets.UTF_8)));
+        }
+        final ServiceTokenContentResponse tokenContent = new ServiceTokenContentResponse();
+        tokenContent.getPassengers().add(subject);
+        return tokenContent;
+    }
+}
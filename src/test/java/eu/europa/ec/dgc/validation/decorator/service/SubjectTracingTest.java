@@ -0,0 +1,113 @@
+/*-
+ * ---license-start
+ * European Digital COVID Certificate Validation Decorator Service / dgca-validation-decorator
+ * ---
+ * Copyright (C) 2021 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+
+package eu.europa.ec.dgc.validation.decorator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class SubjectTracingTest {
+
+    private static final String SUBJECT = "6ab1fb0a-2a4b-4c31-8d8e-8b6c2b7c4f21";
+
+    @AfterEach
+    void tearDown() {
+        SubjectTracing.clear();
+        SubjectTracing.setSecret(null);
+    }
+
+    @Test
+    void hash_sameSecret_sameHash() {
+        SubjectTracing.setSecret("secret");
+        final String hash = SubjectTracing.hash(SUBJECT);
+
+        SubjectTracing.setSecret("secret");
+
+        assertThat(SubjectTracing.hash(SUBJECT)).isEqualTo(hash).hasSize(22);
+    }
+
+    @Test
+    void hash_otherSecret_otherHash() {
+        SubjectTracing.setSecret("secret");
+        final String hash = SubjectTracing.hash(SUBJECT);
+
+        SubjectTracing.setSecret("other");
+
+        assertThat(SubjectTracing.hash(SUBJECT)).isNotEqualTo(hash);
+    }
+
+    @Test
+    void hash_withSecret_notPlainHashOfSubject() throws Exception {
+        SubjectTracing.setSecret("secret");
+
+        final String plain = Base64.getUrlEncoder().withoutPadding().encodeToString(MessageDigest
+                .getInstance("SHA-256").digest(SUBJECT.getBytes(StandardCharsets.UTF_8))).substring(0, 22);
+        assertThat(SubjectTracing.hash(SUBJECT)).isNotEqualTo(plain);
+    }
+
+    @Test
+    void hash_withoutSecret_randomSecretPerStart() {
+        SubjectTracing.setSecret("");
+        final String hash = SubjectTracing.hash(SUBJECT);
+
+        SubjectTracing.setSecret(null);
+
+        assertThat(SubjectTracing.hash(SUBJECT)).isNotEqualTo(hash);
+    }
+
+    @Test
+    void propagate_otherThread_seesSubjectAndClearsAfterwards() throws Exception {
+        SubjectTracing.tag(SUBJECT);
+        SubjectTracing.tagService("service");
+        final Supplier<String> call = SubjectTracing.propagate(
+                () -> SubjectTracing.currentHash() + "|" + SubjectTracing.currentService());
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertThat(CompletableFuture.supplyAsync(call, executor).get(5, TimeUnit.SECONDS))
+                    .isEqualTo(SubjectTracing.hash(SUBJECT) + "|service");
+            assertThat(CompletableFuture.supplyAsync(() -> SubjectTracing.currentHash() == null
+                    && SubjectTracing.currentService() == null, executor).get(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void clear_taggedThread_subjectAndServiceRemoved() {
+        SubjectTracing.tag(SUBJECT);
+        SubjectTracing.tagService("service");
+
+        SubjectTracing.clear();
+
+        assertThat(SubjectTracing.currentHash()).isNull();
+        assertThat(SubjectTracing.currentService()).isNull();
+    }
+}
@@ -34,6 +34,13 @@ import java.util.UUID;
 
 public class TestHelper {
 
+    // Key pair of the validation service identity built by buildValidationServiceIdentity()
+    public static final String VALIDATION_SERVICE_KID = "MFkwEwYHKu+=";
+
+    public static final String VALIDATION_SERVICE_PRIVATE_KEY = "MIGHAgEAMBMGByqGSM49AgEGCCqGSM49AwEHBG0wawIBAQ"
+            + "QgevZzL1gdAFr88hb2OF/2NxApJCzGCEDdfSp6VQO30hyhRANCAAQRWz+jn65BtOMvdyHKcvjBeBSDZH2r"
+            + "1RTwjmYSi9R/zpBnuQ4EiMnCqfMPWiZqB4QdbAd0E7oH50VpuZ1P087G";
+
     public static ServiceTokenContentResponse buildServiceTokenContent(final String subject,
             ServiceIdentityResponse service) {
         return buildServiceTokenContent(subject, service.getId());
@@ -88,7 +95,7 @@ public class TestHelper {
         final PublicKeyJwk publicKeyJwk = new PublicKeyJwk();
         publicKeyJwk.setUse("sig");
         publicKeyJwk.setAlg("ES256");
-        publicKeyJwk.setKid("MFkwEwYHKu+=");
+        publicKeyJwk.setKid(VALIDATION_SERVICE_KID);
         publicKeyJwk.setX5c(new String[]{"MIIB4DCCAYegAwIBAgIUVuls/1X3r1LY9+KcbRnX1ixbl8YwCgYIKoZIzj0EAwIw"
                 + "RTELMAkGA1UEBhMCREUxEzARBgNVBAgMClNvbWUtU3RhdGUxITAfBgNVBAoMGElu"
                 + "dGVybmV0IFdpZGdpdHMgUHR5IEx0ZDAgFw0yMTA5MjMwODMxMDRaGA8yMTIwMDQx"